@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Measures how quickly instances of the service become ready.
+#
+# Usage: scripts/startup-benchmark.sh [-n runs] [-e env-file] name=image [name=image ...]
+#
+#   scripts/startup-benchmark.sh -n 5 jar=northbay/ragchat-app:plain cds=northbay/ragchat-app:latest \
+#       aot=northbay/ragchat-app:aot native=northbay/ragchat-app:native
+#
+# Each image is started RUNS times on the compose network (docker compose up -d postgres first).
+# For every run the script records the time until /actuator/health answers UP, and the startup
+# time Spring Boot logs ("process running for ..."). It then prints the median of both per image.
+set -euo pipefail
+
+RUNS=5
+ENV_FILE=.env
+NETWORK=${NETWORK:-$(basename "$PWD")_monitor_net}
+PORT=18081
+
+while getopts "n:e:" opt; do
+    case $opt in
+        n) RUNS=$OPTARG ;;
+        e) ENV_FILE=$OPTARG ;;
+        *) sed -n '2,11p' "$0"; exit 2 ;;
+    esac
+done
+shift $((OPTIND - 1))
+[ $# -gt 0 ] || { sed -n '2,11p' "$0"; exit 2; }
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2 }'
+}
+
+now_ms() {
+    date +%s%3N
+}
+
+printf '%-10s %8s %14s %14s\n' variant runs ready_ms started_s
+for variant in "$@"; do
+    name=${variant%%=*}
+    image=${variant#*=}
+    ready=()
+    started=()
+    for _ in $(seq "$RUNS"); do
+        start=$(now_ms)
+        id=$(docker run -d --rm --network "$NETWORK" --env-file "$ENV_FILE" -p "$PORT:8081" "$image")
+        until curl -fs "http://localhost:$PORT/actuator/health" 2>/dev/null | grep -q '"UP"'; do
+            if ! docker inspect "$id" >/dev/null 2>&1; then
+                echo "$name: container exited before becoming ready" >&2
+                exit 1
+            fi
+            sleep 0.05
+        done
+        ready+=($(( $(now_ms) - start )))
+        started+=("$(docker logs "$id" 2>&1 | sed -n 's/.*process running for \([0-9.]*\).*/\1/p' | head -1)")
+        docker stop -t 5 "$id" >/dev/null
+    done
+    printf '%-10s %8s %14s %14s\n' "$name" "$RUNS" \
+        "$(printf '%s\n' "${ready[@]}" | median)" \
+        "$(printf '%s\n' "${started[@]}" | median)"
+done
@@ -1,14 +1,25 @@
 package com.northbay.ragchat;
 
+import com.northbay.ragchat.cli.ChatImportCommand;
+import com.northbay.ragchat.config.AppRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import com.ulisesbocchio.jasyptspringboot.annotation.EnableEncryptableProperties;
 
 //@EnableEncryptableProperties
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(AppRuntimeHints.class)
 public class RagChatServiceApplication {
     public static void main(String[] args) {
-        SpringApplication.run(RagChatServiceApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(RagChatServiceApplication.class, args);
+        // a one-shot import has finished once run() returns; the scheduler threads would keep the JVM alive
+        if (context.getBeanProvider(ChatImportCommand.class).getIfAvailable() != null) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 
 
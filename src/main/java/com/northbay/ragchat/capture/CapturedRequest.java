@@ -0,0 +1,27 @@
+package com.northbay.ragchat.capture;
+
+/**
+ * One captured API request, as stored in a capture file (one JSON object per line).
+ *
+ * @param offsetMs         when the request arrived, relative to the start of the capture
+ * @param method           HTTP method
+ * @param path             request path, with production ids
+ * @param query            sanitized query string, or {@code null}
+ * @param key              stable alias of the caller's API key
+ * @param body             sanitized JSON body, or {@code null}
+ * @param status           response status observed in production
+ * @param durationMs       production latency
+ * @param createdSessionId for session creations, the id the session got, so
+ *                         later requests on it can be mapped during replay
+ */
+public record CapturedRequest(
+        long offsetMs,
+        String method,
+        String path,
+        String query,
+        String key,
+        String body,
+        int status,
+        long durationMs,
+        Long createdSessionId) {
+}
@@ -0,0 +1,84 @@
+package com.northbay.ragchat.capture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency distribution per route of one replay run; stored as JSON to serve
+ * as the baseline of later runs.
+ *
+ * @param speed  replay speed relative to the captured timing
+ * @param routes statistics per route ({@code METHOD /path/{id}})
+ */
+public record ReplayReport(double speed, Map<String, RouteStats> routes) {
+
+    /**
+     * Statistics of one route, latencies in milliseconds.
+     *
+     * @param count    successful responses; the latencies are theirs alone, so fast rejections
+     *                 do not make a route look faster
+     * @param rejected {@code 4xx} responses, e.g. rate-limited or invalid requests
+     * @param errors   {@code 5xx} responses and requests that got no response
+     */
+    public record RouteStats(int count, int rejected, int errors, double p50, double p90, double p99, double max) {
+
+        static RouteStats of(List<Double> latencies, int rejected, int errors) {
+            List<Double> sorted = latencies.stream().sorted().toList();
+            return new RouteStats(sorted.size(), rejected, errors, percentile(sorted, 0.50), percentile(sorted, 0.90),
+                    percentile(sorted, 0.99), sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+        }
+
+        private static double percentile(List<Double> sorted, double p) {
+            if (sorted.isEmpty()) return 0;
+            return sorted.get((int) Math.ceil(p * sorted.size()) - 1);
+        }
+
+        double errorRate() {
+            return rate(errors);
+        }
+
+        double rejectionRate() {
+            return rate(rejected);
+        }
+
+        private double rate(int outcomes) {
+            int total = count + rejected + errors;
+            return total == 0 ? 0 : (double) outcomes / total;
+        }
+    }
+
+    /**
+     * Lists routes whose median or p99 latency grew by more than {@code tolerance}
+     * (e.g. {@code 0.2} for 20%), or whose error or rejection rate rose, compared to {@code baseline}.
+     * Latencies below {@code noiseFloorMs} in both runs are never reported.
+     */
+    public List<String> regressionsAgainst(ReplayReport baseline, double tolerance, double noiseFloorMs) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, RouteStats> entry : new TreeMap<>(routes).entrySet()) {
+            RouteStats before = baseline.routes().get(entry.getKey());
+            RouteStats now = entry.getValue();
+            if (before == null) continue;
+            check(regressions, entry.getKey(), "p50", before.p50(), now.p50(), tolerance, noiseFloorMs);
+            check(regressions, entry.getKey(), "p99", before.p99(), now.p99(), tolerance, noiseFloorMs);
+            if (now.errorRate() > before.errorRate() + 0.01) {
+                regressions.add(String.format("%s: error rate %.1f%% -> %.1f%%",
+                        entry.getKey(), before.errorRate() * 100, now.errorRate() * 100));
+            }
+            if (now.rejectionRate() > before.rejectionRate() + 0.01) {
+                regressions.add(String.format("%s: rejection rate %.1f%% -> %.1f%%",
+                        entry.getKey(), before.rejectionRate() * 100, now.rejectionRate() * 100));
+            }
+        }
+        return regressions;
+    }
+
+    private static void check(List<String> regressions, String route, String metric,
+                              double before, double now, double tolerance, double noiseFloorMs) {
+        if (now > before * (1 + tolerance) && now > noiseFloorMs) {
+            regressions.add(String.format("%s: %s %.1f ms -> %.1f ms (+%.0f%%)",
+                    route, metric, before, now, (now / Math.max(before, 0.001) - 1) * 100));
+        }
+    }
+}
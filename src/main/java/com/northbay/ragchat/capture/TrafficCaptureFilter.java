@@ -0,0 +1,159 @@
+package com.northbay.ragchat.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Servlet filter recording sanitized API traffic for replay benchmarks.
+ * <p>
+ * Each completed request is appended to {@code app.traffic-capture.file} as a
+ * {@link CapturedRequest}, with its arrival time relative to the start of the
+ * capture, so {@code TrafficReplayCommand} can re-drive the same sequence with
+ * the original timing. Bodies, query parameters and API keys are passed
+ * through {@link TrafficSanitizer} before they are written.
+ * <p>
+ * Sampling is per API key rather than per request, so captured clients keep
+ * complete request sequences. Streaming endpoints are not captured.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.traffic-capture.enabled", havingValue = "true")
+public class TrafficCaptureFilter extends OncePerRequestFilter {
+
+    private static final List<String> EXCLUDED_PATHS = List.of(
+            "/api/v1/export",
+            "/api/v1/import",
+            "/api/v1/stream",
+            "/api/v1/health"
+    );
+
+    private static final String CREATE_SESSION_PATH = "/api/v1/chat-sessions";
+
+    private final ObjectMapper objectMapper;
+    private final TrafficSanitizer sanitizer;
+    private final BufferedWriter out;
+    private final Path file;
+    private final double sampleRate;
+    private final long maxRequests;
+    private final long startedAt = System.currentTimeMillis();
+    private long captured;
+
+    public TrafficCaptureFilter(ObjectMapper objectMapper,
+                                @Value("${app.traffic-capture.file:traffic-capture.ndjson}") String file,
+                                @Value("${app.traffic-capture.sample-rate:1.0}") double sampleRate,
+                                @Value("${app.traffic-capture.max-requests:100000}") long maxRequests,
+                                @Value("${app.traffic-capture.salt:}") String salt) throws IOException {
+        this.objectMapper = objectMapper;
+        this.sanitizer = new TrafficSanitizer(objectMapper, salt.isBlank() ? UUID.randomUUID().toString() : salt);
+        this.file = Path.of(file);
+        this.sampleRate = sampleRate;
+        this.maxRequests = maxRequests;
+        this.out = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        log.warn("Capturing API traffic to {} (sample rate {}, at most {} requests)", this.file, sampleRate, maxRequests);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !path.startsWith("/api/")
+                || EXCLUDED_PATHS.stream().anyMatch(path::startsWith)
+                || !sampled(request.getHeader("X-API-KEY"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long offsetMs = System.currentTimeMillis() - startedAt;
+        long start = System.nanoTime();
+        ContentCachingRequestWrapper req = new ContentCachingRequestWrapper(request);
+        boolean createsSession = "POST".equals(request.getMethod()) && CREATE_SESSION_PATH.equals(request.getRequestURI());
+        // only session creations need the response body, to learn the new id
+        ContentCachingResponseWrapper res = createsSession ? new ContentCachingResponseWrapper(response) : null;
+        try {
+            chain.doFilter(req, res != null ? res : response);
+        } finally {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            Long createdId = res != null ? createdSessionId(res.getContentAsByteArray()) : null;
+            if (res != null) {
+                res.copyBodyToResponse();
+            }
+            byte[] body = req.getContentAsByteArray();
+            record(new CapturedRequest(
+                    offsetMs,
+                    request.getMethod(),
+                    request.getRequestURI(),
+                    sanitizer.sanitizeQuery(request.getQueryString()),
+                    sanitizer.keyAlias(request.getHeader("X-API-KEY")),
+                    body.length == 0 ? null : sanitizer.sanitizeBody(new String(body, StandardCharsets.UTF_8)),
+                    response.getStatus(),
+                    durationMs,
+                    createdId));
+        }
+    }
+
+    /** Writes buffered records, so a capture can be copied while it runs. */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            log.warn("Traffic capture: flushing {} failed: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        out.close();
+        log.info("Traffic capture: {} requests written to {}", captured, file);
+    }
+
+    private synchronized void record(CapturedRequest request) {
+        if (captured >= maxRequests) return;
+        try {
+            out.write(objectMapper.writeValueAsString(request));
+            out.newLine();
+            if (++captured == maxRequests) {
+                log.warn("Traffic capture: reached {} requests, no longer capturing", maxRequests);
+            }
+        } catch (IOException e) {
+            log.warn("Traffic capture: writing to {} failed: {}", file, e.getMessage());
+        }
+    }
+
+    private boolean sampled(String apiKey) {
+        if (sampleRate >= 1.0) return true;
+        return Math.floorMod(String.valueOf(apiKey).hashCode(), 10_000) < sampleRate * 10_000;
+    }
+
+    private Long createdSessionId(byte[] responseBody) {
+        try {
+            JsonNode id = objectMapper.readTree(responseBody).get("id");
+            return id != null && id.canConvertToLong() ? id.asLong() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.northbay.ragchat.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Re-drives captured traffic against a running instance and measures latency.
+ * <p>
+ * Requests are sent at their captured offsets divided by {@code speed}, without
+ * waiting for earlier responses, except that requests on the same session are
+ * kept in their captured order. Production session ids are mapped to the ids
+ * of sessions created during the replay; sessions that existed before the
+ * capture started are created on first use. API key aliases are spread over
+ * the given keys, so each captured client keeps using one key.
+ * <p>
+ * Latency is measured from sending a request to receiving the full response,
+ * for successful responses only. {@code 4xx} rejections and {@code 5xx}
+ * errors (or missing responses) are counted separately.
+ */
+@Slf4j
+public class TrafficReplayer {
+
+    private static final Pattern SESSION_PATH = Pattern.compile("(/api/v1/chat-sessions/)(\\d+)");
+    private static final Pattern IDS = Pattern.compile("/\\d+");
+    private static final String CREATE_SESSION_PATH = "/api/v1/chat-sessions";
+
+    private final HttpClient client;
+    private final ObjectMapper objectMapper;
+    private final URI target;
+    private final double speed;
+    private final List<String> apiKeys;
+    private final Duration timeout;
+
+    private final Map<Long, CompletableFuture<Long>> sessionIds = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<?>> sessionTails = new HashMap<>();
+    private final Map<String, String> keysByAlias = new HashMap<>();
+    private final Map<String, List<Double>> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Integer> rejected = new ConcurrentHashMap<>();
+    private final Map<String, Integer> errors = new ConcurrentHashMap<>();
+
+    public TrafficReplayer(HttpClient client, ObjectMapper objectMapper, URI target, double speed,
+                           List<String> apiKeys, Duration timeout) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.target = target;
+        this.speed = speed;
+        this.apiKeys = apiKeys;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Replays the requests and waits for all responses.
+     */
+    public ReplayReport replay(List<CapturedRequest> capture) throws InterruptedException {
+        List<CapturedRequest> ordered = new ArrayList<>(capture);
+        ordered.sort(Comparator.comparingLong(CapturedRequest::offsetMs));
+        long firstOffset = ordered.isEmpty() ? 0 : ordered.get(0).offsetMs();
+        long start = System.nanoTime();
+        List<CompletableFuture<?>> inFlight = new ArrayList<>(ordered.size());
+
+        for (CapturedRequest request : ordered) {
+            long dueNanos = start + (long) ((request.offsetMs() - firstOffset) / speed * 1_000_000);
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            inFlight.add(dispatch(request));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .exceptionally(e -> null)
+                .join();
+
+        Map<String, ReplayReport.RouteStats> routes = new HashMap<>();
+        Set<String> names = new HashSet<>(latencies.keySet());
+        names.addAll(rejected.keySet());
+        names.addAll(errors.keySet());
+        for (String route : names) {
+            routes.put(route, ReplayReport.RouteStats.of(latencies.getOrDefault(route, List.of()),
+                    rejected.getOrDefault(route, 0), errors.getOrDefault(route, 0)));
+        }
+        return new ReplayReport(speed, routes);
+    }
+
+    private CompletableFuture<?> dispatch(CapturedRequest request) {
+        String apiKey = keysByAlias.computeIfAbsent(String.valueOf(request.key()),
+                alias -> apiKeys.get(keysByAlias.size() % apiKeys.size()));
+        String route = request.method() + " " + IDS.matcher(request.path()).replaceAll("/{id}");
+        Matcher matcher = SESSION_PATH.matcher(request.path());
+        if (!matcher.find()) {
+            if (request.createdSessionId() != null) {
+                // later requests on this session wait for its replay id
+                sessionIds.computeIfAbsent(request.createdSessionId(), id -> new CompletableFuture<>());
+            }
+            return send(request, route, request.path(), apiKey);
+        }
+
+        long capturedId = Long.parseLong(matcher.group(2));
+        String replayPath = request.path();
+        CompletableFuture<Long> replayId = sessionIds.computeIfAbsent(capturedId, id -> createSession(apiKey));
+        CompletableFuture<?> previous = sessionTails.getOrDefault(capturedId, CompletableFuture.completedFuture(null));
+        CompletableFuture<?> sent = previous.exceptionally(e -> null)
+                .thenCombine(replayId, (ignored, id) -> id)
+                .handle((id, e) -> id)
+                .thenCompose(id -> {
+                    if (id == null) {
+                        // the session could not be created; count the request as failed
+                        errors.merge(route, 1, Integer::sum);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return send(request, route, SESSION_PATH.matcher(replayPath).replaceFirst("$1" + id), apiKey);
+                });
+        sessionTails.put(capturedId, sent);
+        return sent;
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(CapturedRequest request, String route, String path,
+                                                         String apiKey) {
+        String body = request.body();
+        URI uri = target.resolve(path + (request.query() != null ? "?" + request.query() : ""));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("X-API-KEY", apiKey)
+                .header("Content-Type", "application/json")
+                .method(request.method(), body != null
+                        ? HttpRequest.BodyPublishers.ofString(body)
+                        : HttpRequest.BodyPublishers.noBody());
+        long sentAt = System.nanoTime();
+        return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    if (error != null || response.statusCode() >= 500) {
+                        errors.merge(route, 1, Integer::sum);
+                    } else if (response.statusCode() >= 400) {
+                        rejected.merge(route, 1, Integer::sum);
+                    } else {
+                        latencies.computeIfAbsent(route, r -> Collections.synchronizedList(new ArrayList<>()))
+                                .add((System.nanoTime() - sentAt) / 1e6);
+                    }
+                    if (request.createdSessionId() != null) {
+                        CompletableFuture<Long> replayId = sessionIds.get(request.createdSessionId());
+                        Long id = error == null ? idOf(response.body()) : null;
+                        if (id != null) {
+                            replayId.complete(id);
+                        } else {
+                            replayId.completeExceptionally(new IllegalStateException(
+                                    "Replay could not create session " + request.createdSessionId()));
+                        }
+                    }
+                });
+    }
+
+    /** Creates a stand-in for a session that existed before the capture started. */
+    private CompletableFuture<Long> createSession(String apiKey) {
+        ObjectNode body = objectMapper.createObjectNode().put("title", "replay").put("owner", "replay");
+        HttpRequest request = HttpRequest.newBuilder(target.resolve(CREATE_SESSION_PATH))
+                .timeout(timeout)
+                .header("X-API-KEY", apiKey)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    Long id = idOf(response.body());
+                    if (id == null) {
+                        throw new IllegalStateException("Creating a replay session failed: HTTP " + response.statusCode());
+                    }
+                    return id;
+                });
+    }
+
+    private Long idOf(String json) {
+        try {
+            JsonNode id = objectMapper.readTree(json).get("id");
+            return id != null && id.canConvertToLong() ? id.asLong() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
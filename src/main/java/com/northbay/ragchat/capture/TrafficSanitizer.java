@@ -0,0 +1,112 @@
+package com.northbay.ragchat.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Removes user data from captured requests while keeping what matters for
+ * performance.
+ * <p>
+ * Every string is replaced by a pseudonym of the same length derived from a
+ * salted hash, so payload sizes are preserved and equal values (owners,
+ * repeated prompts) stay equal within a capture. Fields whose values select
+ * code paths rather than carry content ({@code sender}, batch {@code op})
+ * and paging query parameters are kept as they are.
+ */
+public class TrafficSanitizer {
+
+    private static final Set<String> KEPT_FIELDS = Set.of("sender", "op");
+    private static final Set<String> KEPT_PARAMS = Set.of("page", "size", "afterSeq", "gzip");
+
+    private final ObjectMapper objectMapper;
+    private final byte[] salt;
+
+    public TrafficSanitizer(ObjectMapper objectMapper, String salt) {
+        this.objectMapper = objectMapper;
+        this.salt = salt.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sanitizes a JSON body; bodies that are not valid JSON are replaced by a pseudonym.
+     */
+    public String sanitizeBody(String body) {
+        if (body == null || body.isBlank()) return null;
+        try {
+            JsonNode tree = objectMapper.readTree(body);
+            return objectMapper.writeValueAsString(sanitize(tree, null));
+        } catch (Exception e) {
+            return pseudonym(body);
+        }
+    }
+
+    /**
+     * Sanitizes a raw query string, keeping paging parameters.
+     */
+    public String sanitizeQuery(String query) {
+        if (query == null || query.isBlank()) return null;
+        return Arrays.stream(query.split("&"))
+                .map(param -> {
+                    int eq = param.indexOf('=');
+                    if (eq < 0 || KEPT_PARAMS.contains(param.substring(0, eq))) return param;
+                    return param.substring(0, eq + 1) + pseudonym(param.substring(eq + 1));
+                })
+                .collect(Collectors.joining("&"));
+    }
+
+    /**
+     * Returns a stable alias for an API key.
+     */
+    public String keyAlias(String apiKey) {
+        return apiKey == null ? null : "key-" + pseudonym(apiKey + "\u0000key", 8);
+    }
+
+    /**
+     * Returns a same-length replacement for {@code value}.
+     */
+    public String pseudonym(String value) {
+        return pseudonym(value, value.length());
+    }
+
+    private String pseudonym(String value, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            String hex = HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+            return hex.repeat(length / hex.length() + 1).substring(0, length);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonNode sanitize(JsonNode node, String field) {
+        if (node.isTextual()) {
+            return field != null && KEPT_FIELDS.contains(field) ? node : TextNode.valueOf(pseudonym(node.asText()));
+        }
+        if (node.isArray()) {
+            ArrayNode array = (ArrayNode) node;
+            for (int i = 0; i < array.size(); i++) {
+                array.set(i, sanitize(array.get(i), field));
+            }
+        } else if (node.isObject()) {
+            ObjectNode object = (ObjectNode) node;
+            for (Iterator<Map.Entry<String, JsonNode>> it = object.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> entry = it.next();
+                entry.setValue(sanitize(entry.getValue(), entry.getKey()));
+            }
+        }
+        return node;
+    }
+}
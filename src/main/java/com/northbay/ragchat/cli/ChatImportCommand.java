@@ -0,0 +1,78 @@
+package com.northbay.ragchat.cli;
+
+import com.northbay.ragchat.dto.ChatImportResult;
+import com.northbay.ragchat.service.ChatImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command-line entry point for bulk imports.
+ * <p>
+ * Activated by the {@code app.import.file} property, runs a single import
+ * through {@link ChatImportService} and exits:
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none \
+ *      --app.import.file=history.ndjson.gz
+ * </pre>
+ * The format is taken from {@code app.import.format} or inferred from the
+ * file extension ({@code .csv} / {@code .ndjson}, optionally {@code .gz}).
+ * The exit code ({@code 1} if the import failed) is reported through
+ * {@link ExitCodeGenerator}; the application's entry point shuts down and
+ * exits once the command has run.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.import.file")
+public class ChatImportCommand implements ApplicationRunner, ExitCodeGenerator {
+
+    private final ChatImportService importService;
+    private final Path file;
+    private final String format;
+    private int exitCode;
+
+    public ChatImportCommand(ChatImportService importService,
+                             @Value("${app.import.file}") String file,
+                             @Value("${app.import.format:}") String format) {
+        this.importService = importService;
+        this.file = Path.of(file);
+        this.format = format;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        String name = file.getFileName().toString().toLowerCase();
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) name = name.substring(0, name.length() - 3);
+
+        ChatImportService.Format resolved = !format.isBlank()
+                ? ChatImportService.Format.valueOf(format.toUpperCase())
+                : name.endsWith(".csv") ? ChatImportService.Format.CSV : ChatImportService.Format.NDJSON;
+
+        log.info("Importing {} as {}", file, resolved);
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 1 << 20);
+             InputStream in = gzip ? new GZIPInputStream(raw, 1 << 16) : raw) {
+            ChatImportResult result = importService.importStream(in, resolved);
+            log.info("Imported {} sessions and {} messages ({} rows/sec)",
+                    result.sessions(), result.messages(), result.rowsPerSecond());
+        } catch (Exception e) {
+            log.error("Import of {} failed: {}", file, e.getMessage(), e);
+            exitCode = 1;
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+}
@@ -0,0 +1,57 @@
+package com.northbay.ragchat.cli;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code --name=value} options of the standalone tools that run outside the
+ * application context (traffic replay, Groq simulator).
+ */
+public final class CommandLineOptions {
+
+    private final Map<String, String> values;
+
+    private CommandLineOptions(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * @throws IllegalArgumentException for an argument not of the form {@code --name=value}
+     */
+    public static CommandLineOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 3) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            values.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return new CommandLineOptions(values);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the option is missing
+     */
+    public String require(String name) {
+        String value = values.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing required option --" + name);
+        }
+        return value;
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+}
@@ -0,0 +1,120 @@
+package com.northbay.ragchat.cli;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.northbay.ragchat.capture.CapturedRequest;
+import com.northbay.ragchat.capture.ReplayReport;
+import com.northbay.ragchat.capture.TrafficReplayer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Command-line entry point for replay benchmarks.
+ * <p>
+ * Runs as its own process, outside the instance under test, so the load
+ * generator does not share CPU, heap and GC pauses with the measured service.
+ * Replays a capture written by {@code TrafficCaptureFilter} against
+ * {@code --target}, prints the outcome and latency distribution per route and
+ * exits:
+ * <pre>
+ * java -cp app.jar -Dloader.main=com.northbay.ragchat.cli.TrafficReplayCommand \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher \
+ *      --file=capture.ndjson --target=http://localhost:8081/ --speed=2 \
+ *      --baseline=replay-baseline.json
+ * </pre>
+ * With a baseline, the exit code is {@code 2} if any route regressed beyond
+ * {@code --tolerance}. If the baseline file does not exist yet, the report is
+ * written to it. A replay that cannot run exits with {@code 1}.
+ */
+@Slf4j
+public class TrafficReplayCommand {
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private final URI target;
+    private final double speed;
+    private final List<String> apiKeys;
+    private final String baseline;
+    private final double tolerance;
+    private final double noiseFloorMs;
+    private final long timeoutMs;
+
+    TrafficReplayCommand(ObjectMapper objectMapper, CommandLineOptions options) {
+        this.objectMapper = objectMapper;
+        this.file = Path.of(options.require("file"));
+        this.target = URI.create(options.require("target"));
+        this.speed = options.getDouble("speed", 1.0);
+        this.apiKeys = Arrays.stream(options.get("api-keys", "demo-key").split(","))
+                .map(String::trim).filter(k -> !k.isEmpty()).toList();
+        this.baseline = options.get("baseline", "");
+        this.tolerance = options.getDouble("tolerance", 0.2);
+        this.noiseFloorMs = options.getDouble("noise-floor-ms", 5);
+        this.timeoutMs = options.getLong("timeout-ms", 60000);
+    }
+
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = new TrafficReplayCommand(new ObjectMapper().findAndRegisterModules(),
+                    CommandLineOptions.parse(args)).run();
+        } catch (Exception e) {
+            log.error("Replay failed: {}", e.getMessage(), e);
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * @return the exit code: {@code 0}, or {@code 2} if a route regressed against the baseline
+     */
+    int run() throws Exception {
+        List<CapturedRequest> capture;
+        try (MappingIterator<CapturedRequest> lines =
+                     objectMapper.readerFor(CapturedRequest.class).readValues(file.toFile())) {
+            capture = lines.readAll();
+        }
+        log.info("Replaying {} requests from {} against {} at {}x", capture.size(), file, target, speed);
+
+        TrafficReplayer replayer = new TrafficReplayer(HttpClient.newHttpClient(), objectMapper, target, speed,
+                apiKeys, Duration.ofMillis(timeoutMs));
+        ReplayReport report = replayer.replay(capture);
+        print(report);
+        return compareWithBaseline(report);
+    }
+
+    private int compareWithBaseline(ReplayReport report) throws Exception {
+        if (baseline.isBlank()) return 0;
+        Path path = Path.of(baseline);
+        if (!Files.exists(path)) {
+            objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), report);
+            log.info("No baseline at {}; wrote this run as the baseline", path);
+            return 0;
+        }
+        ReplayReport previous = objectMapper.readValue(path.toFile(), ReplayReport.class);
+        List<String> regressions = report.regressionsAgainst(previous, tolerance, noiseFloorMs);
+        if (regressions.isEmpty()) {
+            log.info("No regressions against {} (tolerance {}%)", path, Math.round(tolerance * 100));
+            return 0;
+        }
+        regressions.forEach(r -> log.warn("Regression: {}", r));
+        return 2;
+    }
+
+    private void print(ReplayReport report) {
+        log.info(String.format("%-45s %7s %6s %6s %9s %9s %9s %9s",
+                "route", "ok", "4xx", "5xx", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        Map<String, ReplayReport.RouteStats> sorted = new TreeMap<>(report.routes());
+        sorted.forEach((route, s) -> log.info(String.format("%-45s %7d %6d %6d %9.1f %9.1f %9.1f %9.1f",
+                route, s.count(), s.rejected(), s.errors(), s.p50(), s.p90(), s.p99(), s.max())));
+    }
+}
@@ -0,0 +1,57 @@
+package com.northbay.ragchat.config;
+
+import com.northbay.ragchat.capture.CapturedRequest;
+import com.northbay.ragchat.dto.ChatImportResult;
+import com.northbay.ragchat.dto.ChatMessageDTO;
+import com.northbay.ragchat.dto.ChatSessionDTO;
+import com.northbay.ragchat.service.writebehind.PendingMessage;
+import org.openapitools.jackson.nullable.JsonNullable;
+import org.openapitools.jackson.nullable.JsonNullableModule;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Runtime hints for the GraalVM native image ({@code -Pnative}).
+ * <p>
+ * Spring AOT already covers beans, controller signatures, JPA entities and the
+ * MapStruct mapper (a generated {@code @Component}); Lombok leaves nothing to
+ * reflect on at runtime. What remains are types the code reaches reflectively
+ * itself: JSON written and read with the {@code ObjectMapper} outside controller
+ * signatures, {@code JsonNullable} fields of the generated API models, the JDK
+ * proxies of the SQL instrumentation and classpath resources read at runtime.
+ */
+public class AppRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindings.registerReflectionHints(hints.reflection(),
+                ChatMessageDTO.class, ChatSessionDTO.class, ChatImportResult.class,
+                PendingMessage.class, CapturedRequest.class);
+        hints.reflection().registerType(
+                TypeReference.of("com.northbay.ragchat.service.SessionArchiveService$ArchivedMessage"),
+                MemberCategory.values());
+
+        hints.reflection().registerType(JsonNullable.class, MemberCategory.values());
+        hints.reflection().registerType(JsonNullableModule.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        for (Class<?> type : List.of(Connection.class, Statement.class, PreparedStatement.class,
+                CallableStatement.class, ResultSet.class)) {
+            hints.proxies().registerJdkProxy(type);
+        }
+
+        hints.resources().registerPattern("static/openapi/*.yaml");
+        hints.resources().registerPattern("db/migration/*.sql");
+    }
+}
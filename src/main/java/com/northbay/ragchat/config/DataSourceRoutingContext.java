@@ -0,0 +1,29 @@
+package com.northbay.ragchat.config;
+
+/**
+ * Thread-bound routing hint for {@link ReplicaRoutingDataSource}.
+ * <p>
+ * Read-only transactions are normally served by a replica. Service methods
+ * that must read their own recent writes call {@link #forcePrimary()} before
+ * their first query and {@link #clear()} when done; because connections are
+ * acquired lazily, the hint still applies to the surrounding transaction.
+ */
+public final class DataSourceRoutingContext {
+
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+
+    private DataSourceRoutingContext() {
+    }
+
+    public static void forcePrimary() {
+        FORCE_PRIMARY.set(Boolean.TRUE);
+    }
+
+    public static boolean isPrimaryForced() {
+        return Boolean.TRUE.equals(FORCE_PRIMARY.get());
+    }
+
+    public static void clear() {
+        FORCE_PRIMARY.remove();
+    }
+}
@@ -0,0 +1,123 @@
+package com.northbay.ragchat.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routing {@link DataSource} sending read-only transactions to replica pools.
+ * <p>
+ * Writes, non-transactional access and anything marked with
+ * {@link DataSourceRoutingContext#forcePrimary()} go to the primary. Read-only
+ * transactions are spread round-robin over the replicas that passed their last
+ * health check (reachable and within {@code max-lag-seconds} of the primary);
+ * when no replica is healthy, reads fall back to the primary.
+ * <p>
+ * Must be wrapped in a {@code LazyConnectionDataSourceProxy}: the read-only
+ * flag of a transaction is only known after the transaction manager has
+ * started it, so the physical connection has to be fetched lazily.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private static final String LAG_SQL = """
+            SELECT CASE
+                     WHEN NOT pg_is_in_recovery() THEN 0
+                     WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                     ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END
+            """;
+
+    private final List<Replica> replicas;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools, double maxLagSeconds) {
+        this.replicas = replicaPools.stream().map(Replica::new).toList();
+        this.maxLagSeconds = maxLagSeconds;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach(r -> targets.put(r.key(), r.pool));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (DataSourceRoutingContext.isPrimaryForced()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (candidate.healthy) {
+                return candidate.key();
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * Probes every replica for reachability and replication lag.
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.health-check-interval-ms:5000}")
+    public void checkReplicaHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            String reason = "";
+            try (Connection con = replica.pool.getConnection();
+                 Statement st = con.createStatement()) {
+                st.setQueryTimeout(2);
+                try (ResultSet rs = st.executeQuery(LAG_SQL)) {
+                    rs.next();
+                    double lag = rs.getDouble(1);
+                    healthy = lag <= maxLagSeconds;
+                    if (!healthy) reason = "lag " + lag + "s";
+                }
+            } catch (Exception e) {
+                healthy = false;
+                reason = e.getMessage();
+            }
+            if (healthy != replica.healthy) {
+                log.warn("Replica {} is now {} {}", replica.pool.getPoolName(), healthy ? "UP" : "DOWN", reason);
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    /**
+     * Closes the replica pools; the primary pool is managed by the container.
+     */
+    public void close() {
+        replicas.forEach(r -> r.pool.close());
+    }
+
+    private static final class Replica {
+        private final HikariDataSource pool;
+        private volatile boolean healthy = true;
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        String key() {
+            return pool.getPoolName();
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.northbay.ragchat.config;
 
+import com.northbay.ragchat.diagnostics.HttpRequestEvent;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
 import java.io.IOException;
@@ -11,22 +15,59 @@ import java.util.UUID;
  * to each incoming HTTP request for logging and tracing purposes.
  * <p>
  * If the client provides an {@code X-Request-Id} header, it is reused;
- * otherwise, a new UUID is generated. The ID is stored in the
+ * otherwise the ID of the request's trace is used, so a log line leads
+ * straight to the trace. Only when tracing is disabled is a new UUID
+ * generated. The ID is echoed in the response and stored in the
  * Mapped Diagnostic Context (MDC) so it appears automatically
  * in all log entries for the current request.
+ * <p>
+ * Each request is also recorded as a {@link HttpRequestEvent} for JDK Flight Recorder.
  */
 @Component
 public class RequestIdFilter implements Filter {
+
+    private static final String MDC_KEY = "request_id";
+
+    private final Tracer tracer;
+
+    public RequestIdFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Returns the ID of the request being processed on the current thread, or {@code null} outside a request.
+     */
+    public static String currentRequestId() {
+        return MDC.get(MDC_KEY);
+    }
+
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException, ServletException {
+        HttpRequestEvent event = new HttpRequestEvent();
+        event.begin();
+        HttpServletRequest request = (HttpServletRequest) req;
+        String reqId = request.getHeader("X-Request-Id");
         try {
-            HttpServletRequest request = (HttpServletRequest) req;
-            String reqId = request.getHeader("X-Request-Id");
-            if (reqId == null || reqId.isEmpty()) reqId = UUID.randomUUID().toString();
-            MDC.put("request_id", reqId);
+            Span span = tracer.currentSpan();
+            String traceId = span == null ? null : span.context().traceId();
+            if (reqId == null || reqId.isEmpty()) {
+                reqId = traceId == null || traceId.isEmpty() ? UUID.randomUUID().toString() : traceId;
+            } else if (span != null) {
+                span.tag("request.id", reqId);
+            }
+            MDC.put(MDC_KEY, reqId);
+            ((HttpServletResponse) res).setHeader("X-Request-Id", reqId);
             chain.doFilter(req, res);
         } finally {
-            MDC.remove("request_id");
+            MDC.remove(MDC_KEY);
+            event.end();
+            if (event.shouldCommit()) {
+                event.requestId = reqId;
+                event.method = request.getMethod();
+                event.path = request.getRequestURI();
+                event.status = ((HttpServletResponse) res).getStatus();
+                event.commit();
+            }
         }
     }
 }
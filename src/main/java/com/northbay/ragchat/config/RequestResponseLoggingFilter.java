@@ -1,11 +1,13 @@
 package com.northbay.ragchat.config;
 
+import com.northbay.ragchat.diagnostics.SqlStatementStats;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
@@ -14,6 +16,8 @@ import org.springframework.web.util.ContentCachingResponseWrapper;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Servlet filter for logging HTTP request and response details.
@@ -23,47 +27,108 @@ import java.time.Instant;
  * <p>
  * Uses {@link ContentCachingRequestWrapper} and {@link ContentCachingResponseWrapper}
  * to safely read request and response bodies without consuming the streams.
+ * Streaming endpoints (see {@link #STREAMING_PATHS}) are never wrapped, since
+ * caching their bodies would buffer the whole stream in memory; only their
+ * metadata is logged.
+ * <p>
+ * Every line also carries the SQL statements, rows and database time of the
+ * request (see {@link SqlStatementStats}), both in the message and as MDC
+ * fields next to {@code duration_ms} in the JSON log.
  */
 @Component
 public class RequestResponseLoggingFilter extends OncePerRequestFilter {
 
     private static final Logger log = LoggerFactory.getLogger("api-logger");
 
+    private static final List<String> STREAMING_PATHS = List.of(
+            "/api/v1/export",
+            "/api/v1/import",
+            "/api/v1/stream",
+            "/api/v1/admin/jfr"
+    );
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain)
             throws ServletException, IOException {
 
+        if (STREAMING_PATHS.stream().anyMatch(request.getRequestURI()::startsWith)) {
+            long start = System.currentTimeMillis();
+            SqlStatementStats sql = SqlStatementStats.open();
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                sql.close();
+                long duration = System.currentTimeMillis() - start;
+                withMdc(request, response, duration, sql, () -> log.info(
+                        "timestamp={} method={} path={} status={} duration_ms={} db_statements={} db_rows={} "
+                                + "db_time_ms={} streaming=true",
+                        Instant.now(),
+                        request.getMethod(),
+                        request.getRequestURI(),
+                        response.getStatus(),
+                        duration,
+                        sql.statements(),
+                        sql.rows(),
+                        sql.dbTimeMs()));
+            }
+            return;
+        }
+
         // Wrap both request and response so content can be read later
         ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
         ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
 
         long start = System.currentTimeMillis();
+        SqlStatementStats sql = SqlStatementStats.open();
 
         try {
             filterChain.doFilter(requestWrapper, responseWrapper);
         } finally {
+            sql.close();
             long duration = System.currentTimeMillis() - start;
 
             String requestBody = getContentAsString(requestWrapper.getContentAsByteArray());
             String responseBody = getContentAsString(responseWrapper.getContentAsByteArray());
 
-            log.info(
-                    "timestamp={} method={} path={} status={} duration_ms={} requestBody={} responseBody={}",
+            withMdc(request, response, duration, sql, () -> log.info(
+                    "timestamp={} method={} path={} status={} duration_ms={} db_statements={} db_rows={} "
+                            + "db_time_ms={} requestBody={} responseBody={}",
                     Instant.now(),
                     request.getMethod(),
                     request.getRequestURI(),
                     response.getStatus(),
                     duration,
+                    sql.statements(),
+                    sql.rows(),
+                    sql.dbTimeMs(),
                     truncate(requestBody),
                     truncate(responseBody)
-            );
+            ));
 
             responseWrapper.copyBodyToResponse(); // send response back
         }
     }
 
+    private void withMdc(HttpServletRequest request, HttpServletResponse response, long duration,
+                         SqlStatementStats sql, Runnable logCall) {
+        Map<String, String> fields = Map.of(
+                "method", request.getMethod(),
+                "path", request.getRequestURI(),
+                "status", String.valueOf(response.getStatus()),
+                "duration_ms", String.valueOf(duration),
+                "db_statements", String.valueOf(sql.statements()),
+                "db_rows", String.valueOf(sql.rows()),
+                "db_time_ms", String.valueOf(sql.dbTimeMs()));
+        fields.forEach(MDC::put);
+        try {
+            logCall.run();
+        } finally {
+            fields.keySet().forEach(MDC::remove);
+        }
+    }
+
     private String getContentAsString(byte[] content) {
         if (content == null || content.length == 0) return "";
         return new String(content, StandardCharsets.UTF_8)
@@ -1,6 +1,7 @@
 package com.northbay.ragchat.config;
 
 import com.northbay.ragchat.security.ApiKeyFilter;
+import com.northbay.ragchat.security.ConcurrencyLimitFilter;
 import com.northbay.ragchat.security.RateLimitFilter;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -9,7 +10,12 @@ import org.springframework.context.annotation.Configuration;
  * Spring configuration class for registering and ordering security filters.
  * <p>
  * Ensures that all API endpoints under {@code /api/*} are protected by both
- * API key validation and rate limiting filters, applied in the correct sequence.
+ * API key validation and rate limiting filters, applied in the correct sequence,
+ * followed by adaptive concurrency limiting so that only authenticated requests
+ * within their rate limit occupy a concurrency slot.
+ * <p>
+ * Actuator endpoints under {@code /actuator/*} also require an API key, since
+ * metrics expose per-tenant and LLM queue data; only the health probes stay public.
  */
 @Configuration
 public class SecurityConfig {
@@ -18,7 +24,7 @@ public class SecurityConfig {
     public FilterRegistrationBean<ApiKeyFilter> apiKeyFilterRegistration(ApiKeyFilter filter) {
         FilterRegistrationBean<ApiKeyFilter> reg = new FilterRegistrationBean<>(filter);
         reg.setOrder(1);
-        reg.addUrlPatterns("/api/*");
+        reg.addUrlPatterns("/api/*", "/actuator/*");
         return reg;
     }
 
@@ -29,4 +35,12 @@ public class SecurityConfig {
         reg.addUrlPatterns("/api/*");
         return reg;
     }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilterRegistration(ConcurrencyLimitFilter filter) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> reg = new FilterRegistrationBean<>(filter);
+        reg.setOrder(3);
+        reg.addUrlPatterns("/api/*");
+        return reg;
+    }
 }
@@ -0,0 +1,29 @@
+package com.northbay.ragchat.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Spring configuration for OpenTelemetry tracing.
+ * <p>
+ * Spring Boot creates spans for inbound requests and {@code WebClient} calls
+ * (propagating W3C {@code traceparent} upstream) and exports them over OTLP
+ * when {@code management.otlp.tracing.endpoint} is set. With
+ * {@code app.tracing.log-spans=true} finished spans are also written to the
+ * log, so traces can be inspected without a collector.
+ */
+@Slf4j
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.log-spans", havingValue = "true")
+    public SpanExporter loggingSpanExporter() {
+        log.info("Logging finished trace spans");
+        return LoggingSpanExporter.create();
+    }
+}
@@ -0,0 +1,33 @@
+package com.northbay.ragchat.controller;
+
+import com.northbay.ragchat.api.BatchApi;
+import com.northbay.ragchat.model.BatchRequest;
+import com.northbay.ragchat.model.BatchResponse;
+import com.northbay.ragchat.service.BatchService;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controller executing several chat operations in one request.
+ */
+@RestController
+public class BatchController implements BatchApi {
+
+    private final BatchService batchService;
+
+    public BatchController(BatchService batchService) {
+        this.batchService = batchService;
+    }
+
+    /**
+     * Runs the operations of the batch in order.
+     *
+     * @param request the ordered operations
+     * @return a ResponseEntity containing one result per operation
+     */
+    @Override
+    public ResponseEntity<BatchResponse> executeBatch(@Valid BatchRequest request) {
+        return ResponseEntity.ok(batchService.execute(request.getOperations()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.northbay.ragchat.controller;
+
+import com.northbay.ragchat.api.BatchJobsApi;
+import com.northbay.ragchat.diagnostics.QueryBudget;
+import com.northbay.ragchat.model.BatchJob;
+import com.northbay.ragchat.model.BatchJobCreateRequest;
+import com.northbay.ragchat.model.BatchJobItem;
+import com.northbay.ragchat.service.batchjob.BatchJobService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Controller for offline LLM batch jobs.
+ */
+@RestController
+public class BatchJobsController implements BatchJobsApi {
+
+    private final BatchJobService batchJobService;
+
+    public BatchJobsController(BatchJobService batchJobService) {
+        this.batchJobService = batchJobService;
+    }
+
+    /**
+     * Queues the items of a new job; they are answered in the background.
+     *
+     * @param request the (session, prompt) items
+     * @return a ResponseEntity containing the queued job
+     */
+    @Override
+    public ResponseEntity<BatchJob> createBatchJob(@Valid BatchJobCreateRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchJobService.create(request.getItems()));
+    }
+
+    /**
+     * Returns the status and progress of a job.
+     *
+     * @param id the ID of the job
+     * @return a ResponseEntity containing the job
+     */
+    @Override
+    @QueryBudget(1)
+    public ResponseEntity<BatchJob> getBatchJob(Integer id) {
+        return ResponseEntity.ok(batchJobService.get(id.longValue()));
+    }
+
+    /**
+     * Cancels the items of a job that have not started yet.
+     *
+     * @param id the ID of the job
+     * @return a ResponseEntity containing the job after cancellation
+     */
+    @Override
+    public ResponseEntity<BatchJob> cancelBatchJob(Integer id) {
+        return ResponseEntity.ok(batchJobService.cancel(id.longValue()));
+    }
+
+    /**
+     * Lists the items of a job in item order.
+     *
+     * @param id     the ID of the job
+     * @param status only items with this status, if given
+     * @param page   the page number to retrieve
+     * @param size   the number of items per page
+     * @return a ResponseEntity containing the items
+     */
+    @Override
+    @QueryBudget(2)
+    public ResponseEntity<List<BatchJobItem>> listBatchJobItems(
+            Integer id,
+            @Valid String status,
+            @Valid Integer page,
+            @Valid Integer size) {
+        return ResponseEntity.ok(batchJobService.listItems(id.longValue(), status, page, size));
+    }
+}
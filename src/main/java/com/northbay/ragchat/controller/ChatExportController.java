@@ -0,0 +1,99 @@
+package com.northbay.ragchat.controller;
+
+import com.northbay.ragchat.repository.ChatSessionRepository;
+import com.northbay.ragchat.service.ChatExportService;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Controller streaming conversation histories as NDJSON for compliance exports.
+ * <p>
+ * These endpoints are not part of the generated contract: the generated
+ * interfaces return fully materialized bodies, whereas exports are written
+ * incrementally through a {@link StreamingResponseBody}. Pass {@code gzip=true}
+ * to receive a gzip file ({@code application/gzip}, {@code .ndjson.gz}). It is
+ * deliberately not sent with {@code Content-Encoding: gzip}, which clients
+ * decode transparently and would save as plain NDJSON under the {@code .gz} name.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/export")
+public class ChatExportController {
+
+    private static final String APPLICATION_GZIP_VALUE = "application/gzip";
+
+    private final ChatExportService exportService;
+    private final ChatSessionRepository sessionRepo;
+
+    public ChatExportController(ChatExportService exportService, ChatSessionRepository sessionRepo) {
+        this.exportService = exportService;
+        this.sessionRepo = sessionRepo;
+    }
+
+    /**
+     * Streams one session and all of its messages.
+     *
+     * @param id   the ID of the chat session
+     * @param gzip whether to gzip-compress the stream
+     */
+    @GetMapping(value = "/chat-sessions/{id}", produces = {MediaType.APPLICATION_NDJSON_VALUE, APPLICATION_GZIP_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportSession(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        if (!sessionRepo.existsById(id)) {
+            throw new EntityNotFoundException("Chat session not found");
+        }
+        return stream("session-" + id, gzip, out -> exportService.exportSession(id, out));
+    }
+
+    /**
+     * Streams every session of the given owner together with their messages.
+     *
+     * @param owner the owner whose sessions are exported
+     * @param gzip  whether to gzip-compress the stream
+     */
+    @GetMapping(value = "/chat-sessions", produces = {MediaType.APPLICATION_NDJSON_VALUE, APPLICATION_GZIP_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportOwnerSessions(
+            @RequestParam("owner") String owner,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip) {
+        String name = "owner-" + owner.replaceAll("[^A-Za-z0-9._-]", "_");
+        return stream(name, gzip, out -> exportService.exportOwner(owner, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, boolean gzip, ExportWriter writer) {
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 64 * 1024);
+                writer.write(gzipOut);
+                gzipOut.finish();
+            } else {
+                writer.write(out);
+            }
+        };
+
+        log.info("Starting NDJSON export {} (gzip={})", name, gzip);
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType(APPLICATION_GZIP_VALUE) : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"" + name + (gzip ? ".ndjson.gz" : ".ndjson") + "\"")
+                .body(body);
+    }
+
+    @FunctionalInterface
+    private interface ExportWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
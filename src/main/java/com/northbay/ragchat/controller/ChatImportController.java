@@ -0,0 +1,72 @@
+package com.northbay.ragchat.controller;
+
+import com.northbay.ragchat.dto.ChatImportResult;
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.service.ChatImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Controller for bulk-importing conversation history.
+ * <p>
+ * The request body is streamed straight into PostgreSQL {@code COPY} and is
+ * never buffered, which is why this endpoint reads the raw servlet input
+ * stream instead of going through the generated contract. Gzip-compressed
+ * uploads are accepted with {@code Content-Encoding: gzip}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/import")
+public class ChatImportController {
+
+    private final ChatImportService importService;
+
+    public ChatImportController(ChatImportService importService) {
+        this.importService = importService;
+    }
+
+    /**
+     * Imports sessions and messages from an NDJSON or CSV body.
+     *
+     * @param format  {@code ndjson} or {@code csv}; inferred from the content type when omitted
+     * @param request the raw HTTP request whose body is streamed into the import
+     * @return counts and throughput of the import
+     */
+    @PostMapping("/chat-sessions")
+    public ResponseEntity<ChatImportResult> importChatSessions(
+            @RequestParam(value = "format", required = false) String format,
+            HttpServletRequest request) throws IOException {
+
+        ChatImportService.Format resolved = resolveFormat(format, request.getContentType());
+        InputStream body = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            body = new GZIPInputStream(body, 64 * 1024);
+        }
+
+        log.info("Starting bulk import (format={})", resolved);
+        return ResponseEntity.ok(importService.importStream(body, resolved));
+    }
+
+    private ChatImportService.Format resolveFormat(String format, String contentType) {
+        if (format != null) {
+            try {
+                return ChatImportService.Format.valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ApiException("INVALID_INPUT", "Unsupported import format: " + format);
+            }
+        }
+        return contentType != null && contentType.startsWith("text/csv")
+                ? ChatImportService.Format.CSV
+                : ChatImportService.Format.NDJSON;
+    }
+}
@@ -0,0 +1,53 @@
+package com.northbay.ragchat.controller;
+
+import com.northbay.ragchat.repository.ChatSessionRepository;
+import com.northbay.ragchat.service.push.SessionEventHub;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Controller pushing new messages of a session as Server-Sent Events.
+ * <p>
+ * Like the export endpoints, this is not part of the generated contract, since
+ * the generated interfaces cannot describe an open-ended event stream. Each
+ * {@code message} event carries a {@code ChatMessageDTO} and uses the
+ * message's {@code seq} as event id, so a reconnecting {@code EventSource}
+ * resumes after the last message it received.
+ */
+@RestController
+@RequestMapping("/api/v1/stream")
+public class ChatMessageStreamController {
+
+    private final SessionEventHub eventHub;
+    private final ChatSessionRepository sessionRepo;
+
+    public ChatMessageStreamController(SessionEventHub eventHub, ChatSessionRepository sessionRepo) {
+        this.eventHub = eventHub;
+        this.sessionRepo = sessionRepo;
+    }
+
+    /**
+     * Streams messages added to a session from now on.
+     *
+     * @param id          the ID of the chat session
+     * @param afterSeq    also send stored messages with a greater {@code seq} first
+     * @param lastEventId set by reconnecting clients; takes precedence over {@code afterSeq}
+     */
+    @GetMapping(value = "/chat-sessions/{id}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessages(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "afterSeq", required = false) Long afterSeq,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        if (!sessionRepo.existsById(id)) {
+            throw new EntityNotFoundException("Chat session not found");
+        }
+        return eventHub.subscribe(id, lastEventId != null ? lastEventId : afterSeq);
+    }
+}
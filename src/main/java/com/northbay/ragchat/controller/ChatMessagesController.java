@@ -1,10 +1,16 @@
 package com.northbay.ragchat.controller;
 
 import com.northbay.ragchat.api.ChatMessagesApi;
+import com.northbay.ragchat.diagnostics.QueryBudget;
 import com.northbay.ragchat.model.ChatMessageCreateRequest;
 import com.northbay.ragchat.model.ChatMessageDTO;
 import com.northbay.ragchat.model.ChatMessagePage;
 import com.northbay.ragchat.service.ChatService;
+import com.northbay.ragchat.service.IdempotencyService;
+import com.northbay.ragchat.service.TaggedMessagePage;
+import com.northbay.ragchat.util.ETagUtil;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import jakarta.validation.Valid;
@@ -16,42 +22,74 @@ import jakarta.validation.Valid;
 public class ChatMessagesController implements ChatMessagesApi {
 
     private final ChatService chatService;
+    private final IdempotencyService idempotencyService;
 
-    public ChatMessagesController(ChatService chatService) {
+    public ChatMessagesController(ChatService chatService, IdempotencyService idempotencyService) {
         this.chatService = chatService;
+        this.idempotencyService = idempotencyService;
     }
 
     /**
      * Retrieves messages for a specific chat session with pagination support.
+     * Answers with 304 when {@code If-None-Match} matches the session's current version on the primary;
+     * a page is tagged with the version it was read at.
      *
-     * @param id   the ID of the chat session
-     * @param page the page number to retrieve
-     * @param size the number of messages per page
+     * @param id          the ID of the chat session
+     * @param page        the page number to retrieve
+     * @param size        the number of messages per page
+     * @param afterSeq    only return messages after this sequence number, if given
+     * @param ifNoneMatch the ETag of a previously fetched page, if any
      * @return a ResponseEntity containing the paginated chat messages
      */
     @Override
+    @QueryBudget(4)
     public ResponseEntity<ChatMessagePage> getMessages(
             Integer id,
             @Valid Integer page,
-            @Valid Integer size) {
+            @Valid Integer size,
+            @Valid Long afterSeq,
+            String ifNoneMatch) {
 
-        ChatMessagePage response = chatService.getMessages(id.longValue(), page, size);
-        return ResponseEntity.ok(response);
+        String etag = chatService.getMessagesETag(id.longValue());
+        if (ETagUtil.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        // tagged with the version the page was read at, which may be older than etag on a lagging replica
+        TaggedMessagePage response = chatService.getTaggedMessages(id.longValue(), page, size, afterSeq);
+        return ResponseEntity.ok().eTag(response.etag()).cacheControl(CacheControl.noCache()).body(response.page());
     }
 
     /**
      * Adds a new message to the specified chat session.
+     * With an {@code Idempotency-Key}, retries of the same request are answered
+     * with the original response instead of storing the message (and calling the LLM) again.
      *
-     * @param id      the ID of the chat session
-     * @param request the message creation request
+     * @param id             the ID of the chat session
+     * @param request        the message creation request
+     * @param idempotencyKey optional client-chosen key identifying this request across retries
      * @return a ResponseEntity containing the created chat message
      */
     @Override
+    @QueryBudget(9)
     public ResponseEntity<ChatMessageDTO> addMessage(
             Integer id,
-            @Valid ChatMessageCreateRequest request) {
+            @Valid ChatMessageCreateRequest request,
+            String idempotencyKey) {
 
-        ChatMessageDTO saved = chatService.addMessage(id.longValue(), request);
-        return ResponseEntity.status(201).body(saved);
+        if (idempotencyKey == null) {
+            ChatMessageDTO saved = chatService.addMessage(id.longValue(), request);
+            return ResponseEntity.status(201).body(saved);
+        }
+
+        String context = request.getContext() != null && request.getContext().isPresent()
+                ? request.getContext().get()
+                : null;
+        IdempotencyService.Result<ChatMessageDTO> result = idempotencyService.execute(idempotencyKey,
+                IdempotencyService.fingerprint("addMessage", id, request.getSender(), request.getContent(), context),
+                ChatMessageDTO.class,
+                () -> chatService.addMessage(id.longValue(), request));
+        return ResponseEntity.status(201)
+                .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                .body(result.value());
     }
 }
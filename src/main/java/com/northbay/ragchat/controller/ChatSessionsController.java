@@ -1,10 +1,14 @@
 package com.northbay.ragchat.controller;
 
 import com.northbay.ragchat.api.ChatSessionsApi;
+import com.northbay.ragchat.diagnostics.QueryBudget;
 import com.northbay.ragchat.model.ChatSessionCreateRequest;
 import com.northbay.ragchat.model.ChatSessionDTO;
 import com.northbay.ragchat.model.ChatSessionUpdateRequest;
 import com.northbay.ragchat.service.ChatService;
+import com.northbay.ragchat.util.ETagUtil;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import jakarta.validation.Valid;
@@ -33,6 +37,7 @@ public class ChatSessionsController implements ChatSessionsApi {
      * @return HTTP 201 with created session in body and Location header
      */
     @Override
+    @QueryBudget(1)
     public ResponseEntity<ChatSessionDTO> createChatSession(
             @Valid ChatSessionCreateRequest request) {
         log.info("Creating new chat session for owner: {}", request.getOwner()); // ✅ LOGGED
@@ -41,16 +46,23 @@ public class ChatSessionsController implements ChatSessionsApi {
 
     /**
      * Get all sessions for the user (or all sessions if system).
+     * Answers with 304 when {@code If-None-Match} matches the current list.
      */
     @Override
-    public ResponseEntity<List<ChatSessionDTO>> listChatSessions(String owner) {
-        return ResponseEntity.ok(chatService.listChatSessions(owner));
+    @QueryBudget(2)
+    public ResponseEntity<List<ChatSessionDTO>> listChatSessions(String owner, String ifNoneMatch) {
+        String etag = chatService.getSessionsETag(owner);
+        if (ETagUtil.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(chatService.listChatSessions(owner));
     }
 
     /**
      * Rename a session.
      */
     @Override
+    @QueryBudget(4)
     public ResponseEntity<ChatSessionDTO> updateChatSession(
             Integer id, @Valid ChatSessionUpdateRequest request) {
         return ResponseEntity.ok(chatService.updateChatSession(id.longValue(), request));
@@ -60,6 +72,7 @@ public class ChatSessionsController implements ChatSessionsApi {
      * Delete a session.
      */
     @Override
+    @QueryBudget(4)
     public ResponseEntity<Void> deleteChatSession(Integer id) {
         chatService.deleteChatSession(id.longValue());
         return ResponseEntity.noContent().build();
@@ -70,7 +83,12 @@ public class ChatSessionsController implements ChatSessionsApi {
      * @return
      */
     @Override
-    public ResponseEntity<List<ChatSessionDTO>> listFavoriteSessions() {
-        return ResponseEntity.ok(chatService.listFavoriteSessions());
+    @QueryBudget(2)
+    public ResponseEntity<List<ChatSessionDTO>> listFavoriteSessions(String ifNoneMatch) {
+        String etag = chatService.getFavoritesETag();
+        if (ETagUtil.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(chatService.listFavoriteSessions());
     }
 }
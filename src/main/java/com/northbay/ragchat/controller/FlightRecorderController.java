@@ -0,0 +1,120 @@
+package com.northbay.ragchat.controller;
+
+import com.northbay.ragchat.diagnostics.FlightRecorderService;
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.security.ApiKeyContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Admin endpoints to start, stop and dump the JDK Flight Recorder recording.
+ * <p>
+ * Not part of the generated contract, since dumps are binary {@code .jfr}
+ * files streamed from disk. Only API keys listed in {@code app.jfr.admin-keys}
+ * may use them; with no admin keys configured every call is answered with
+ * {@code 403}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/admin/jfr")
+public class FlightRecorderController {
+
+    private final FlightRecorderService flightRecorder;
+    private final Set<String> adminKeys;
+
+    public FlightRecorderController(FlightRecorderService flightRecorder,
+                                    @Value("${app.jfr.admin-keys:}") String adminKeys) {
+        this.flightRecorder = flightRecorder;
+        this.adminKeys = Arrays.stream(adminKeys.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    @GetMapping
+    public FlightRecorderService.Status status() {
+        requireAdmin();
+        return flightRecorder.status();
+    }
+
+    /**
+     * Starts a recording, e.g. with {@code settings=profile} for a short, detailed investigation.
+     */
+    @PostMapping("/start")
+    public FlightRecorderService.Status start(@RequestParam(required = false) String settings) {
+        requireAdmin();
+        try {
+            return flightRecorder.start(settings);
+        } catch (IllegalArgumentException e) {
+            throw new ApiException("INVALID_INPUT", e.getMessage());
+        }
+    }
+
+    @PostMapping("/stop")
+    public FlightRecorderService.Status stop() {
+        requireAdmin();
+        return flightRecorder.stop();
+    }
+
+    /**
+     * Streams the recorded data as a {@code .jfr} file for JDK Mission Control or {@code jfr print}.
+     */
+    @GetMapping("/dump")
+    public ResponseEntity<StreamingResponseBody> dump() {
+        requireAdmin();
+        Path file;
+        try {
+            file = flightRecorder.dump();
+        } catch (IllegalStateException e) {
+            throw new ApiException(HttpStatus.CONFLICT, "INVALID_INPUT", e.getMessage());
+        }
+        String filename = "ragchat-" + Instant.now().truncatedTo(ChronoUnit.SECONDS).toString().replace(':', '-')
+                + ".jfr";
+        log.info("Dumping JFR recording ({} bytes)", sizeOf(file));
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+
+    private void requireAdmin() {
+        if (!adminKeys.contains(ApiKeyContext.current())) {
+            throw new ApiException(HttpStatus.FORBIDDEN, "INVALID_API_KEY",
+                    "This API key may not manage flight recordings");
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.northbay.ragchat.controller;
 
 import com.northbay.ragchat.api.HealthApi;
+import com.northbay.ragchat.exception.ApiException;
 import com.northbay.ragchat.model.HealthCheck200Response;
+import com.northbay.ragchat.service.readiness.DatabaseHealthIndicator;
+import com.northbay.ragchat.service.readiness.WarmUpRunner;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -9,13 +13,32 @@ import org.springframework.web.bind.annotation.RestController;
  * Controller for application health checks.
  * <p>
  * Provides an endpoint to verify that the service and its dependencies
- * (such as the database) are operational.
+ * (such as the database) are operational. The service is reported as
+ * unavailable until its warm-up has finished, or if it failed; the database status comes
+ * from a real, cached check (see {@link DatabaseHealthIndicator}).
  */
 @RestController
 public class HealthController implements HealthApi {
 
+    private final WarmUpRunner warmUpRunner;
+    private final DatabaseHealthIndicator database;
+
+    public HealthController(WarmUpRunner warmUpRunner, DatabaseHealthIndicator database) {
+        this.warmUpRunner = warmUpRunner;
+        this.database = database;
+    }
+
     @Override
     public ResponseEntity<HealthCheck200Response> healthCheck() {
+        if (warmUpRunner.getFailure() != null) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "NOT_READY", "Warm-up failed");
+        }
+        if (!warmUpRunner.isComplete()) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "NOT_READY", "Warm-up in progress");
+        }
+        if (!database.isUp()) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "NOT_READY", "Database unavailable");
+        }
         HealthCheck200Response resp = new HealthCheck200Response();
         resp.setStatus("UP");
         resp.setDatabase("UP");
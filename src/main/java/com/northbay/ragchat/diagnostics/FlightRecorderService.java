@@ -0,0 +1,148 @@
+package com.northbay.ragchat.diagnostics;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Controls the application's JDK Flight Recorder recording.
+ * <p>
+ * With {@code app.jfr.always-on=true} (the default) a recording starts with
+ * the application and keeps the last {@code max-age} (at most
+ * {@code max-size-mb}) of JVM events plus this service's own events
+ * ({@link HttpRequestEvent}, {@link SessionLookupEvent},
+ * {@link MessageInsertEvent}, {@link LlmCallEvent}, {@link RateLimitEvent}),
+ * so when latency spikes the preceding minutes can be {@link #dump() dumped}
+ * and attached to the incident. The {@code default} settings are meant for
+ * continuous production use; {@code profile} samples more and is meant for
+ * short investigations.
+ */
+@Slf4j
+@Service
+public class FlightRecorderService {
+
+    /** State of the recording, as reported by the admin endpoint. */
+    public record Status(boolean running, String settings, Instant startedAt, long maxAgeSeconds, long sizeBytes) {
+    }
+
+    private final boolean alwaysOn;
+    private final String defaultSettings;
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+
+    private Recording recording;
+    private String settings;
+
+    public FlightRecorderService(@Value("${app.jfr.always-on:true}") boolean alwaysOn,
+                                 @Value("${app.jfr.settings:default}") String defaultSettings,
+                                 @Value("${app.jfr.max-age-minutes:30}") long maxAgeMinutes,
+                                 @Value("${app.jfr.max-size-mb:250}") long maxSizeMb) {
+        this.alwaysOn = alwaysOn;
+        this.defaultSettings = defaultSettings;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (alwaysOn) {
+            start(null);
+        }
+    }
+
+    /**
+     * Starts a recording unless one is running.
+     *
+     * @param settings a JDK settings name such as {@code default} or {@code profile}; {@code null} for
+     *                 {@code app.jfr.settings}
+     * @throws IllegalArgumentException if the settings cannot be loaded
+     */
+    public synchronized Status start(String settings) {
+        if (isRunning()) {
+            return status();
+        }
+        String name = settings == null || settings.isBlank() ? defaultSettings : settings;
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(name);
+        } catch (IOException | ParseException e) {
+            throw new IllegalArgumentException("Unknown JFR settings '" + name + "': " + e.getMessage(), e);
+        }
+        Recording started = new Recording(configuration);
+        started.setName("ragchat");
+        started.setToDisk(true);
+        started.setMaxAge(maxAge);
+        started.setMaxSize(maxSizeBytes);
+        started.start();
+        if (recording != null) {
+            recording.close();
+        }
+        recording = started;
+        this.settings = name;
+        log.info("JFR recording started with '{}' settings (max age {}, max size {} MB)",
+                name, maxAge, maxSizeBytes / (1024 * 1024));
+        return status();
+    }
+
+    /**
+     * Stops the running recording. Its data can still be dumped until the next start.
+     */
+    public synchronized Status stop() {
+        if (isRunning()) {
+            recording.stop();
+            log.info("JFR recording stopped");
+        }
+        return status();
+    }
+
+    /**
+     * Writes the recorded data to a temporary {@code .jfr} file, which the caller deletes.
+     *
+     * @throws IllegalStateException if nothing has been recorded
+     */
+    public synchronized Path dump() {
+        if (recording == null || recording.getState() == RecordingState.NEW
+                || recording.getState() == RecordingState.CLOSED) {
+            throw new IllegalStateException("No JFR recording to dump");
+        }
+        try {
+            Path file = Files.createTempFile("ragchat-", ".jfr");
+            recording.dump(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized Status status() {
+        if (recording == null) {
+            return new Status(false, null, null, maxAge.toSeconds(), 0);
+        }
+        return new Status(isRunning(), settings, recording.getStartTime(), maxAge.toSeconds(), recording.getSize());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    private boolean isRunning() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+}
@@ -0,0 +1,31 @@
+package com.northbay.ragchat.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning one HTTP request through the servlet filter chain.
+ */
+@Name("com.northbay.ragchat.HttpRequest")
+@Label("HTTP Request")
+@Category({"NorthBay RAG Chat", "HTTP"})
+@Description("An HTTP request, from entering the filter chain until the response is complete")
+@StackTrace(false)
+public class HttpRequestEvent extends Event {
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status")
+    public int status;
+}
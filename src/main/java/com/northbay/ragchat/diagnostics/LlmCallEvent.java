@@ -0,0 +1,46 @@
+package com.northbay.ragchat.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event spanning one call to the LLM provider, from sending the request until the reply is parsed.
+ */
+@Name("com.northbay.ragchat.LlmCall")
+@Label("LLM Call")
+@Category({"NorthBay RAG Chat", "LLM"})
+@Description("A chat completion request to the LLM provider")
+@StackTrace(false)
+public class LlmCallEvent extends Event {
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Model")
+    public String model;
+
+    @Label("Prompt Characters")
+    public int promptChars;
+
+    @Label("Time to First Byte")
+    @Description("Time until the provider's response headers arrived; 0 if no response was received")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeToFirstByte;
+
+    @Label("Prompt Tokens")
+    public int promptTokens;
+
+    @Label("Completion Tokens")
+    public int completionTokens;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,63 @@
+package com.northbay.ragchat.diagnostics;
+
+import com.northbay.ragchat.config.RequestIdFilter;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JFR event spanning the insert of one message, from its sequence number allocation
+ * until the surrounding transaction committed. Rolled-back inserts are not recorded.
+ */
+@Name("com.northbay.ragchat.MessageInsert")
+@Label("Message Insert")
+@Category({"NorthBay RAG Chat", "Database"})
+@Description("Sequence number allocation and insert of one chat message")
+@StackTrace(false)
+public class MessageInsertEvent extends Event {
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Session Id")
+    public long sessionId;
+
+    @Label("Sequence Number")
+    public long seq;
+
+    @Label("Sender")
+    public String sender;
+
+    /**
+     * Ends and commits the event once the current transaction has committed, or right away
+     * outside a transaction. Nothing is recorded if the transaction rolls back.
+     */
+    public void commitAfterTransaction(long sessionId, Long seq, String sender) {
+        this.requestId = RequestIdFilter.currentRequestId();
+        this.sessionId = sessionId;
+        this.seq = seq == null ? 0 : seq;
+        this.sender = sender;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record();
+            }
+        });
+    }
+
+    private void record() {
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+    }
+}
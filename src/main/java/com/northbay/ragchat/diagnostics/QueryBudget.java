@@ -0,0 +1,25 @@
+package com.northbay.ragchat.diagnostics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the maximum number of SQL statements one call of a controller method may issue.
+ * <p>
+ * Budgets count every statement on the request thread, including those of
+ * filters and of {@code IdempotencyService}. Exceeding a budget is logged and
+ * counted in {@code db.query.budget.exceeded}; with
+ * {@code app.sql.enforce-budgets=true} (meant for tests) the first statement
+ * over budget fails the request, so an N+1 regression fails the build.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    /** Maximum number of statements. */
+    int value();
+}
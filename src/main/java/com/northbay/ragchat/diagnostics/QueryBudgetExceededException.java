@@ -0,0 +1,14 @@
+package com.northbay.ragchat.diagnostics;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown instead of running a statement that would exceed the request's {@link QueryBudget},
+ * when {@code app.sql.enforce-budgets=true}.
+ */
+public class QueryBudgetExceededException extends SQLException {
+
+    public QueryBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,74 @@
+package com.northbay.ragchat.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Applies {@link QueryBudget} declarations and publishes per-endpoint SQL statistics.
+ * <p>
+ * Before a handler runs, its budget is attached to the request's
+ * {@link SqlStatementStats}. Afterwards the request's statement and row counts
+ * are recorded in {@code http.server.db.statements} and {@code http.server.db.rows},
+ * tagged with the handler, and a budget overrun is logged and counted.
+ */
+@Slf4j
+@Component
+public class QueryBudgetInterceptor implements HandlerInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    public QueryBudgetInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlStatementStats stats = SqlStatementStats.current();
+        if (stats != null && handler instanceof HandlerMethod method) {
+            QueryBudget budget = method.getMethodAnnotation(QueryBudget.class);
+            if (budget != null) {
+                stats.budget(budget.value(), name(method));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        SqlStatementStats stats = SqlStatementStats.current();
+        if (stats == null || !(handler instanceof HandlerMethod method)) {
+            return;
+        }
+        String name = name(method);
+        DistributionSummary.builder("http.server.db.statements")
+                .tag("handler", name)
+                .description("SQL statements per request")
+                .register(meterRegistry)
+                .record(stats.statements());
+        DistributionSummary.builder("http.server.db.rows")
+                .tag("handler", name)
+                .description("Rows read or written per request")
+                .register(meterRegistry)
+                .record(stats.rows());
+        if (stats.overBudget()) {
+            log.warn("{} issued {} SQL statements, over its budget of {}", name, stats.statements(), stats.budget());
+            Counter.builder("db.query.budget.exceeded")
+                    .tag("handler", name)
+                    .description("Requests that issued more SQL statements than their QueryBudget")
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static String name(HandlerMethod method) {
+        return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+    }
+}
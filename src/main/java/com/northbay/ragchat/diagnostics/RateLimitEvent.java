@@ -0,0 +1,56 @@
+package com.northbay.ragchat.diagnostics;
+
+import com.northbay.ragchat.config.RequestIdFilter;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event recording an admission decision of one of the request limiters.
+ */
+@Name("com.northbay.ragchat.RateLimit")
+@Label("Rate Limit Decision")
+@Category({"NorthBay RAG Chat", "Limits"})
+@Description("A request admitted or rejected by a rate or concurrency limiter")
+@StackTrace(false)
+public class RateLimitEvent extends Event {
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Limiter")
+    @Description("api-key, concurrency-llm, concurrency-crud or llm-dispatch-<lane>")
+    public String limiter;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Allowed")
+    public boolean allowed;
+
+    @Label("Remaining")
+    @Description("Capacity left after the decision; -1 if the limiter does not report it")
+    public long remaining;
+
+    @Label("Reason")
+    public String reason;
+
+    /**
+     * Commits a decision if the event is enabled.
+     */
+    public static void record(String limiter, String path, boolean allowed, long remaining, String reason) {
+        RateLimitEvent event = new RateLimitEvent();
+        if (event.shouldCommit()) {
+            event.requestId = RequestIdFilter.currentRequestId();
+            event.limiter = limiter;
+            event.path = path;
+            event.allowed = allowed;
+            event.remaining = remaining;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.northbay.ragchat.diagnostics;
+
+import com.northbay.ragchat.config.RequestIdFilter;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event spanning the load of a chat session before a message is added.
+ */
+@Name("com.northbay.ragchat.SessionLookup")
+@Label("Session Lookup")
+@Category({"NorthBay RAG Chat", "Database"})
+@Description("Load of the chat session a message is added to")
+@StackTrace(false)
+public class SessionLookupEvent extends Event {
+
+    @Label("Request Id")
+    public String requestId;
+
+    @Label("Session Id")
+    public long sessionId;
+
+    @Label("Found")
+    public boolean found;
+
+    /**
+     * Ends the event and commits it if it is enabled and above its threshold.
+     */
+    public void commit(long sessionId, boolean found) {
+        end();
+        if (shouldCommit()) {
+            this.requestId = RequestIdFilter.currentRequestId();
+            this.sessionId = sessionId;
+            this.found = found;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.northbay.ragchat.diagnostics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL statements, rows and database time of the request running on the current thread.
+ * <p>
+ * {@link com.northbay.ragchat.config.RequestResponseLoggingFilter} opens a scope per
+ * request and {@link StatementCountingDataSource} adds every statement executed on
+ * the thread to it. A handler may declare a {@link QueryBudget}; the budget is kept
+ * here so the data source can enforce it while the request runs.
+ */
+public final class SqlStatementStats implements AutoCloseable {
+
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long rows;
+    private long dbNanos;
+    private int budget = -1;
+    private String budgetOwner;
+
+    private SqlStatementStats() {
+    }
+
+    /**
+     * Starts counting for the current thread, replacing any scope left open.
+     */
+    public static SqlStatementStats open() {
+        SqlStatementStats stats = new SqlStatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * Returns the scope of the current thread, or {@code null} outside a request.
+     */
+    public static SqlStatementStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stops counting; the collected numbers stay readable.
+     */
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Limits the number of statements of this request.
+     *
+     * @param owner the handler that declared the budget, for error messages
+     */
+    public void budget(int maxStatements, String owner) {
+        this.budget = maxStatements;
+        this.budgetOwner = owner;
+    }
+
+    public int statements() {
+        return statements;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public long dbTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(dbNanos);
+    }
+
+    /** The declared statement budget, or {@code -1} if none. */
+    public int budget() {
+        return budget;
+    }
+
+    public String budgetOwner() {
+        return budgetOwner;
+    }
+
+    public boolean overBudget() {
+        return budget >= 0 && statements > budget;
+    }
+
+    void recordStatement(long nanos) {
+        statements++;
+        dbNanos += nanos;
+    }
+
+    void recordRows(long count) {
+        rows += count;
+    }
+}
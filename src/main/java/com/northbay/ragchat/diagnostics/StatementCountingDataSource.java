@@ -0,0 +1,204 @@
+package com.northbay.ragchat.diagnostics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Data source wrapper that instruments every JDBC statement, whether issued by
+ * Hibernate, {@code JdbcTemplate} or Flyway.
+ * <p>
+ * Connections, statements and result sets are wrapped in JDK proxies. Each
+ * {@code execute*} call is timed into the {@code db.statements} metric and added
+ * to the current thread's {@link SqlStatementStats}, together with the rows it
+ * updated or the rows read from its result sets. Statements slower than
+ * {@code slow-query-ms} are logged with their SQL and the shape of their bind
+ * parameters (index and type, string lengths, never values).
+ * <p>
+ * With {@code enforce-budgets}, a statement that would exceed the request's
+ * {@link QueryBudget} fails with {@link QueryBudgetExceededException} instead
+ * of running, so tests fail at the first extra query.
+ */
+@Slf4j
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private final MeterRegistry meterRegistry;
+    private final long slowQueryNanos;
+    private final boolean enforceBudgets;
+
+    public StatementCountingDataSource(DataSource target, MeterRegistry meterRegistry,
+                                       long slowQueryMs, boolean enforceBudgets) {
+        super(target);
+        this.meterRegistry = meterRegistry;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMs);
+        this.enforceBudgets = enforceBudgets;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> statement(Statement.class, (Statement) result, null);
+                case "prepareStatement" -> statement(PreparedStatement.class, (Statement) result, (String) args[0]);
+                case "prepareCall" -> statement(CallableStatement.class, (Statement) result, (String) args[0]);
+                default -> result;
+            };
+        });
+    }
+
+    private <S extends Statement> S statement(Class<S> type, Statement statement, String preparedSql) {
+        Map<Integer, String> binds = new TreeMap<>();
+        int[] batched = {0};
+        return proxy(type, statement, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                binds.put(index, shape(args[1], name));
+            } else if (name.equals("clearParameters")) {
+                binds.clear();
+            } else if (name.equals("addBatch")) {
+                batched[0]++;
+            } else if (name.equals("clearBatch")) {
+                batched[0] = 0;
+            }
+            if (!name.startsWith("execute")) {
+                Object result = invoke(statement, method, args);
+                return name.equals("getResultSet") && result != null ? resultSet((ResultSet) result) : result;
+            }
+
+            String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 ? (String) args[0] : null;
+            SqlStatementStats stats = SqlStatementStats.current();
+            checkBudget(stats, sql);
+            long start = System.nanoTime();
+            Object result = null;
+            try {
+                result = invoke(statement, method, args);
+                return result instanceof ResultSet rs ? resultSet(rs) : result;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                long rows = updatedRows(result);
+                if (stats != null) {
+                    stats.recordStatement(nanos);
+                    stats.recordRows(rows);
+                }
+                String kind = name.equals("executeQuery") || Boolean.TRUE.equals(result) ? "query"
+                        : name.endsWith("Batch") ? "batch"
+                        : "update";
+                if (meterRegistry != null) {
+                    Timer.builder("db.statements")
+                            .tag("kind", kind)
+                            .description("JDBC statements executed")
+                            .register(meterRegistry)
+                            .record(nanos, TimeUnit.NANOSECONDS);
+                }
+                if (nanos >= slowQueryNanos) {
+                    log.warn("Slow SQL ({} ms, {}{}): {} binds=[{}]", TimeUnit.NANOSECONDS.toMillis(nanos), kind,
+                            batched[0] > 0 ? " of " + batched[0] : "", abbreviate(sql), describe(binds));
+                }
+                if (kind.equals("batch")) {
+                    batched[0] = 0;
+                }
+            }
+        });
+    }
+
+    private ResultSet resultSet(ResultSet resultSet) {
+        SqlStatementStats stats = SqlStatementStats.current();
+        if (stats == null) {
+            return resultSet;
+        }
+        return proxy(ResultSet.class, resultSet, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                stats.recordRows(1);
+            }
+            return result;
+        });
+    }
+
+    private void checkBudget(SqlStatementStats stats, String sql) throws QueryBudgetExceededException {
+        if (enforceBudgets && stats != null && stats.budget() >= 0 && stats.statements() >= stats.budget()) {
+            throw new QueryBudgetExceededException(stats.budgetOwner() + " exceeded its query budget of "
+                    + stats.budget() + " statements with: " + abbreviate(sql));
+        }
+    }
+
+    private static long updatedRows(Object result) {
+        if (result instanceof Integer n) return Math.max(n, 0);
+        if (result instanceof Long n) return Math.max(n, 0);
+        long total = 0;
+        if (result instanceof int[] counts) {
+            for (int c : counts) total += Math.max(c, 0);
+        } else if (result instanceof long[] counts) {
+            for (long c : counts) total += Math.max(c, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Describes a bind value without revealing it, e.g. {@code String(12)}, {@code Long} or {@code null}.
+     */
+    static String shape(Object value, String setter) {
+        if (value == null || setter.equals("setNull")) return "null";
+        if (value instanceof CharSequence s) return "String(" + s.length() + ")";
+        if (value instanceof byte[] b) return "bytes(" + b.length + ")";
+        return value.getClass().getSimpleName();
+    }
+
+    static String describe(Map<Integer, String> binds) {
+        return binds.entrySet().stream()
+                .map(e -> e.getKey() + ":" + e.getValue())
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String abbreviate(String sql) {
+        if (sql == null) return "";
+        String flat = sql.replaceAll("\\s+", " ").trim();
+        return flat.length() > 500 ? flat.substring(0, 500) + "..." : flat;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) ->
+                switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "Instrumented " + target;
+                    default -> handler.invoke(proxy, method, args);
+                });
+    }
+}
@@ -0,0 +1,46 @@
+package com.northbay.ragchat.diagnostics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application's {@code dataSource} bean, with or without read-replica
+ * routing, in a {@link StatementCountingDataSource} so every JDBC and JPA statement
+ * is counted. Disabled with {@code app.sql.instrumentation-enabled=false}.
+ */
+@Slf4j
+@Component
+public class StatementCountingPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final boolean enabled;
+    private final long slowQueryMs;
+    private final boolean enforceBudgets;
+
+    public StatementCountingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+                                          @Value("${app.sql.instrumentation-enabled:true}") boolean enabled,
+                                          @Value("${app.sql.slow-query-ms:200}") long slowQueryMs,
+                                          @Value("${app.sql.enforce-budgets:false}") boolean enforceBudgets) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.slowQueryMs = slowQueryMs;
+        this.enforceBudgets = enforceBudgets;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!enabled || !"dataSource".equals(beanName) || !(bean instanceof DataSource dataSource)
+                || bean instanceof StatementCountingDataSource) {
+            return bean;
+        }
+        log.info("SQL statement instrumentation enabled (slow query threshold {} ms, budgets {})",
+                slowQueryMs, enforceBudgets ? "enforced" : "reported");
+        return new StatementCountingDataSource(dataSource, meterRegistry.getIfAvailable(), slowQueryMs, enforceBudgets);
+    }
+}
@@ -0,0 +1,20 @@
+package com.northbay.ragchat.dto;
+
+/**
+ * Summary of a bulk import run.
+ *
+ * @param stagedRows      rows streamed into the staging table
+ * @param sessions        sessions created in {@code chat_sessions}
+ * @param messages        messages created in {@code chat_messages}
+ * @param skippedMessages staged messages whose session reference matched no imported session
+ * @param durationMs      wall-clock time of the whole import
+ * @param rowsPerSecond   staged rows per second over the whole import
+ */
+public record ChatImportResult(
+        long stagedRows,
+        long sessions,
+        long messages,
+        long skippedMessages,
+        long durationMs,
+        long rowsPerSecond) {
+}
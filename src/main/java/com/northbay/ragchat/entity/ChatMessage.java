@@ -1,5 +1,6 @@
 package com.northbay.ragchat.entity;
 
+import com.northbay.ragchat.service.compression.CompressedTextConverter;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.OffsetDateTime;
@@ -22,12 +23,18 @@ public class ChatMessage {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /** Position within the session (1, 2, ...), allocated from {@code chat_sessions.last_seq}. */
+    @Column(updatable = false)
+    private Long seq;
+
     private String sender;
 
     @Column(length = 2000)
+    @Convert(converter = CompressedTextConverter.class)
     private String content;
 
     @Column(length = 5000)
+    @Convert(converter = CompressedTextConverter.class)
     private String context;
 
     @Column(nullable = false, updatable = false)
@@ -42,7 +49,9 @@ public class ChatMessage {
 
     @PrePersist
     public void prePersist() {
-        this.createdAt = Instant.now();  // automatically set timestamp when saving
+        if (this.createdAt == null) {
+            this.createdAt = Instant.now();  // automatically set timestamp when saving
+        }
     }
 
     @ManyToOne(fetch = FetchType.LAZY)
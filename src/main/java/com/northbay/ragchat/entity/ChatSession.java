@@ -30,6 +30,40 @@ public class ChatSession {
     private String owner;
     private Boolean favorite;
 
+    /** Whether the session's messages currently live in {@code chat_session_archives}. */
+    private Boolean archived;
+
+    /** LLM model answering in this session; {@code null} lets {@code LlmModelRouter} choose per prompt. */
+    @Column(name = "llm_model", length = 100)
+    private String model;
+
+    /**
+     * Incremented by every change to the session or its messages; backs the
+     * ETags of the session's message pages and of the session lists. Only
+     * changed through {@code ChatSessionRepository.incrementVersion}, never by
+     * entity updates, so a stale entity cannot roll it back.
+     */
+    @Column(updatable = false)
+    private Long version;
+
+    /*
+     * Activity summary, kept current by ChatSessionRepository.recordMessage and
+     * the bulk write paths in the same statement as the version bump, so that
+     * listing sessions by activity never has to aggregate chat_messages.
+     */
+    @Column(updatable = false)
+    private Instant lastMessageAt;
+
+    /** Sequence number of the session's newest message; the counter behind {@code ChatMessage.seq}. */
+    @Column(updatable = false)
+    private Long lastSeq;
+
+    @Column(updatable = false)
+    private Integer messageCount;
+
+    @Column(length = 160, updatable = false)
+    private String lastMessagePreview;
+
     //private OffsetDateTime createdAt = OffsetDateTime.now();
     @Column(nullable = false, updatable = false)
     private Instant createdAt;
@@ -0,0 +1,34 @@
+package com.northbay.ragchat.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Entity representing the cold-tier copy of an inactive chat session's messages.
+ * <p>
+ * The messages are stored as one compressed NDJSON blob per session while the
+ * session row itself stays in {@code chat_sessions}, flagged as archived.
+ */
+@Entity
+@Table(name = "chat_session_archives")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatSessionArchive {
+    @Id
+    private Long sessionId;
+
+    private Integer messageCount;
+
+    @Column(length = 16)
+    private String codec;
+
+    private byte[] payload;
+
+    @Column(nullable = false)
+    private Instant archivedAt;
+}
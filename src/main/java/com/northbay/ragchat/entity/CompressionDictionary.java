@@ -0,0 +1,37 @@
+package com.northbay.ragchat.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Entity representing a preset dictionary used to compress message payloads.
+ * <p>
+ * Dictionaries are trained from stored messages and are never modified or
+ * deleted, because every compressed value references the dictionary it was
+ * written with. The dictionary with the highest id is used for new writes.
+ */
+@Entity
+@Table(name = "message_compression_dictionaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CompressionDictionary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false)
+    private byte[] dictionary;
+
+    private Integer sampleCount;
+
+    /** Compressed size / original size of the training sample with this dictionary. */
+    private Double sampleRatio;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,48 @@
+package com.northbay.ragchat.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Entity representing a client-supplied {@code Idempotency-Key} and the
+ * response stored for it.
+ * <p>
+ * The id is a hash of the caller's API key and the idempotency key, so keys
+ * from different clients never collide and neither key is stored in clear.
+ * A record is {@code IN_PROGRESS} while the original request runs and
+ * {@code COMPLETED} with the serialized response afterwards, until it expires.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    /** Hash of the request the key was first used with. */
+    @Column(length = 64, nullable = false)
+    private String requestHash;
+
+    @Column(length = 16, nullable = false)
+    private String status;
+
+    /** Random token of the request holding the claim; only that request may complete or release it. */
+    @Column(length = 36)
+    private String claimToken;
+
+    @Column(columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
@@ -1,20 +1,33 @@
 package com.northbay.ragchat.exception;
 
+import org.springframework.http.HttpStatus;
+
 /**
  * Custom runtime exception class for handling API-specific errors.
  * <p>
  * Encapsulates an error code along with a descriptive message
  * to provide more detailed error information to clients.
+ * The HTTP status defaults to {@code 400 Bad Request}.
  */
 public class ApiException extends RuntimeException {
     private final String errorCode;
+    private final HttpStatus status;
 
     public ApiException(String errorCode, String message) {
+        this(HttpStatus.BAD_REQUEST, errorCode, message);
+    }
+
+    public ApiException(HttpStatus status, String errorCode, String message) {
         super(message);
+        this.status = status;
         this.errorCode = errorCode;
     }
 
     public String getErrorCode() {
         return errorCode;
     }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
 }
@@ -1,6 +1,7 @@
 package com.northbay.ragchat.exception;
 
 import com.northbay.ragchat.model.ErrorResponse;
+import com.northbay.ragchat.security.ConcurrencyLimitFilter;
 import lombok.extern.slf4j.Slf4j; // ✅ NEW IMPORT
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -52,7 +53,26 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
 
-    // 3. Catch-all for Generic Runtime Exceptions (500)
+    // 3. Handle application errors carrying their own status and error code
+    @ExceptionHandler(ApiException.class)
+    public ResponseEntity<ErrorResponse> handleApiException(ApiException ex, HttpServletRequest req) {
+        log.warn("API Error: {} - {} {}", req.getRequestURI(), ex.getErrorCode(), ex.getMessage());
+        if ("SERVICE_OVERLOADED".equals(ex.getErrorCode())) {
+            // deliberate backpressure, not a sign of slow downstreams
+            req.setAttribute(ConcurrencyLimitFilter.LOAD_SHED_ATTRIBUTE, Boolean.TRUE);
+        }
+
+        ErrorResponse.ErrorCodeEnum errorCode;
+        try {
+            errorCode = ErrorResponse.ErrorCodeEnum.fromValue(ex.getErrorCode());
+        } catch (IllegalArgumentException e) {
+            errorCode = ErrorResponse.ErrorCodeEnum.INTERNAL_ERROR;
+        }
+        ErrorResponse error = buildErrorResponse(ex.getStatus(), ex.getMessage(), errorCode, req.getRequestURI());
+        return ResponseEntity.status(ex.getStatus()).body(error);
+    }
+
+    // 4. Catch-all for Generic Runtime Exceptions (500)
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleGeneric(Exception ex, HttpServletRequest req) {
         // Log the full stack trace for unexpected errors
@@ -4,6 +4,8 @@ import com.northbay.ragchat.entity.ChatMessage;
 import com.northbay.ragchat.entity.ChatSession;
 import com.northbay.ragchat.model.ChatMessageDTO;
 import com.northbay.ragchat.model.ChatSessionDTO;
+import com.northbay.ragchat.repository.projection.MessageView;
+import com.northbay.ragchat.repository.projection.SessionView;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.ReportingPolicy;
@@ -51,4 +53,13 @@ public interface ChatMapper {
 
     // Optional: map list of messages
     List<ChatMessageDTO> toMessageDTOList(List<ChatMessage> entities);
+
+    // Read-only projections (see com.northbay.ragchat.repository.projection)
+    ChatSessionDTO toSessionDTO(SessionView view);
+
+    List<ChatSessionDTO> viewsToSessionDTOList(List<SessionView> views);
+
+    @Mapping(target = "context",
+            expression = "java(view.context() != null ? org.openapitools.jackson.nullable.JsonNullable.of(view.context()) : org.openapitools.jackson.nullable.JsonNullable.undefined())")
+    ChatMessageDTO toMessageDTO(MessageView view);
 }
@@ -2,10 +2,16 @@ package com.northbay.ragchat.repository;
 
 import com.northbay.ragchat.entity.ChatMessage;
 import com.northbay.ragchat.entity.ChatSession;
+import com.northbay.ragchat.repository.projection.MessageView;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
 /**
  * Repository interface for performing database operations on {@link ChatMessage} entities.
  * <p>
@@ -14,4 +20,37 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
     Page<ChatMessage> findBySession(ChatSession session, Pageable pageable);
+
+    String MESSAGE_VIEW = "select new com.northbay.ragchat.repository.projection.MessageView("
+            + "m.id, m.seq, m.sender, m.content, m.context, m.createdAt) from ChatMessage m ";
+
+    String OF_SESSION = "where m.session.id = :sessionId";
+
+    /**
+     * Pages through a session's messages in sequence order, as read-only
+     * {@link MessageView}s. Messages stored before sequence numbers existed
+     * (only without the V8 backfill) come first.
+     * <p>
+     * The scan is deliberately not bounded by the session's creation time:
+     * rows backfilled with {@code 'epoch'} by V2 or written under clock skew
+     * would silently disappear from the session.
+     */
+    @Query(value = MESSAGE_VIEW + OF_SESSION + " order by m.seq nulls first, m.id",
+            countQuery = "select count(m) from ChatMessage m " + OF_SESSION)
+    Page<MessageView> findViewsBySessionId(@Param("sessionId") Long sessionId, Pageable pageable);
+
+    /**
+     * Like {@link #findViewsBySessionId}, restricted to messages after {@code afterSeq}.
+     */
+    @Query(value = MESSAGE_VIEW + OF_SESSION + " and m.seq > :afterSeq order by m.seq",
+            countQuery = "select count(m) from ChatMessage m " + OF_SESSION + " and m.seq > :afterSeq")
+    Page<MessageView> findViewsBySessionIdAfterSeq(@Param("sessionId") Long sessionId,
+                                                   @Param("afterSeq") long afterSeq,
+                                                   Pageable pageable);
+
+    /** Deletes all messages of a session in one statement. */
+    @Transactional
+    @Modifying
+    @Query("delete from ChatMessage m where m.session.id = :sessionId")
+    int deleteAllOfSession(@Param("sessionId") Long sessionId);
 }
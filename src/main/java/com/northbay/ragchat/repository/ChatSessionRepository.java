@@ -1,9 +1,17 @@
 package com.northbay.ragchat.repository;
 
 import com.northbay.ragchat.entity.ChatSession;
+import com.northbay.ragchat.repository.projection.SessionReadState;
+import com.northbay.ragchat.repository.projection.SessionView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for managing {@link ChatSession} entities.
@@ -13,6 +21,97 @@ import java.util.List;
  */
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, Long> {
+
+    /** Session count plus a hash of the (id, version) pairs in id order; filters are appended. */
+    String FINGERPRINT = "SELECT count(*) || '-' || md5(COALESCE(string_agg(id || ':' || COALESCE(version, 0), ',' "
+            + "ORDER BY id), '')) FROM chat_sessions ";
+
     List<ChatSession> findByOwner(String owner);
     List<ChatSession> findByFavoriteTrue();
+
+    String SESSION_VIEW = "select new com.northbay.ragchat.repository.projection.SessionView("
+            + "s.id, s.title, s.owner, s.favorite, s.model, s.createdAt, s.lastMessageAt, coalesce(s.messageCount, 0), "
+            + "s.lastMessagePreview) from ChatSession s";
+
+    /** Most recently active first; matches the {@code idx_chat_sessions_*activity} indexes. */
+    String BY_ACTIVITY = " order by s.lastMessageAt desc nulls last, s.id desc";
+
+    /** Read-only listings: only the columns of {@link SessionView}, no managed entities. */
+    @Query(SESSION_VIEW + " where s.owner = :owner" + BY_ACTIVITY)
+    List<SessionView> findViewsByOwner(@Param("owner") String owner);
+
+    @Query(SESSION_VIEW + BY_ACTIVITY)
+    List<SessionView> findAllViews();
+
+    @Query(SESSION_VIEW + " where s.favorite = true" + BY_ACTIVITY)
+    List<SessionView> findFavoriteViews();
+
+    /** Returns whether the session is archived, or empty if it does not exist. */
+    @Query("select coalesce(s.archived, false) from ChatSession s where s.id = :id")
+    Optional<Boolean> findArchivedById(@Param("id") Long id);
+
+    /**
+     * Deletes a session row without loading it, returning the number of rows
+     * deleted. Its messages must already be gone ({@link ChatMessageRepository#deleteAllOfSession}).
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from ChatSession s where s.id = :id")
+    int deleteSession(@Param("id") Long id);
+
+    /** Bumps the session version after a change to the session or its messages. */
+    @Transactional
+    @Modifying
+    @Query("update ChatSession s set s.version = coalesce(s.version, 0) + 1 where s.id = :id")
+    int incrementVersion(@Param("id") Long id);
+
+    /**
+     * Records a message about to be stored, in one statement: allocates its
+     * sequence number, bumps the version and message count, and moves the
+     * activity summary forward unless a newer message is already recorded.
+     * <p>
+     * This is the only source of sequence numbers: the partitioned message
+     * table cannot enforce a unique {@code (session_id, seq)} index, since a
+     * unique index there must include the partition key. The session row
+     * stays locked until the caller's transaction ends, so concurrent writers
+     * on any instance get distinct numbers, a rollback leaves no gap, and a
+     * session's messages commit in {@code seq} order.
+     *
+     * @return the allocated sequence number, or {@code null} if the session does not exist
+     */
+    @Transactional
+    @Query(value = "UPDATE chat_sessions SET version = COALESCE(version, 0) + 1, "
+            + "last_seq = COALESCE(last_seq, 0) + 1, "
+            + "message_count = COALESCE(message_count, 0) + 1, "
+            + "last_message_preview = CASE WHEN last_message_at IS NULL OR last_message_at <= :at "
+            + "THEN :preview ELSE last_message_preview END, "
+            + "last_message_at = CASE WHEN last_message_at IS NULL OR last_message_at <= :at "
+            + "THEN :at ELSE last_message_at END "
+            + "WHERE id = :id RETURNING last_seq", nativeQuery = true)
+    Long recordMessage(@Param("id") Long id, @Param("at") Instant at, @Param("preview") String preview);
+
+    @Query("select coalesce(s.lastSeq, 0) from ChatSession s where s.id = :id")
+    Long findLastSeqById(@Param("id") Long id);
+
+    @Query("select coalesce(s.version, 0) from ChatSession s where s.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /** Returns the session's version and whether it is archived, or empty if it does not exist. */
+    @Query("select new com.northbay.ragchat.repository.projection.SessionReadState("
+            + "coalesce(s.version, 0), coalesce(s.archived, false)) from ChatSession s where s.id = :id")
+    Optional<SessionReadState> findReadStateById(@Param("id") Long id);
+
+    /**
+     * Fingerprint of a session list: a hash of its (id, version) pairs in id order, so it
+     * changes whenever a session is added, removed or changed. Sums of ids and versions
+     * could cancel out (one session deleted while another is bumped) and answer a stale 304.
+     */
+    @Query(value = FINGERPRINT + "WHERE owner = :owner", nativeQuery = true)
+    String fingerprintByOwner(@Param("owner") String owner);
+
+    @Query(value = FINGERPRINT, nativeQuery = true)
+    String fingerprintAll();
+
+    @Query(value = FINGERPRINT + "WHERE favorite = true", nativeQuery = true)
+    String fingerprintFavorites();
 }
@@ -0,0 +1,12 @@
+package com.northbay.ragchat.repository.projection;
+
+import java.time.Instant;
+
+/**
+ * Read-only projection of the {@code chat_messages} columns exposed by the API.
+ * <p>
+ * {@code content} and {@code context} are already decoded by the entity's
+ * attribute converter, as for a loaded {@link com.northbay.ragchat.entity.ChatMessage}.
+ */
+public record MessageView(Long id, Long seq, String sender, String content, String context, Instant createdAt) {
+}
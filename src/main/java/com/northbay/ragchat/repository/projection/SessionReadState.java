@@ -0,0 +1,8 @@
+package com.northbay.ragchat.repository.projection;
+
+/**
+ * The {@code chat_sessions} columns a message read needs before loading any
+ * messages: the version the page is tagged with and where the messages live.
+ */
+public record SessionReadState(long version, boolean archived) {
+}
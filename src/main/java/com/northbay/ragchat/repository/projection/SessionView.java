@@ -0,0 +1,14 @@
+package com.northbay.ragchat.repository.projection;
+
+import java.time.Instant;
+
+/**
+ * Read-only projection of the {@code chat_sessions} columns exposed by the API.
+ * <p>
+ * Selected by constructor expression, so list queries neither materialize
+ * managed {@link com.northbay.ragchat.entity.ChatSession} entities nor keep
+ * dirty-checking snapshots of them.
+ */
+public record SessionView(Long id, String title, String owner, Boolean favorite, String model, Instant createdAt,
+                          Instant lastMessageAt, Integer messageCount, String lastMessagePreview) {
+}
@@ -0,0 +1,31 @@
+package com.northbay.ragchat.security;
+
+/**
+ * Holds the API key of the request being processed on the current thread.
+ * <p>
+ * Set by {@link ApiKeyFilter} once the key has been validated and cleared when
+ * the request completes, so services can scope per-client state (such as
+ * idempotency keys) without the key being passed through every signature.
+ */
+public final class ApiKeyContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ApiKeyContext() {
+    }
+
+    static void set(String apiKey) {
+        CURRENT.set(apiKey);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Returns the API key of the current request, or {@code null} outside a request.
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+}
@@ -93,7 +93,12 @@ public class ApiKeyFilter extends OncePerRequestFilter {
             return;
         }
 
-        chain.doFilter(req, res);
+        ApiKeyContext.set(key);
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            ApiKeyContext.clear();
+        }
     }
 
 }
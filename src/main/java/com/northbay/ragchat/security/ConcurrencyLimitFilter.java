@@ -0,0 +1,152 @@
+package com.northbay.ragchat.security;
+
+import com.northbay.ragchat.diagnostics.RateLimitEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Servlet filter that sheds load once the service stops keeping up.
+ * <p>
+ * Each request takes a slot from a {@link GradientConcurrencyLimiter} whose
+ * limit follows observed latency; when Postgres or the LLM provider slows down
+ * the limit shrinks and excess requests are answered immediately with
+ * {@code 503} and {@code Retry-After} instead of queueing in Tomcat until they
+ * time out. Routes that call the LLM and plain CRUD routes have separate
+ * limiters, so slow completions cannot starve session and message reads.
+ * <p>
+ * Streaming endpoints are not limited, since their duration reflects the
+ * amount of data transferred (or, for message streams, how long a client
+ * stays connected) rather than service health, and neither is the
+ * health check, so an overloaded instance is not mistaken for a dead one.
+ */
+@Slf4j
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * Request attribute marking a response as deliberate load shedding ({@code SERVICE_OVERLOADED}),
+     * which must not shrink the limit.
+     */
+    public static final String LOAD_SHED_ATTRIBUTE = ConcurrencyLimitFilter.class.getName() + ".loadShed";
+
+    /** Route classes with independent limits. */
+    enum RouteClass { LLM, CRUD }
+
+    private static final Pattern LLM_ROUTES = Pattern.compile("/api/v1/(chat-sessions/\\d+/messages|batch)/?");
+
+    private static final List<String> EXEMPT_PATHS = List.of(
+            "/api/v1/export",
+            "/api/v1/import",
+            "/api/v1/stream",
+            "/api/v1/admin/jfr",
+            "/api/v1/health"
+    );
+
+    private final boolean enabled;
+    private final String retryAfterSeconds;
+    private final Map<RouteClass, GradientConcurrencyLimiter> limiters = new EnumMap<>(RouteClass.class);
+    private final Map<RouteClass, Counter> shed = new EnumMap<>(RouteClass.class);
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${app.concurrency-limit.enabled:true}") boolean enabled,
+                                  @Value("${app.concurrency-limit.retry-after-seconds:2}") int retryAfterSeconds,
+                                  @Value("${app.concurrency-limit.llm.initial:20}") int llmInitial,
+                                  @Value("${app.concurrency-limit.llm.max:64}") int llmMax,
+                                  @Value("${app.concurrency-limit.crud.initial:50}") int crudInitial,
+                                  @Value("${app.concurrency-limit.crud.max:200}") int crudMax,
+                                  @Value("${app.concurrency-limit.min:4}") int minLimit,
+                                  @Value("${app.concurrency-limit.smoothing:0.2}") double smoothing,
+                                  @Value("${app.concurrency-limit.long-window:600}") int longWindow,
+                                  @Value("${app.concurrency-limit.tolerance:1.5}") double tolerance) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        limiters.put(RouteClass.LLM,
+                new GradientConcurrencyLimiter(llmInitial, minLimit, llmMax, smoothing, longWindow, tolerance));
+        limiters.put(RouteClass.CRUD,
+                new GradientConcurrencyLimiter(crudInitial, minLimit, crudMax, smoothing, longWindow, tolerance));
+
+        for (RouteClass routeClass : RouteClass.values()) {
+            GradientConcurrencyLimiter limiter = limiters.get(routeClass);
+            String tag = routeClass.name().toLowerCase();
+            Gauge.builder("http.concurrency.limit", limiter, GradientConcurrencyLimiter::getLimit)
+                    .tag("route", tag)
+                    .description("Current adaptive concurrency limit")
+                    .register(meterRegistry);
+            Gauge.builder("http.concurrency.in.flight", limiter, GradientConcurrencyLimiter::getInFlight)
+                    .tag("route", tag)
+                    .description("Requests currently holding a concurrency slot")
+                    .register(meterRegistry);
+            shed.put(routeClass, Counter.builder("http.concurrency.shed")
+                    .tag("route", tag)
+                    .description("Requests rejected by the concurrency limiter")
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || EXEMPT_PATHS.stream().anyMatch(path::startsWith);
+    }
+
+    /**
+     * Admits the request if its route class is below its limit, otherwise answers {@code 503}.
+     * Responses with {@code 503}/{@code 504} and exceptions count as dropped requests, except
+     * {@code 503}s marked with {@link #LOAD_SHED_ATTRIBUTE}: those are the service shedding load on
+     * purpose, and counting them would collapse the limit exactly while it does so.
+     */
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        RouteClass routeClass = classify(req);
+        GradientConcurrencyLimiter limiter = limiters.get(routeClass);
+        boolean admitted = limiter.tryAcquire();
+        RateLimitEvent.record("concurrency-" + routeClass.name().toLowerCase(), req.getRequestURI(), admitted,
+                Math.max(0, limiter.getLimit() - limiter.getInFlight()), admitted ? null : "limit_reached");
+        if (!admitted) {
+            shed.get(routeClass).increment();
+            log.warn("Shedding {} request {} {} (limit {})", routeClass, req.getMethod(), req.getRequestURI(),
+                    limiter.getLimit());
+            res.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            res.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Service overloaded, retry later");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try {
+            chain.doFilter(req, res);
+            int status = res.getStatus();
+            dropped = status == HttpServletResponse.SC_SERVICE_UNAVAILABLE
+                    || status == HttpServletResponse.SC_GATEWAY_TIMEOUT;
+        } finally {
+            if (req.getAttribute(LOAD_SHED_ATTRIBUTE) != null) {
+                limiter.ignore();
+            } else {
+                limiter.release(System.nanoTime() - start, dropped);
+            }
+        }
+    }
+
+    static RouteClass classify(HttpServletRequest req) {
+        return "POST".equals(req.getMethod()) && LLM_ROUTES.matcher(req.getRequestURI()).matches()
+                ? RouteClass.LLM
+                : RouteClass.CRUD;
+    }
+}
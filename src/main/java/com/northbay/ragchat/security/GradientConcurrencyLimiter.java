@@ -0,0 +1,119 @@
+package com.northbay.ragchat.security;
+
+/**
+ * Adaptive limit on concurrent requests, derived from observed latency.
+ * <p>
+ * Follows the gradient approach: a slowly moving average of request latency
+ * stands for the latency the service has without queueing, and each sample is
+ * compared against it. While recent latency stays close to the long-term
+ * average the limit grows by about {@code sqrt(limit)}; when latency rises,
+ * the limit shrinks in proportion ({@code long / short}, at most halving per
+ * sample). Dropped requests (timeouts, upstream failures) shrink it
+ * multiplicatively; requests the service rejected on purpose to shed load are
+ * released through {@link #ignore()} and leave the limit unchanged.
+ * Growth only happens while at least half the limit is in use, so an idle
+ * service does not inflate its limit.
+ * <p>
+ * Thread-safe; each successful {@link #tryAcquire()} must be paired with
+ * {@link #release(long, boolean)} or {@link #ignore()}.
+ */
+public class GradientConcurrencyLimiter {
+
+    private static final double DROP_FACTOR = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double longWindowWeight;
+    private final double tolerance;
+
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+    private int inFlight;
+
+    /**
+     * @param initialLimit the limit before any latency has been observed
+     * @param minLimit     the limit never drops below this
+     * @param maxLimit     the limit never grows beyond this
+     * @param smoothing    weight of each new limit estimate, between 0 and 1
+     * @param longWindow   number of samples the long-term latency average spans
+     * @param tolerance    ratio by which recent latency may exceed the long-term average before the limit shrinks
+     */
+    public GradientConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double smoothing, int longWindow, double tolerance) {
+        this.estimatedLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.longWindowWeight = 2.0 / (longWindow + 1);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Takes an in-flight slot if the current limit allows it.
+     *
+     * @return {@code false} if the request should be shed
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) estimatedLimit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Frees a slot taken by {@link #tryAcquire()} and feeds its outcome into the limit.
+     *
+     * @param rttNanos how long the request took
+     * @param dropped  whether the request timed out or failed upstream
+     */
+    public synchronized void release(long rttNanos, boolean dropped) {
+        int inFlightAtSample = inFlight;
+        inFlight--;
+        if (dropped) {
+            estimatedLimit = Math.max(minLimit, estimatedLimit * DROP_FACTOR);
+            return;
+        }
+
+        double rtt = rttNanos;
+        if (longRtt == 0) {
+            longRtt = rtt;
+            shortRtt = rtt;
+        }
+        shortRtt = rtt;
+        longRtt = longRtt + (rtt - longRtt) * longWindowWeight;
+        // after a period of high latency, let the long-term average recover quickly
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        if (inFlightAtSample < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * Frees a slot taken by {@link #tryAcquire()} without feeding the request into the limit,
+     * for requests whose outcome says nothing about latency, such as deliberate load shedding.
+     */
+    public synchronized void ignore() {
+        inFlight--;
+    }
+
+    /** The current limit. */
+    public synchronized int getLimit() {
+        return (int) estimatedLimit;
+    }
+
+    /** Requests currently holding a slot. */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
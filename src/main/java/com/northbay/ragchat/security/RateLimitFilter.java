@@ -1,4 +1,5 @@
 package com.northbay.ragchat.security;
+import com.northbay.ragchat.diagnostics.RateLimitEvent;
 import io.github.bucket4j.*;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -96,7 +97,10 @@ public class RateLimitFilter extends OncePerRequestFilter {
         }
 
         Bucket bucket = resolveBucket(key);
-        if (bucket.tryConsume(1)) {
+        ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
+        RateLimitEvent.record("api-key", path, probe.isConsumed(), probe.getRemainingTokens(),
+                probe.isConsumed() ? null : "bucket_empty");
+        if (probe.isConsumed()) {
             chain.doFilter(req, res);
         } else {
             log.warn("Rate limit exceeded for key: {}. Path: {}", key, path); // ✅ LOGGED
@@ -0,0 +1,199 @@
+package com.northbay.ragchat.service;
+
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.model.*;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.openapitools.jackson.nullable.JsonNullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes an ordered list of {@link ChatService} operations from one request.
+ * <p>
+ * When no operation calls the LLM, the whole batch runs in a single
+ * transaction: the first failing operation rolls everything back and the
+ * remaining operations are reported as not executed ({@code 424}). Batches
+ * that add {@code user} messages cannot hold a transaction open across the
+ * LLM calls, so each operation then commits on its own and later operations
+ * still run; only operations referring to a failed one are skipped.
+ */
+@Slf4j
+@Service
+public class BatchService {
+
+    private static final int NOT_EXECUTED = HttpStatus.FAILED_DEPENDENCY.value();
+
+    private final ChatService chatService;
+    private final TransactionTemplate tx;
+    private final int maxOperations;
+
+    public BatchService(ChatService chatService,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${app.batch.max-operations:100}") int maxOperations) {
+        this.chatService = chatService;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Runs the operations in order.
+     *
+     * @throws ApiException if the batch is empty or exceeds {@code app.batch.max-operations}
+     */
+    public BatchResponse execute(List<BatchOperation> operations) {
+        if (operations == null || operations.isEmpty() || operations.size() > maxOperations) {
+            throw new ApiException("INVALID_INPUT", "A batch must contain 1 to " + maxOperations + " operations");
+        }
+        boolean transactional = operations.stream().noneMatch(BatchService::callsLlm);
+        List<BatchOperationResult> results = new ArrayList<>(operations.size());
+
+        boolean committed;
+        if (transactional) {
+            try {
+                tx.executeWithoutResult(status -> {
+                    for (int i = 0; i < operations.size(); i++) {
+                        BatchOperationResult result = run(i, operations.get(i), results);
+                        results.add(result);
+                        if (result.getStatus() >= 400) {
+                            throw new BatchAbortedException();
+                        }
+                    }
+                });
+                committed = true;
+            } catch (BatchAbortedException e) {
+                committed = false;
+            }
+            for (int i = results.size(); i < operations.size(); i++) {
+                results.add(failure(i, NOT_EXECUTED, "INTERNAL_ERROR", "Not executed: an earlier operation failed"));
+            }
+        } else {
+            for (int i = 0; i < operations.size(); i++) {
+                results.add(run(i, operations.get(i), results));
+            }
+            committed = true;
+        }
+
+        log.debug("Batch of {} operations finished (transactional={}, committed={})",
+                operations.size(), transactional, committed);
+        BatchResponse response = new BatchResponse();
+        response.setTransactional(transactional);
+        response.setCommitted(committed);
+        response.setResults(results);
+        return response;
+    }
+
+    private BatchOperationResult run(int index, BatchOperation op, List<BatchOperationResult> previous) {
+        try {
+            BatchOperationResult result = new BatchOperationResult();
+            result.setIndex(index);
+            switch (op.getOp()) {
+                case CREATE_SESSION -> {
+                    require(op.getTitle() != null, "title is required");
+                    ChatSessionCreateRequest request = new ChatSessionCreateRequest();
+                    request.setTitle(op.getTitle());
+                    request.setOwner(op.getOwner());
+                    result.setSession(chatService.createChatSession(request));
+                    result.setStatus(HttpStatus.CREATED.value());
+                }
+                case UPDATE_SESSION -> {
+                    ChatSessionUpdateRequest request = new ChatSessionUpdateRequest();
+                    request.setTitle(op.getTitle());
+                    request.setFavorite(op.getFavorite());
+                    result.setSession(chatService.updateChatSession(sessionId(op, previous), request));
+                    result.setStatus(HttpStatus.OK.value());
+                }
+                case DELETE_SESSION -> {
+                    chatService.deleteChatSession(sessionId(op, previous));
+                    result.setStatus(HttpStatus.NO_CONTENT.value());
+                }
+                case LIST_SESSIONS -> {
+                    result.setSessions(chatService.listChatSessions(op.getOwner()));
+                    result.setStatus(HttpStatus.OK.value());
+                }
+                case ADD_MESSAGE -> {
+                    require(op.getSender() != null && op.getContent() != null, "sender and content are required");
+                    ChatMessageCreateRequest request = new ChatMessageCreateRequest();
+                    request.setSender(op.getSender());
+                    request.setContent(op.getContent());
+                    if (op.getContext() != null) request.setContext(JsonNullable.of(op.getContext()));
+                    result.setChatMessage(chatService.addMessage(sessionId(op, previous), request));
+                    result.setStatus(HttpStatus.CREATED.value());
+                }
+                case GET_MESSAGES -> {
+                    int page = op.getPage() != null ? op.getPage() : 0;
+                    int size = op.getSize() != null ? op.getSize() : 20;
+                    result.setMessages(chatService.getMessages(sessionId(op, previous), page, size));
+                    result.setStatus(HttpStatus.OK.value());
+                }
+            }
+            return result;
+        } catch (UnresolvedReferenceException e) {
+            return failure(index, NOT_EXECUTED, "INVALID_INPUT", e.getMessage());
+        } catch (EntityNotFoundException e) {
+            return failure(index, HttpStatus.NOT_FOUND.value(), "SESSION_NOT_FOUND", e.getMessage());
+        } catch (ApiException e) {
+            return failure(index, e.getStatus().value(), e.getErrorCode(), e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Batch operation {} ({}) failed: {}", index, op.getOp(), e.getMessage(), e);
+            return failure(index, HttpStatus.INTERNAL_SERVER_ERROR.value(), "INTERNAL_ERROR",
+                    "An unexpected error occurred. Please contact support.");
+        }
+    }
+
+    /**
+     * Resolves the target session from {@code sessionId} or from the result of the operation at {@code sessionRef}.
+     */
+    private static Long sessionId(BatchOperation op, List<BatchOperationResult> previous) {
+        if (op.getSessionRef() == null) {
+            require(op.getSessionId() != null, "sessionId or sessionRef is required");
+            return op.getSessionId().longValue();
+        }
+        int ref = op.getSessionRef();
+        require(ref >= 0 && ref < previous.size(), "sessionRef must refer to an earlier operation");
+        BatchOperationResult target = previous.get(ref);
+        if (target.getSession() == null) {
+            throw new UnresolvedReferenceException("sessionRef " + ref + " did not produce a session");
+        }
+        return target.getSession().getId().longValue();
+    }
+
+    private static boolean callsLlm(BatchOperation op) {
+        return op.getOp() == BatchOperation.OpEnum.ADD_MESSAGE && "user".equalsIgnoreCase(op.getSender());
+    }
+
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new ApiException("INVALID_INPUT", message);
+        }
+    }
+
+    private static BatchOperationResult failure(int index, int status, String errorCode, String message) {
+        BatchOperationResult result = new BatchOperationResult();
+        result.setIndex(index);
+        result.setStatus(status);
+        result.setErrorCode(errorCode);
+        result.setMessage(message);
+        return result;
+    }
+
+    /** Thrown inside the batch transaction to roll it back after a failed operation. */
+    private static final class BatchAbortedException extends RuntimeException {
+        BatchAbortedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** A {@code sessionRef} pointing at an operation that failed or did not produce a session. */
+    private static final class UnresolvedReferenceException extends RuntimeException {
+        UnresolvedReferenceException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
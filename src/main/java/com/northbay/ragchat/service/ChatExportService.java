@@ -0,0 +1,207 @@
+package com.northbay.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.entity.ChatMessage;
+import com.northbay.ragchat.service.compression.MessagePayloadCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Streams complete conversation histories as NDJSON.
+ * <p>
+ * Rows are read through a forward-only JDBC cursor (PostgreSQL only uses a
+ * server-side cursor inside a transaction with a positive fetch size) and
+ * written straight to the target stream, one JSON object per line. Nothing is
+ * collected in memory, so heap usage is independent of the export size.
+ * <p>
+ * Each session is emitted as a {@code "type":"session"} line followed by its
+ * messages as {@code "type":"message"} lines in sequence order, each with its
+ * {@code seq}. Ids are not in that order: write-behind allocates them in
+ * blocks, and the import numbers messages by line order.
+ * Archived sessions have no rows in {@code chat_messages}; their messages are
+ * decoded from the archive (in sequence order) without restoring the session.
+ */
+@Slf4j
+@Service
+public class ChatExportService {
+
+    private static final String EXPORT_SQL = """
+            SELECT s.id AS s_id, s.title, s.owner, s.favorite, COALESCE(s.archived, false) AS archived,
+                   s.created_at AS s_created_at, s.updated_at AS s_updated_at,
+                   m.id AS m_id, m.seq AS m_seq, m.sender, m.content, m.context,
+                   m.created_at AS m_created_at, m.updated_at AS m_updated_at
+            FROM chat_sessions s
+            LEFT JOIN chat_messages m ON m.session_id = s.id
+            WHERE %s
+            ORDER BY s.id, m.seq NULLS FIRST, m.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final ObjectMapper objectMapper;
+    private final MessagePayloadCodec codec;
+    private final SessionArchiveService archiveService;
+    private final int fetchSize;
+
+    public ChatExportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             MessagePayloadCodec codec,
+                             SessionArchiveService archiveService,
+                             @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.codec = codec;
+        this.archiveService = archiveService;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Writes a single session and all of its messages to {@code out}.
+     *
+     * @return the number of message lines written
+     */
+    public long exportSession(Long sessionId, OutputStream out) throws IOException {
+        return export(String.format(EXPORT_SQL, "s.id = ?"), sessionId, out);
+    }
+
+    /**
+     * Writes every session of {@code owner} and their messages to {@code out}.
+     *
+     * @return the number of message lines written
+     */
+    public long exportOwner(String owner, OutputStream out) throws IOException {
+        return export(String.format(EXPORT_SQL, "s.owner = ?"), owner, out);
+    }
+
+    private long export(String sql, Object param, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+
+            NdjsonRowWriter writer = new NdjsonRowWriter(gen, codec, archiveService);
+            try {
+                readOnlyTx.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(sql,
+                            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    ps.setObject(1, param);
+                    return ps;
+                }, writer::write));
+            } catch (UncheckedIOException e) {
+                // client disconnected or the stream failed mid-export
+                throw e.getCause();
+            }
+
+            gen.writeRaw('\n');
+            gen.flush();
+            log.info("Exported {} sessions / {} messages in {} ms",
+                    writer.sessions, writer.messages, System.currentTimeMillis() - start);
+            return writer.messages;
+        }
+    }
+
+    /**
+     * Row callback that turns the joined session/message rows into NDJSON lines,
+     * emitting a session header whenever the session id changes.
+     */
+    private static final class NdjsonRowWriter {
+        private final JsonGenerator gen;
+        private final MessagePayloadCodec codec;
+        private final SessionArchiveService archiveService;
+        private long currentSessionId = -1;
+        private long sessions;
+        private long messages;
+
+        NdjsonRowWriter(JsonGenerator gen, MessagePayloadCodec codec, SessionArchiveService archiveService) {
+            this.gen = gen;
+            this.codec = codec;
+            this.archiveService = archiveService;
+        }
+
+        void write(ResultSet rs) throws SQLException {
+            try {
+                long sessionId = rs.getLong("s_id");
+                if (sessionId != currentSessionId) {
+                    currentSessionId = sessionId;
+                    sessions++;
+                    gen.writeStartObject();
+                    gen.writeStringField("type", "session");
+                    gen.writeNumberField("id", sessionId);
+                    gen.writeStringField("title", rs.getString("title"));
+                    gen.writeStringField("owner", rs.getString("owner"));
+                    boolean favorite = rs.getBoolean("favorite");
+                    if (rs.wasNull()) gen.writeNullField("favorite");
+                    else gen.writeBooleanField("favorite", favorite);
+                    writeTimestamp("createdAt", rs.getTimestamp("s_created_at"));
+                    writeTimestamp("updatedAt", rs.getTimestamp("s_updated_at"));
+                    gen.writeEndObject();
+                    if (rs.getBoolean("archived")) {
+                        for (ChatMessage m : archiveService.read(sessionId)) {
+                            writeMessage(m.getId(), m.getSeq(), sessionId, m.getSender(), m.getContent(), m.getContext(),
+                                    m.getCreatedAt(), m.getUpdatedAt());
+                        }
+                    }
+                }
+
+                long messageId = rs.getLong("m_id");
+                if (rs.wasNull()) {
+                    return; // session without messages, or archived
+                }
+                writeMessage(messageId, rs.getObject("m_seq", Long.class), sessionId, rs.getString("sender"),
+                        codec.decode(rs.getString("content")), codec.decode(rs.getString("context")),
+                        toInstant(rs.getTimestamp("m_created_at")), toInstant(rs.getTimestamp("m_updated_at")));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeMessage(long id, Long seq, long sessionId, String sender, String content, String context,
+                                  Instant createdAt, Instant updatedAt) throws IOException {
+            messages++;
+            gen.writeStartObject();
+            gen.writeStringField("type", "message");
+            gen.writeNumberField("id", id);
+            if (seq == null) gen.writeNullField("seq");
+            else gen.writeNumberField("seq", seq);
+            gen.writeNumberField("sessionId", sessionId);
+            gen.writeStringField("sender", sender);
+            gen.writeStringField("content", content);
+            gen.writeStringField("context", context);
+            writeTimestamp("createdAt", createdAt);
+            writeTimestamp("updatedAt", updatedAt);
+            gen.writeEndObject();
+        }
+
+        private void writeTimestamp(String field, Timestamp ts) throws IOException {
+            writeTimestamp(field, toInstant(ts));
+        }
+
+        private void writeTimestamp(String field, Instant instant) throws IOException {
+            if (instant == null) gen.writeNullField(field);
+            else gen.writeStringField(field, instant.toString());
+        }
+
+        private static Instant toInstant(Timestamp ts) {
+            return ts == null ? null : ts.toInstant();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.northbay.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.dto.ChatImportResult;
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.service.compression.MessagePayloadCodec;
+import com.northbay.ragchat.util.MessagePreviewUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Bulk-imports conversation history through PostgreSQL {@code COPY}.
+ * <p>
+ * Input rows are streamed through the driver's {@link CopyManager} into a
+ * temporary staging table and then merged into {@code chat_sessions} and
+ * {@code chat_messages} with set-based statements, remapping the source
+ * session references to freshly allocated ids. The whole import runs in a
+ * single transaction, so a failed import leaves no partial data behind.
+ * <p>
+ * Two input formats are accepted:
+ * <ul>
+ *   <li>{@link Format#NDJSON} – the format produced by {@link ChatExportService}:
+ *       {@code "type":"session"} lines carry an {@code id} and {@code "type":"message"}
+ *       lines refer to it through {@code sessionId}. Messages are numbered in
+ *       line order, the {@code seq} order the export writes them in.</li>
+ *   <li>{@link Format#CSV} – a CSV file with the header
+ *       {@code record_type,ref,session_ref,title,owner,favorite,sender,content,context,created_at},
+ *       copied into the staging table without any parsing on our side.</li>
+ * </ul>
+ * NDJSON message payloads are compressed while staging; CSV rows are stored
+ * as plain text and picked up by the compression backfill. The activity
+ * summary of the imported sessions is filled in the same transaction.
+ */
+@Slf4j
+@Service
+public class ChatImportService {
+
+    /** Supported input formats. */
+    public enum Format { NDJSON, CSV }
+
+    private static final String STAGE_COLUMNS =
+            "record_type, ref, session_ref, title, owner, favorite, sender, content, context, created_at";
+
+    private static final String CREATE_STAGE_SQL = """
+            CREATE TEMP TABLE chat_import_stage (
+                line_no     BIGSERIAL,
+                record_type TEXT NOT NULL,
+                ref         TEXT,
+                session_ref TEXT,
+                title       TEXT,
+                owner       TEXT,
+                favorite    BOOLEAN,
+                sender      TEXT,
+                content     TEXT,
+                context     TEXT,
+                created_at  TIMESTAMPTZ
+            ) ON COMMIT DROP
+            """;
+
+    private static final String ALLOCATE_SESSION_IDS_SQL = """
+            CREATE TEMP TABLE chat_import_session_ids ON COMMIT DROP AS
+            SELECT ref, nextval(pg_get_serial_sequence('chat_sessions', 'id')) AS new_id
+            FROM (SELECT DISTINCT ref FROM chat_import_stage WHERE record_type = 'session') r
+            """;
+
+    private static final String MERGE_SESSIONS_SQL = """
+            INSERT INTO chat_sessions (id, title, owner, favorite, created_at, updated_at, message_count, last_seq)
+            SELECT DISTINCT ON (s.ref) i.new_id, s.title, s.owner, COALESCE(s.favorite, false),
+                   COALESCE(s.created_at, now()), now(), 0, 0
+            FROM chat_import_stage s
+            JOIN chat_import_session_ids i ON i.ref = s.ref
+            WHERE s.record_type = 'session'
+            ORDER BY s.ref, s.line_no
+            """;
+
+    private static final String MERGE_MESSAGES_SQL = """
+            INSERT INTO chat_messages (session_id, seq, sender, content, context, created_at)
+            SELECT i.new_id, row_number() OVER (PARTITION BY i.new_id ORDER BY m.line_no),
+                   m.sender, m.content, m.context, GREATEST(COALESCE(m.created_at, now()), cs.created_at)
+            FROM chat_import_stage m
+            JOIN chat_import_session_ids i ON i.ref = m.session_ref
+            JOIN chat_sessions cs ON cs.id = i.new_id
+            WHERE m.record_type = 'message'
+            ORDER BY m.line_no
+            """;
+
+    private static final String SUMMARIZE_SESSIONS_SQL = """
+            UPDATE chat_sessions cs
+            SET message_count = a.message_count, last_seq = a.message_count, last_message_at = a.last_message_at
+            FROM (SELECT m.session_id, count(*) AS message_count, max(m.created_at) AS last_message_at
+                  FROM chat_messages m
+                  JOIN chat_import_session_ids i ON i.new_id = m.session_id
+                  GROUP BY m.session_id) a
+            WHERE cs.id = a.session_id
+            """;
+
+    private static final String LAST_MESSAGES_SQL = """
+            SELECT DISTINCT ON (m.session_id) m.session_id, m.content
+            FROM chat_messages m
+            JOIN chat_import_session_ids i ON i.new_id = m.session_id
+            ORDER BY m.session_id, m.created_at DESC, m.id DESC
+            """;
+
+    private static final String COUNT_MESSAGES_SQL =
+            "SELECT count(*) FROM chat_import_stage WHERE record_type = 'message'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final MessagePayloadCodec codec;
+    private final int copyBufferSize;
+    private final long progressInterval;
+
+    public ChatImportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             MessagePayloadCodec codec,
+                             @Value("${app.import.copy-buffer-bytes:1048576}") int copyBufferSize,
+                             @Value("${app.import.progress-interval:100000}") long progressInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.codec = codec;
+        this.copyBufferSize = copyBufferSize;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Streams {@code in} into the staging table and merges it into the chat tables.
+     *
+     * @param in     the NDJSON or CSV input, read exactly once
+     * @param format the input format
+     * @return counts and throughput of the import
+     */
+    public ChatImportResult importStream(InputStream in, Format format) {
+        long start = System.currentTimeMillis();
+        ChatImportResult result = tx.execute(status -> jdbcTemplate.execute((ConnectionCallback<ChatImportResult>) con -> {
+            try (Statement st = con.createStatement()) {
+                st.execute(CREATE_STAGE_SQL);
+            }
+
+            long staged = format == Format.CSV ? copyCsv(con, in, start) : copyNdjson(con, in, start);
+            log.info("Import staged {} rows in {} ms, merging", staged, System.currentTimeMillis() - start);
+
+            try (Statement st = con.createStatement()) {
+                st.execute(ALLOCATE_SESSION_IDS_SQL);
+                long sessions = st.executeUpdate(MERGE_SESSIONS_SQL);
+                long messages = st.executeUpdate(MERGE_MESSAGES_SQL);
+                st.executeUpdate(SUMMARIZE_SESSIONS_SQL);
+                writePreviews(con);
+                long stagedMessages;
+                try (var rs = st.executeQuery(COUNT_MESSAGES_SQL)) {
+                    rs.next();
+                    stagedMessages = rs.getLong(1);
+                }
+                long duration = Math.max(1, System.currentTimeMillis() - start);
+                return new ChatImportResult(staged, sessions, messages, stagedMessages - messages,
+                        duration, staged * 1000 / duration);
+            }
+        }));
+        log.info("Import finished: {}", result);
+        return result;
+    }
+
+    /**
+     * Sets the last-message preview of every imported session. Done here rather
+     * than in SQL because the last message may be stored compressed.
+     */
+    private void writePreviews(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(LAST_MESSAGES_SQL);
+             PreparedStatement ps = con.prepareStatement(
+                     "UPDATE chat_sessions SET last_message_preview = ? WHERE id = ?")) {
+            int pending = 0;
+            while (rs.next()) {
+                ps.setString(1, MessagePreviewUtil.preview(codec.decode(rs.getString(2))));
+                ps.setLong(2, rs.getLong(1));
+                ps.addBatch();
+                if (++pending % 1000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private long copyCsv(Connection con, InputStream in, long start) throws SQLException {
+        CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+        ProgressInputStream progress = new ProgressInputStream(in, start);
+        try {
+            return copyManager.copyIn(
+                    "COPY chat_import_stage (" + STAGE_COLUMNS + ") FROM STDIN WITH (FORMAT csv, HEADER true)",
+                    progress, copyBufferSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long copyNdjson(Connection con, InputStream in, long start) throws SQLException {
+        PGConnection pgConnection = con.unwrap(PGConnection.class);
+        long rows = 0;
+        String copySql = "COPY chat_import_stage (" + STAGE_COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                     new PGCopyOutputStream(pgConnection, copySql, copyBufferSize), StandardCharsets.UTF_8))) {
+            String line;
+            long lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    throw new ApiException("INVALID_INPUT", "Malformed JSON on line " + lineNo);
+                }
+                String type = text(node, "type");
+                if ("session".equals(type)) {
+                    writeRow(out, "session", text(node, "id"), null, text(node, "title"), text(node, "owner"),
+                            text(node, "favorite"), null, null, null, text(node, "createdAt"));
+                } else if ("message".equals(type)) {
+                    writeRow(out, "message", null, text(node, "sessionId"), null, null, null,
+                            text(node, "sender"), codec.encode(text(node, "content")), codec.encode(text(node, "context")),
+                            text(node, "createdAt"));
+                } else {
+                    throw new ApiException("INVALID_INPUT", "Unknown record type '" + type + "' on line " + lineNo);
+                }
+                if (++rows % progressInterval == 0) {
+                    logProgress(rows, start);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static void writeRow(Writer out, String... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            String v = values[i];
+            if (v != null) {
+                // quoted empty string is '', unquoted empty is NULL
+                out.write('"');
+                out.write(v.replace("\"", "\"\""));
+                out.write('"');
+            }
+        }
+        out.write('\n');
+    }
+
+    private void logProgress(long rows, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("Import progress: {} rows staged ({} rows/sec)", rows, rows * 1000 / elapsed);
+    }
+
+    /**
+     * Counts bytes passing through a CSV copy and logs progress periodically,
+     * since the driver only reports the row count once the copy completes.
+     */
+    private static final class ProgressInputStream extends FilterInputStream {
+        private static final long LOG_EVERY_BYTES = 64L * 1024 * 1024;
+        private final long start;
+        private long bytes;
+        private long nextLog = LOG_EVERY_BYTES;
+
+        ProgressInputStream(InputStream in, long start) {
+            super(in);
+            this.start = start;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                bytes += n;
+                if (bytes >= nextLog) {
+                    nextLog += LOG_EVERY_BYTES;
+                    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                    log.info("Import progress: {} MB staged ({} MB/sec)",
+                            bytes >> 20, (bytes >> 20) * 1000 / elapsed);
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.northbay.ragchat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the monthly range partitions of {@code chat_messages}.
+ * <p>
+ * Active once the table has been converted by the
+ * {@code V2__partition_chat_messages} migration. Once a day (and at startup)
+ * it creates partitions for the current month and the next
+ * {@code premake-months}. The table has no default partition, so this runs
+ * regardless of {@code app.partitioning.enabled}; otherwise inserts would fail
+ * once the months created by the migration have passed.
+ * <p>
+ * With {@code app.partitioning.enabled=true} it also removes partitions whose
+ * whole range is older than {@code retention-months}. Retention is a {@code DETACH PARTITION}
+ * followed by {@code DROP TABLE} (or only the detach, with
+ * {@code drop-detached=false}), a metadata-only operation instead of a
+ * row-level {@code DELETE}.
+ */
+@Slf4j
+@Component
+public class ChatMessagePartitionManager {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String IS_PARTITIONED_SQL =
+            "SELECT count(*) FROM pg_class WHERE relname = 'chat_messages' AND relkind = 'p'";
+
+    private static final String PARTITION_BOUNDS_SQL = """
+            SELECT c.relname AS name,
+                   (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz AS upper_bound
+            FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'chat_messages'::regclass
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean retentionEnabled;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final boolean dropDetached;
+
+    public ChatMessagePartitionManager(JdbcTemplate jdbcTemplate,
+                                       @Value("${app.partitioning.enabled:false}") boolean enabled,
+                                       @Value("${app.partitioning.premake-months:3}") int premakeMonths,
+                                       @Value("${app.partitioning.retention-months:0}") int retentionMonths,
+                                       @Value("${app.partitioning.drop-detached:true}") boolean dropDetached) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retentionEnabled = enabled;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.dropDetached = dropDetached;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    /**
+     * Creates upcoming partitions and applies retention.
+     */
+    @Scheduled(cron = "${app.partitioning.cron:0 15 3 * * *}")
+    public void maintain() {
+        Integer partitioned = jdbcTemplate.queryForObject(IS_PARTITIONED_SQL, Integer.class);
+        if (partitioned == null || partitioned == 0) {
+            if (retentionEnabled) {
+                log.warn("Partitioning enabled but chat_messages is not partitioned; run the V2 migration first");
+            }
+            return;
+        }
+        createUpcomingPartitions();
+        if (retentionEnabled && retentionMonths > 0) {
+            applyRetention();
+        }
+    }
+
+    private void createUpcomingPartitions() {
+        LocalDate month = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1);
+        for (int i = 0; i <= premakeMonths; i++) {
+            LocalDate from = month.plusMonths(i);
+            LocalDate to = from.plusMonths(1);
+            String name = "chat_messages_p" + from.format(SUFFIX);
+            try {
+                jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %s PARTITION OF chat_messages FOR VALUES FROM ('%s') TO ('%s')",
+                        name, from.atStartOfDay(ZoneOffset.UTC), to.atStartOfDay(ZoneOffset.UTC)));
+            } catch (DataAccessException e) {
+                // the range is still covered by the attached legacy partition
+                log.debug("Skipping partition {}: {}", name, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private void applyRetention() {
+        Instant cutoff = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1)
+                .minusMonths(retentionMonths)
+                .atStartOfDay(ZoneOffset.UTC)
+                .toInstant();
+
+        List<Map<String, Object>> partitions = jdbcTemplate.queryForList(PARTITION_BOUNDS_SQL);
+        for (Map<String, Object> partition : partitions) {
+            String name = (String) partition.get("name");
+            Timestamp upper = (Timestamp) partition.get("upper_bound");
+            if (upper == null || upper.toInstant().isAfter(cutoff)) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE chat_messages DETACH PARTITION " + name);
+            if (dropDetached) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+            }
+            log.info("Retention: {} partition {} (upper bound {})",
+                    dropDetached ? "dropped" : "detached", name, upper.toInstant());
+        }
+    }
+}
@@ -17,5 +17,15 @@ public interface ChatService {
     void deleteChatSession(Long id);
     List<ChatSessionDTO> listFavoriteSessions();
     ChatMessageDTO addMessage(Long sessionId, ChatMessageCreateRequest request);
-    ChatMessagePage getMessages(Long sessionId, Integer page, Integer size);
+    ChatMessagePage getMessages(Long sessionId, Integer page, Integer size, Long afterSeq);
+
+    default ChatMessagePage getMessages(Long sessionId, Integer page, Integer size) {
+        return getMessages(sessionId, page, size, null);
+    }
+
+    TaggedMessagePage getTaggedMessages(Long sessionId, Integer page, Integer size, Long afterSeq);
+
+    String getMessagesETag(Long sessionId);
+    String getSessionsETag(String owner);
+    String getFavoritesETag();
 }
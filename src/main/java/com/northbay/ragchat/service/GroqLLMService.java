@@ -1,5 +1,9 @@
 package com.northbay.ragchat.service;
 
+import com.northbay.ragchat.config.RequestIdFilter;
+import com.northbay.ragchat.diagnostics.LlmCallEvent;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -7,8 +11,10 @@ import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service responsible for communicating with the Groq LLM API.
@@ -20,9 +26,11 @@ public class GroqLLMService {
 
     private final WebClient webClient;
     private final String defaultModel;
+    private final ObservationRegistry observationRegistry;
 
     public GroqLLMService(
             WebClient.Builder webClientBuilder,
+            ObservationRegistry observationRegistry,
             @Value("${groq.api.url:https://api.groq.com/openai/v1}") String baseUrl,
             @Value("${groq.api.key:}") String apiKey,
             @Value("${groq.model:llama3-70b-8192}") String model
@@ -33,65 +41,142 @@ public class GroqLLMService {
                 .defaultHeader("Content-Type", "application/json")
                 .build();
         this.defaultModel = model;
+        this.observationRegistry = observationRegistry;
         log.info("✅ GroqLLMService initialized using model: {}", defaultModel);
     }
 
+    public String getDefaultModel() {
+        return defaultModel;
+    }
+
     /**
      * Sends a prompt to Groq and returns the model-generated text.
+     * Failures are returned as an error text instead of being thrown.
      */
-    @SuppressWarnings("unchecked")
     public String generateCompletion(String userPrompt) {
         try {
-            log.debug("Sending prompt to Groq model {}: {}", defaultModel, userPrompt);
-
-            Map<String, Object> payload = Map.of(
-                    "model", defaultModel,
-                    "messages", List.of(
-                            Map.of("role", "system", "content", "You are a helpful assistant."),
-                            Map.of("role", "user", "content", userPrompt)
-                    ),
-                    "temperature", 0.3,
-                    "stream", false
-            );
-
-            Map<String, Object> response = webClient.post()
-                    .uri("/chat/completions")
-                    .bodyValue(payload)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .onErrorResume(WebClientResponseException.class, e -> {
-                        log.error("Groq API HTTP {} error: {}", e.getRawStatusCode(), e.getResponseBodyAsString());
-                        return Mono.error(new RuntimeException("Groq API error: " + e.getResponseBodyAsString(), e));
-                    })
-                    .onErrorResume(e -> {
-                        log.error("Groq API call failed: {}", e.getMessage());
-                        return Mono.error(new RuntimeException("Groq API call failed: " + e.getMessage(), e));
-                    })
-                    .block();
-
-            if (response == null) {
-                throw new RuntimeException("Empty response from Groq API");
-            }
+            return complete(userPrompt, defaultModel).text();
+        } catch (Exception e) {
+            log.error("Groq LLM call failed: {}", e.getMessage(), e);
+            return "[Error generating response from Groq: " + e.getMessage() + "]";
+        }
+    }
 
-            List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
-            if (choices == null || choices.isEmpty()) {
-                throw new RuntimeException("Groq response missing 'choices' field: " + response);
+    /**
+     * Sends a prompt to the given Groq model. Each call is recorded as an {@link LlmCallEvent}
+     * for JDK Flight Recorder, including the time until the response headers arrived, and
+     * observed as an {@code llm.call} span carrying the model and token counts; the HTTP
+     * request to Groq is a child span and carries the W3C trace context upstream.
+     *
+     * @throws RuntimeException if the call fails or the response has no reply
+     */
+    public LlmCompletion complete(String userPrompt, String model) {
+        LlmCallEvent event = new LlmCallEvent();
+        event.begin();
+        long start = System.nanoTime();
+        AtomicLong firstByte = new AtomicLong();
+        LlmCompletion completion = null;
+        String error = null;
+        Observation observation = Observation.createNotStarted("llm.call", observationRegistry)
+                .contextualName("groq chat " + model)
+                .lowCardinalityKeyValue("gen_ai.system", "groq")
+                .lowCardinalityKeyValue("gen_ai.request.model", model)
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            completion = call(userPrompt, model, firstByte);
+            observation.highCardinalityKeyValue("gen_ai.usage.input_tokens", String.valueOf(completion.promptTokens()))
+                    .highCardinalityKeyValue("gen_ai.usage.output_tokens", String.valueOf(completion.completionTokens()));
+            return completion;
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+            event.end();
+            if (event.shouldCommit()) {
+                event.requestId = RequestIdFilter.currentRequestId();
+                event.model = model;
+                event.promptChars = userPrompt == null ? 0 : userPrompt.length();
+                event.timeToFirstByte = firstByte.get() == 0 ? 0 : firstByte.get() - start;
+                event.succeeded = completion != null;
+                event.promptTokens = completion == null ? 0 : completion.promptTokens();
+                event.completionTokens = completion == null ? 0 : completion.completionTokens();
+                event.error = error;
+                event.commit();
             }
+        }
+    }
+
+    /**
+     * Opens and keeps a pooled connection to Groq (DNS, TCP and TLS) with a cheap model listing,
+     * so the first completion after startup does not pay for the handshake. Failures are only logged.
+     */
+    public void warmUp() {
+        try {
+            webClient.get()
+                    .uri("/models")
+                    .retrieve()
+                    .toBodilessEntity()
+                    .block(Duration.ofSeconds(5));
+        } catch (RuntimeException e) {
+            log.debug("Groq warm-up request failed: {}", e.getMessage());
+        }
+    }
 
-            Map<String, Object> firstChoice = choices.get(0);
-            Map<String, Object> message = (Map<String, Object>) firstChoice.get("message");
+    @SuppressWarnings("unchecked")
+    private LlmCompletion call(String userPrompt, String model, AtomicLong firstByte) {
+        log.debug("Sending prompt to Groq model {}: {}", model, userPrompt);
 
-            if (message != null && message.get("content") != null) {
-                String text = message.get("content").toString().trim();
-                log.debug("✅ Groq LLM responded with {} chars", text.length());
-                return text;
-            }
+        Map<String, Object> payload = Map.of(
+                "model", model,
+                "messages", List.of(
+                        Map.of("role", "system", "content", "You are a helpful assistant."),
+                        Map.of("role", "user", "content", userPrompt)
+                ),
+                "temperature", 0.3,
+                "stream", false
+        );
 
-            log.warn("Groq returned unexpected format: {}", response);
-            return "[Unexpected Groq response format]";
-        } catch (Exception e) {
-            log.error("Groq LLM call failed: {}", e.getMessage(), e);
-            return "[Error generating response from Groq: " + e.getMessage() + "]";
+        Map<String, Object> response = webClient.post()
+                .uri("/chat/completions")
+                .bodyValue(payload)
+                .exchangeToMono(res -> {
+                    firstByte.set(System.nanoTime());
+                    return res.statusCode().isError() ? res.<Map>createError() : res.bodyToMono(Map.class);
+                })
+                .onErrorResume(WebClientResponseException.class, e -> {
+                    log.error("Groq API HTTP {} error: {}", e.getRawStatusCode(), e.getResponseBodyAsString());
+                    return Mono.error(new RuntimeException("Groq API error: " + e.getResponseBodyAsString(), e));
+                })
+                .onErrorResume(e -> {
+                    log.error("Groq API call failed: {}", e.getMessage());
+                    return Mono.error(new RuntimeException("Groq API call failed: " + e.getMessage(), e));
+                })
+                .block();
+
+        if (response == null) {
+            throw new RuntimeException("Empty response from Groq API");
+        }
+
+        List<Map<String, Object>> choices = (List<Map<String, Object>>) response.get("choices");
+        if (choices == null || choices.isEmpty()) {
+            throw new RuntimeException("Groq response missing 'choices' field: " + response);
+        }
+
+        Map<String, Object> firstChoice = choices.get(0);
+        Map<String, Object> message = (Map<String, Object>) firstChoice.get("message");
+        if (message == null || message.get("content") == null) {
+            throw new RuntimeException("Groq returned unexpected format: " + response);
         }
+
+        String text = message.get("content").toString().trim();
+        Map<String, Object> usage = (Map<String, Object>) response.get("usage");
+        log.debug("✅ Groq LLM ({}) responded with {} chars", model, text.length());
+        return new LlmCompletion(text, model, tokens(usage, "prompt_tokens"), tokens(usage, "completion_tokens"));
+    }
+
+    private static int tokens(Map<String, Object> usage, String field) {
+        return usage != null && usage.get(field) instanceof Number n ? n.intValue() : 0;
     }
 }
@@ -0,0 +1,256 @@
+package com.northbay.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.security.ApiKeyContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Executes requests at most once per client-supplied {@code Idempotency-Key}.
+ * <p>
+ * The first request with a key claims it in {@code idempotency_keys} and runs;
+ * its response is stored for {@code ttl-hours}. A retry with the same key
+ * <ul>
+ *   <li>while the original is still running on this instance attaches to its
+ *       in-memory future; on another instance it polls the stored record,</li>
+ *   <li>after the original completed gets the stored response replayed,</li>
+ *   <li>with a different request body is rejected with {@code 422}.</li>
+ * </ul>
+ * If the original request fails, the claim is released so a retry runs again.
+ * A claim left behind by a crashed instance expires after {@code in-progress-lease-ms}.
+ * Each claim carries a random token; a request whose lease expired and was
+ * re-claimed by a retry can neither overwrite the retry's response nor release its claim.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final String STATUS_COMPLETED = "COMPLETED";
+
+    private static final String CLAIM_SQL = """
+            INSERT INTO idempotency_keys (id, request_hash, status, claim_token, created_at, expires_at)
+            VALUES (?, ?, 'IN_PROGRESS', ?, now(), now() + ? * INTERVAL '1 millisecond')
+            ON CONFLICT (id) DO UPDATE
+                SET request_hash = EXCLUDED.request_hash, status = 'IN_PROGRESS', response_body = NULL,
+                    claim_token = EXCLUDED.claim_token,
+                    created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at
+                WHERE idempotency_keys.expires_at < now()
+            """;
+
+    private static final String COMPLETE_SQL = """
+            UPDATE idempotency_keys SET status = 'COMPLETED', response_body = ?,
+                   expires_at = now() + ? * INTERVAL '1 hour'
+            WHERE id = ? AND claim_token = ? AND status = 'IN_PROGRESS'
+            """;
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE id = ? AND claim_token = ? AND status = 'IN_PROGRESS'";
+
+    private static final String FIND_SQL =
+            "SELECT request_hash, status, response_body FROM idempotency_keys WHERE id = ? AND expires_at >= now()";
+
+    /** Outcome of an idempotent execution. */
+    public record Result<T>(T value, boolean replayed) {
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<Object> future) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final long ttlHours;
+    private final long leaseMs;
+    private final long attachTimeoutMs;
+    private final long pollIntervalMs;
+
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(JdbcTemplate jdbcTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${app.idempotency.in-progress-lease-ms:300000}") long leaseMs,
+                              @Value("${app.idempotency.attach-timeout-ms:60000}") long attachTimeoutMs,
+                              @Value("${app.idempotency.poll-interval-ms:250}") long pollIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.ttlHours = ttlHours;
+        this.leaseMs = leaseMs;
+        this.attachTimeoutMs = attachTimeoutMs;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    /**
+     * Runs {@code action} once for {@code key} and the current API key, or returns the result of the run that did.
+     *
+     * @param key         the client's idempotency key
+     * @param requestHash a fingerprint of the request, see {@link #fingerprint(Object...)}
+     * @param type        the response type, used to read back stored responses
+     * @param action      the operation to run
+     * @throws ApiException {@code 422} if the key was used for a different request,
+     *                      {@code 409} if the original request is still running after {@code attach-timeout-ms}
+     */
+    public <T> Result<T> execute(String key, String requestHash, Class<T> type, Supplier<T> action) {
+        if (key.isBlank() || key.length() > 255) {
+            throw new ApiException("INVALID_INPUT", "Idempotency-Key must be 1 to 255 characters");
+        }
+        String id = sha256(Objects.toString(ApiKeyContext.current(), "") + "\n" + key);
+
+        InFlight mine = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            requireSameRequest(running.requestHash(), requestHash);
+            return new Result<>(type.cast(await(running.future())), true);
+        }
+
+        String claimToken = UUID.randomUUID().toString();
+        boolean claimed = false;
+        try {
+            claimed = jdbcTemplate.update(CLAIM_SQL, id, requestHash, claimToken, leaseMs) == 1;
+            T value;
+            boolean replayed;
+            if (claimed) {
+                value = action.get();
+                if (jdbcTemplate.update(COMPLETE_SQL, write(value), ttlHours, id, claimToken) == 0) {
+                    // the lease expired while running and a retry re-claimed the key: its response wins
+                    log.warn("Idempotency: claim for a key expired after {} ms while its request ran; "
+                            + "the response was not stored", leaseMs);
+                }
+                replayed = false;
+            } else {
+                value = awaitStored(id, requestHash, type);
+                replayed = true;
+            }
+            mine.future().complete(value);
+            return new Result<>(value, replayed);
+        } catch (RuntimeException e) {
+            mine.future().completeExceptionally(e);
+            if (claimed) {
+                jdbcTemplate.update(RELEASE_SQL, id, claimToken);
+            }
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    /**
+     * Hashes the parts that identify a request, so a key reused for another request can be detected.
+     */
+    public static String fingerprint(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            String s = Objects.toString(part, "");
+            sb.append(s.length()).append(':').append(s);
+        }
+        return sha256(sb.toString());
+    }
+
+    /**
+     * Removes expired keys.
+     */
+    @Scheduled(cron = "${app.idempotency.cleanup-cron:0 */10 * * * *}")
+    public void purgeExpired() {
+        int removed = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at < now()");
+        if (removed > 0) {
+            log.debug("Idempotency: removed {} expired keys", removed);
+        }
+    }
+
+    private <T> T awaitStored(String id, String requestHash, Class<T> type) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(attachTimeoutMs);
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(FIND_SQL, id);
+            if (rows.isEmpty()) {
+                // released after a failure or expired in the meantime
+                throw new ApiException(HttpStatus.CONFLICT, "IDEMPOTENCY_CONFLICT",
+                        "The original request with this Idempotency-Key did not complete, retry");
+            }
+            Map<String, Object> row = rows.get(0);
+            requireSameRequest((String) row.get("request_hash"), requestHash);
+            if (STATUS_COMPLETED.equals(row.get("status"))) {
+                return read((String) row.get("response_body"), type);
+            }
+            if (System.nanoTime() > deadline) {
+                throw inProgress();
+            }
+            try {
+                Thread.sleep(pollIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw inProgress();
+            }
+        }
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get(attachTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw inProgress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw inProgress();
+        }
+    }
+
+    private static void requireSameRequest(String stored, String requestHash) {
+        if (!stored.equals(requestHash)) {
+            throw new ApiException(HttpStatus.UNPROCESSABLE_ENTITY, "IDEMPOTENCY_CONFLICT",
+                    "Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private static ApiException inProgress() {
+        return new ApiException(HttpStatus.CONFLICT, "IDEMPOTENCY_CONFLICT",
+                "A request with this Idempotency-Key is still in progress");
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store idempotent response", e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read stored idempotent response", e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.northbay.ragchat.service;
+
+/**
+ * Result of one LLM call.
+ *
+ * @param text             the generated reply
+ * @param model            the model that produced it
+ * @param promptTokens     prompt tokens reported by the provider, 0 if unknown
+ * @param completionTokens completion tokens reported by the provider, 0 if unknown
+ */
+public record LlmCompletion(String text, String model, int promptTokens, int completionTokens) {
+}
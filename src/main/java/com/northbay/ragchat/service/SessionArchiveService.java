@@ -0,0 +1,250 @@
+package com.northbay.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.northbay.ragchat.entity.ChatMessage;
+import com.northbay.ragchat.service.compression.MessagePayloadCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves inactive sessions into a compressed cold tier and back.
+ * <p>
+ * When {@code app.archive.enabled=true}, a scheduled job picks sessions with
+ * no message newer than {@code inactive-days}, writes all of their messages as
+ * one gzip-compressed NDJSON blob into {@code chat_session_archives}, deletes
+ * the rows from {@code chat_messages} and flags the session as archived. This
+ * keeps the hot tables and their indexes limited to sessions that are in use.
+ * <p>
+ * Reads of an archived session decode the blob without touching the hot
+ * tables ({@link #read(Long)}), so a read-only request never writes. Writing
+ * to the session restores its messages into {@code chat_messages} (with their
+ * original ids and timestamps) first, in the writer's transaction ({@link #restore(Long)}).
+ */
+@Slf4j
+@Service
+public class SessionArchiveService {
+
+    private static final String CODEC = "gzip";
+
+    private static final String CANDIDATES_SQL = """
+            SELECT s.id FROM chat_sessions s
+            WHERE COALESCE(s.archived, false) = false
+              AND s.created_at < ?
+              AND EXISTS (SELECT 1 FROM chat_messages m WHERE m.session_id = s.id)
+              AND NOT EXISTS (SELECT 1 FROM chat_messages m WHERE m.session_id = s.id AND m.created_at >= ?)
+            ORDER BY s.id
+            LIMIT ?
+            """;
+
+    private static final String MESSAGES_SQL = """
+            SELECT id, seq, sender, content, context, created_at, updated_at
+            FROM chat_messages WHERE session_id = ? ORDER BY seq NULLS FIRST, id
+            """;
+
+    private static final String RESTORE_SQL = """
+            INSERT INTO chat_messages (id, session_id, seq, sender, content, context, created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final MessagePayloadCodec codec;
+    private final boolean enabled;
+    private final int inactiveDays;
+    private final int batchSize;
+
+    public SessionArchiveService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 MessagePayloadCodec codec,
+                                 @Value("${app.archive.enabled:false}") boolean enabled,
+                                 @Value("${app.archive.inactive-days:30}") int inactiveDays,
+                                 @Value("${app.archive.batch-size:100}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.codec = codec;
+        this.enabled = enabled;
+        this.inactiveDays = inactiveDays;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Archives up to {@code batch-size} inactive sessions per run.
+     */
+    @Scheduled(cron = "${app.archive.cron:0 30 2 * * *}")
+    public void archiveInactiveSessions() {
+        if (!enabled) return;
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(inactiveDays, ChronoUnit.DAYS));
+        List<Long> candidates = jdbcTemplate.queryForList(CANDIDATES_SQL, Long.class, cutoff, cutoff, batchSize);
+        int archived = 0;
+        for (Long sessionId : candidates) {
+            try {
+                if (archiveSession(sessionId, cutoff)) archived++;
+            } catch (Exception e) {
+                log.error("Archiving session {} failed: {}", sessionId, e.getMessage(), e);
+            }
+        }
+        log.info("Archive run: {} of {} candidate sessions archived", archived, candidates.size());
+    }
+
+    /**
+     * Archives one session if it is still inactive once its row is locked.
+     * The row lock also blocks concurrent inserts, whose foreign-key check
+     * needs a share lock on the session.
+     */
+    public boolean archiveSession(Long sessionId, Timestamp cutoff) {
+        Boolean done = tx.execute(status -> {
+            List<Long> locked = jdbcTemplate.queryForList(
+                    "SELECT id FROM chat_sessions WHERE id = ? AND COALESCE(archived, false) = false FOR UPDATE",
+                    Long.class, sessionId);
+            Integer recent = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM chat_messages WHERE session_id = ? AND created_at >= ?",
+                    Integer.class, sessionId, cutoff);
+            if (locked.isEmpty() || recent == null || recent > 0) {
+                return false;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int[] count = {0};
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                 SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(gzip)) {
+                jdbcTemplate.query(MESSAGES_SQL, rs -> {
+                    try {
+                        writer.write(new ArchivedMessage(
+                                rs.getLong("id"),
+                                rs.getObject("seq", Long.class),
+                                rs.getString("sender"),
+                                rs.getString("content"),
+                                rs.getString("context"),
+                                toInstant(rs.getTimestamp("created_at")),
+                                toInstant(rs.getTimestamp("updated_at"))));
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, sessionId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            jdbcTemplate.update("""
+                    INSERT INTO chat_session_archives (session_id, message_count, codec, payload, archived_at)
+                    VALUES (?, ?, ?, ?, now())
+                    """, sessionId, count[0], CODEC, bytes.toByteArray());
+            jdbcTemplate.update("DELETE FROM chat_messages WHERE session_id = ?", sessionId);
+            jdbcTemplate.update("UPDATE chat_sessions SET archived = true WHERE id = ?", sessionId);
+            log.debug("Archived session {} ({} messages, {} bytes)", sessionId, count[0], bytes.size());
+            return true;
+        });
+        return Boolean.TRUE.equals(done);
+    }
+
+    /**
+     * Decodes an archived session without restoring it.
+     *
+     * @return the session's messages in sequence order, or an empty list if it has no archive
+     */
+    public List<ChatMessage> read(Long sessionId) {
+        return readArchive(sessionId).stream()
+                .map(m -> ChatMessage.builder()
+                        .id(m.id())
+                        .seq(m.seq())
+                        .sender(m.sender())
+                        .content(codec.decode(m.content()))
+                        .context(codec.decode(m.context()))
+                        .createdAt(m.createdAt())
+                        .updatedAt(m.updatedAt())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Restores an archived session into the hot tables before it is written to.
+     * Joins the caller's transaction if there is one, so a rolled-back write
+     * (for example in a batch) leaves the session archived.
+     */
+    public void restore(Long sessionId) {
+        restore(sessionId, readArchive(sessionId));
+    }
+
+    /**
+     * Removes the archive of a deleted session.
+     */
+    public void discard(Long sessionId) {
+        jdbcTemplate.update("DELETE FROM chat_session_archives WHERE session_id = ?", sessionId);
+    }
+
+    private void restore(Long sessionId, List<ArchivedMessage> messages) {
+        tx.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(RESTORE_SQL, messages, 1000, (ps, m) -> {
+                ps.setLong(1, m.id());
+                ps.setLong(2, sessionId);
+                ps.setLong(3, m.seq());
+                ps.setString(4, m.sender());
+                ps.setString(5, m.content());
+                ps.setString(6, m.context());
+                ps.setTimestamp(7, m.createdAt() == null ? null : Timestamp.from(m.createdAt()));
+                ps.setTimestamp(8, m.updatedAt() == null ? null : Timestamp.from(m.updatedAt()));
+            });
+            jdbcTemplate.update("DELETE FROM chat_session_archives WHERE session_id = ?", sessionId);
+            jdbcTemplate.update("UPDATE chat_sessions SET archived = false WHERE id = ?", sessionId);
+        });
+        log.info("Restored archived session {} ({} messages)", sessionId, messages.size());
+    }
+
+    private List<ArchivedMessage> readArchive(Long sessionId) {
+        List<byte[]> payloads = jdbcTemplate.queryForList(
+                "SELECT payload FROM chat_session_archives WHERE session_id = ?", byte[].class, sessionId);
+        List<ArchivedMessage> messages = new ArrayList<>();
+        if (payloads.isEmpty()) {
+            return messages;
+        }
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(payloads.get(0)))) {
+            objectMapper.readerFor(ArchivedMessage.class).<ArchivedMessage>readValues(in)
+                    .forEachRemaining(messages::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt archive for session " + sessionId, e);
+        }
+        // archives written before sequence numbers existed are in id order; number them by position
+        for (int i = 0; i < messages.size(); i++) {
+            ArchivedMessage m = messages.get(i);
+            if (m.seq() == null) {
+                messages.set(i, new ArchivedMessage(m.id(), (long) i + 1, m.sender(), m.content(), m.context(),
+                        m.createdAt(), m.updatedAt()));
+            }
+        }
+        return messages;
+    }
+
+    private static Instant toInstant(Timestamp ts) {
+        return ts == null ? null : ts.toInstant();
+    }
+
+    /**
+     * One message line of an archive blob.
+     */
+    record ArchivedMessage(Long id, Long seq, String sender, String content, String context,
+                           Instant createdAt, Instant updatedAt) {
+    }
+}
@@ -0,0 +1,87 @@
+package com.northbay.ragchat.service;
+
+import com.northbay.ragchat.exception.ApiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes message writes per session on this instance.
+ * <p>
+ * A message is stored under its session's lock, which is never held across
+ * an LLM call: a user turn releases it after storing the user message and
+ * takes it again to store the reply. Writers of a busy session thus wait
+ * here instead of holding a pooled connection while blocked on the session
+ * row. Locks exist only while held or awaited, so sessions never contend with
+ * each other. Sequence numbers do not depend on this lock; they stay unique
+ * and gap-free on every instance through the counter on the session row
+ * ({@code ChatSessionRepository.recordMessage}).
+ */
+@Component
+public class SessionTurnLocks {
+
+    /** A held session lock; closing it releases the lock. */
+    public interface Handle extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        int users;
+    }
+
+    private final ConcurrentHashMap<Long, Entry> locks = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+
+    public SessionTurnLocks(@Value("${app.sequencing.turn-lock-timeout-ms:30000}") long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Waits for the session's lock. Reentrant for the holding thread.
+     *
+     * @throws ApiException with {@code 503} if the session stays busy for {@code turn-lock-timeout-ms}
+     */
+    public Handle lock(Long sessionId) {
+        Entry entry = locks.compute(sessionId, (id, e) -> {
+            Entry held = e != null ? e : new Entry();
+            held.users++;
+            return held;
+        });
+        boolean acquired = false;
+        try {
+            acquired = entry.lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!acquired) {
+                release(sessionId);
+            }
+        }
+        if (!acquired) {
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_OVERLOADED",
+                    "Session " + sessionId + " is busy with another message, retry later");
+        }
+        return new Handle() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    entry.lock.unlock();
+                    release(sessionId);
+                }
+            }
+        };
+    }
+
+    private void release(Long sessionId) {
+        locks.computeIfPresent(sessionId, (id, e) -> --e.users == 0 ? null : e);
+    }
+}
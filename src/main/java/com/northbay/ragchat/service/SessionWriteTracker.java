@@ -0,0 +1,112 @@
+package com.northbay.ragchat.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers recent writes so that follow-up reads can stay on the primary.
+ * <p>
+ * Replicas may lag behind the primary; a client that just added a message
+ * and immediately lists the session must still see it. Writes are recorded
+ * per session, per owner and for the favorites list, and reads touching one
+ * of those keys within {@code app.datasource.replicas.sticky-window-ms} are
+ * routed to the primary.
+ * <p>
+ * Inside a transaction, writes are recorded once it commits; a rolled-back
+ * write (for example a failed batch) leaves no trace.
+ */
+@Component
+public class SessionWriteTracker {
+
+    private static final String ANY = "any";
+    private static final String FAVORITES = "favorites";
+    private static final String DELETE = "delete";
+
+    private final long windowMs;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    public SessionWriteTracker(@Value("${app.datasource.replicas.sticky-window-ms:2000}") long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * Records a create, update or message append on a session.
+     */
+    public void recordSessionWrite(Long sessionId, String owner) {
+        onCommit(() -> {
+            long now = System.currentTimeMillis();
+            lastWrites.put("s:" + sessionId, now);
+            if (owner != null) lastWrites.put("o:" + owner, now);
+            lastWrites.put(ANY, now);
+        });
+    }
+
+    /**
+     * Records a change to a session's favorite flag.
+     */
+    public void recordFavoritesWrite() {
+        onCommit(() -> lastWrites.put(FAVORITES, System.currentTimeMillis()));
+    }
+
+    /**
+     * Records a session deletion, which affects every list it may have appeared in.
+     */
+    public void recordDelete(Long sessionId) {
+        onCommit(() -> {
+            long now = System.currentTimeMillis();
+            lastWrites.put("s:" + sessionId, now);
+            lastWrites.put(ANY, now);
+            lastWrites.put(FAVORITES, now);
+            lastWrites.put(DELETE, now);
+        });
+    }
+
+    public boolean isSessionRecent(Long sessionId) {
+        return isRecent("s:" + sessionId);
+    }
+
+    public boolean isOwnerRecent(String owner) {
+        return isRecent("o:" + owner) || isRecent(DELETE);
+    }
+
+    public boolean isAnyRecent() {
+        return isRecent(ANY);
+    }
+
+    public boolean isFavoritesRecent() {
+        return isRecent(FAVORITES);
+    }
+
+    private void onCommit(Runnable record) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record.run();
+            }
+        });
+    }
+
+    private boolean isRecent(String key) {
+        Long at = lastWrites.get(key);
+        return at != null && System.currentTimeMillis() - at < windowMs;
+    }
+
+    /**
+     * Drops entries that have left the sticky window.
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - windowMs;
+        lastWrites.values().removeIf(at -> at < cutoff);
+    }
+}
@@ -0,0 +1,12 @@
+package com.northbay.ragchat.service;
+
+import com.northbay.ragchat.model.ChatMessagePage;
+
+/**
+ * A page of messages with the ETag of the session version it was read at.
+ *
+ * @param page the messages
+ * @param etag the ETag of the version read from the same database, just before the page
+ */
+public record TaggedMessagePage(ChatMessagePage page, String etag) {
+}
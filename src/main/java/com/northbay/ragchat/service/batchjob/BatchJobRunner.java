@@ -0,0 +1,451 @@
+package com.northbay.ragchat.service.batchjob;
+
+import com.northbay.ragchat.service.LlmCompletion;
+import com.northbay.ragchat.service.SessionArchiveService;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler.Lane;
+import com.northbay.ragchat.service.routing.LlmModelRouter;
+import com.northbay.ragchat.service.writebehind.ChatMessageBatchWriter;
+import com.northbay.ragchat.service.writebehind.PendingMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers the items of offline LLM batch jobs in the background.
+ * <p>
+ * {@code workers} threads each claim up to {@code chunk-size} due items,
+ * oldest job first, with {@code FOR UPDATE SKIP LOCKED} and a lease of
+ * {@code lease-ms}, so several instances share the work. Every LLM call takes
+ * a {@link Lane#BATCH} slot from {@link LlmDispatchScheduler}: batch work uses
+ * whatever capacity interactive traffic leaves, up to the batch share, and
+ * interactive requests are always dispatched first.
+ * <p>
+ * Checkpointing: the replies of a chunk are written through
+ * {@link ChatMessageBatchWriter} in the same transaction that marks the items
+ * done and advances the job's counters. Only the worker holding an item's
+ * current lease (matched on the attempt number) can mark it done, so items of
+ * a crashed worker are answered again once their lease expires without any
+ * reply being stored twice. Before each LLM call the worker renews the leases
+ * of the chunk's items it still holds, so {@code lease-ms} only has to cover
+ * one call, and items whose lease was lost are left to their new owner. The
+ * checkpoint locks the items' sessions against deletion; an item whose
+ * session was deleted after it was answered fails instead of pointing at a
+ * reply that was never stored.
+ * <p>
+ * A failed item is retried up to {@code max-attempts} times with exponential
+ * backoff. A {@code 429} from the provider also pauses all workers of this
+ * instance for its {@code Retry-After}, so throughput settles at the
+ * provider's rate limit instead of attempts being burnt against it.
+ * <p>
+ * The job tables only exist once Flyway has run {@code V10}; without them the
+ * workers are not started.
+ */
+@Slf4j
+@Component
+public class BatchJobRunner {
+
+    private static final String TABLES_EXIST_SQL = "SELECT to_regclass('llm_batch_job_items') IS NOT NULL";
+
+    private static final String CLAIM_SQL = """
+            UPDATE llm_batch_job_items i
+            SET status = 'RUNNING', attempts = i.attempts + 1, lease_until = now() + ? * INTERVAL '1 millisecond'
+            FROM (SELECT c.job_id, c.item_index
+                  FROM llm_batch_job_items c
+                  JOIN llm_batch_jobs j ON j.id = c.job_id AND j.status IN ('QUEUED', 'RUNNING')
+                  WHERE c.status IN ('PENDING', 'RUNNING') AND (c.lease_until IS NULL OR c.lease_until < now())
+                  ORDER BY c.job_id, c.item_index
+                  LIMIT ?
+                  FOR UPDATE OF c SKIP LOCKED) due
+            WHERE i.job_id = due.job_id AND i.item_index = due.item_index
+            RETURNING i.job_id, i.item_index, i.session_id, i.prompt, i.attempts
+            """;
+
+    private static final String START_JOB_SQL =
+            "UPDATE llm_batch_jobs SET status = 'RUNNING', updated_at = now() WHERE id = ? AND status = 'QUEUED'";
+
+    private static final String RENEW_SQL = """
+            UPDATE llm_batch_job_items i SET lease_until = now() + ? * INTERVAL '1 millisecond'
+            FROM unnest(?::bigint[], ?::int[], ?::int[]) AS c(job_id, item_index, attempts)
+            WHERE i.job_id = c.job_id AND i.item_index = c.item_index AND i.attempts = c.attempts
+              AND i.status = 'RUNNING'
+            RETURNING i.job_id, i.item_index
+            """;
+
+    private static final String SESSION_SQL = "SELECT archived, llm_model FROM chat_sessions WHERE id = ?";
+
+    // keeps the sessions from being deleted until the checkpoint commits
+    private static final String LOCK_SESSIONS_SQL =
+            "SELECT id FROM chat_sessions WHERE id = ANY(?) ORDER BY id FOR KEY SHARE";
+
+    private static final String DONE_SQL = """
+            UPDATE llm_batch_job_items SET status = 'DONE', lease_until = NULL, error = NULL, reply_message_id = ?
+            WHERE job_id = ? AND item_index = ? AND status = 'RUNNING' AND attempts = ?
+            """;
+
+    private static final String FAIL_SQL = """
+            UPDATE llm_batch_job_items SET status = 'FAILED', lease_until = NULL, error = ?
+            WHERE job_id = ? AND item_index = ? AND status = 'RUNNING' AND attempts = ?
+            """;
+
+    // back to PENDING (or CANCELLED if the job was cancelled meanwhile), due again after the delay
+    private static final String RETRY_SQL = """
+            UPDATE llm_batch_job_items i
+            SET status = CASE WHEN j.status = 'CANCELLED' THEN 'CANCELLED' ELSE 'PENDING' END,
+                lease_until = now() + ? * INTERVAL '1 millisecond', error = COALESCE(?, i.error),
+                attempts = i.attempts - ?
+            FROM llm_batch_jobs j
+            WHERE j.id = i.job_id AND i.job_id = ? AND i.item_index = ? AND i.status = 'RUNNING' AND i.attempts = ?
+            """;
+
+    private static final String PROGRESS_SQL = """
+            UPDATE llm_batch_jobs
+            SET completed_items = completed_items + ?, failed_items = failed_items + ?, updated_at = now()
+            WHERE id = ?
+            """;
+
+    private static final String FINISH_SQL = """
+            UPDATE llm_batch_jobs j SET status = 'COMPLETED', updated_at = now(), finished_at = now()
+            WHERE j.id = ? AND j.status = 'RUNNING'
+              AND NOT EXISTS (SELECT 1 FROM llm_batch_job_items i
+                              WHERE i.job_id = j.id AND i.status IN ('PENDING', 'RUNNING'))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final ChatMessageBatchWriter batchWriter;
+    private final LlmModelRouter modelRouter;
+    private final LlmDispatchScheduler dispatchScheduler;
+    private final SessionArchiveService archiveService;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final int workers;
+    private final int chunkSize;
+    private final long leaseMs;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long maxBackoffMs;
+    private final long pollIntervalMs;
+
+    private final AtomicLong pausedUntil = new AtomicLong();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public BatchJobRunner(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                          ChatMessageBatchWriter batchWriter, LlmModelRouter modelRouter,
+                          LlmDispatchScheduler dispatchScheduler, SessionArchiveService archiveService,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.batch-jobs.enabled:true}") boolean enabled,
+                          @Value("${app.batch-jobs.workers:4}") int workers,
+                          @Value("${app.batch-jobs.chunk-size:20}") int chunkSize,
+                          @Value("${app.batch-jobs.lease-ms:600000}") long leaseMs,
+                          @Value("${app.batch-jobs.max-attempts:5}") int maxAttempts,
+                          @Value("${app.batch-jobs.retry-backoff-ms:1000}") long retryBackoffMs,
+                          @Value("${app.batch-jobs.max-backoff-ms:60000}") long maxBackoffMs,
+                          @Value("${app.batch-jobs.poll-interval-ms:5000}") long pollIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.batchWriter = batchWriter;
+        this.modelRouter = modelRouter;
+        this.dispatchScheduler = dispatchScheduler;
+        this.archiveService = archiveService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+        this.leaseMs = leaseMs;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(TABLES_EXIST_SQL, Boolean.class))) {
+            log.warn("Batch job tables are missing (run the Flyway migrations, V10); batch job workers not started");
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::workLoop, "batch-job-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            threads.add(worker);
+        }
+        log.info("Batch job runner started: {} workers, chunks of {} items", workers, chunkSize);
+    }
+
+    /**
+     * Lets the workers checkpoint the items they have answered; unanswered claimed items are released.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : threads) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void workLoop() {
+        while (running) {
+            try {
+                pause();
+                List<ClaimedItem> chunk = claim();
+                if (chunk.isEmpty()) {
+                    Thread.sleep(pollIntervalMs);
+                    continue;
+                }
+                List<Answer> answers = new ArrayList<>(chunk.size());
+                List<ClaimedItem> held = new ArrayList<>(chunk);
+                for (ClaimedItem item : chunk) {
+                    if (running) {
+                        pause();
+                    }
+                    if (!running) {
+                        answers.add(Answer.released(item));
+                        continue;
+                    }
+                    Set<ItemKey> renewed = renewLeases(held);
+                    held.removeIf(h -> !renewed.contains(h.key()));
+                    if (!renewed.contains(item.key())) {
+                        log.warn("Batch job {} item {} lost its lease, leaving it to its new owner",
+                                item.jobId(), item.index());
+                        continue;
+                    }
+                    answers.add(answer(item));
+                }
+                checkpoint(answers);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Batch job worker failed: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private List<ClaimedItem> claim() {
+        List<ClaimedItem> chunk = new ArrayList<>(jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new ClaimedItem(
+                rs.getLong("job_id"), rs.getInt("item_index"), rs.getLong("session_id"),
+                rs.getString("prompt"), rs.getInt("attempts")), leaseMs, chunkSize));
+        chunk.sort(Comparator.comparingLong(ClaimedItem::jobId).thenComparingInt(ClaimedItem::index));
+        chunk.stream().map(ClaimedItem::jobId).distinct().forEach(jobId -> jdbcTemplate.update(START_JOB_SQL, jobId));
+        return chunk;
+    }
+
+    /**
+     * Extends the leases of the given items that this worker still holds.
+     *
+     * @return the items whose lease was renewed
+     */
+    Set<ItemKey> renewLeases(Collection<ClaimedItem> held) {
+        if (held.isEmpty()) return Set.of();
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(RENEW_SQL);
+            ps.setLong(1, leaseMs);
+            ps.setArray(2, con.createArrayOf("bigint", held.stream().map(ClaimedItem::jobId).toArray()));
+            ps.setArray(3, con.createArrayOf("integer", held.stream().map(ClaimedItem::index).toArray()));
+            ps.setArray(4, con.createArrayOf("integer", held.stream().map(ClaimedItem::attempt).toArray()));
+            return ps;
+        }, (rs, rowNum) -> new ItemKey(rs.getLong("job_id"), rs.getInt("item_index"))));
+    }
+
+    private Answer answer(ClaimedItem item) {
+        List<Map<String, Object>> session = jdbcTemplate.queryForList(SESSION_SQL, item.sessionId());
+        if (session.isEmpty()) {
+            return Answer.failed(item, "Session " + item.sessionId() + " not found", true, 0);
+        }
+        try {
+            if (Boolean.TRUE.equals(session.get(0).get("archived"))) {
+                archiveService.restore(item.sessionId());
+            }
+            Instant askedAt = Instant.now();
+            LlmCompletion completion;
+            try (LlmDispatchScheduler.Permit permit =
+                         dispatchScheduler.acquire(Lane.BATCH, dispatchScheduler.costOf(item.prompt()))) {
+                completion = modelRouter.completeOrThrow(item.prompt(), (String) session.get(0).get("llm_model"));
+            }
+            int idBlock = chunkSize * 2;
+            PendingMessage question = new PendingMessage(batchWriter.nextId(idBlock), item.sessionId(), "user",
+                    item.prompt(), "{\"source\":\"batch-job\",\"job\":" + item.jobId() + "}", askedAt);
+            PendingMessage reply = new PendingMessage(batchWriter.nextId(idBlock), item.sessionId(), "assistant",
+                    completion.text(), "{\"source\":\"groq\",\"model\":\"" + completion.model()
+                    + "\",\"job\":" + item.jobId() + "}", Instant.now());
+            return new Answer(item, question, reply, null, false, 0);
+        } catch (RuntimeException e) {
+            long retryAfter = retryAfterMs(e);
+            if (retryAfter >= 0) {
+                long until = System.currentTimeMillis() + Math.max(retryAfter, retryDelayMs(item.attempt()));
+                pausedUntil.accumulateAndGet(until, Math::max);
+                log.warn("LLM provider rate limit hit, pausing batch jobs for {} ms", until - System.currentTimeMillis());
+            } else {
+                log.warn("Batch job {} item {} failed (attempt {}): {}",
+                        item.jobId(), item.index(), item.attempt(), e.getMessage());
+            }
+            return Answer.failed(item, e.getMessage(), false, Math.max(retryAfter, 0));
+        }
+    }
+
+    /**
+     * Stores the answered items' messages and outcomes, and the jobs' progress, in one transaction.
+     */
+    void checkpoint(List<Answer> answers) {
+        tx.executeWithoutResult(status -> {
+            Set<Long> sessions = lockSessions(answers.stream()
+                    .filter(a -> a.reply() != null).map(a -> a.item().sessionId()).distinct().toList());
+            List<PendingMessage> messages = new ArrayList<>();
+            Map<Long, int[]> progress = new TreeMap<>();
+            for (Answer a : answers) {
+                ClaimedItem item = a.item();
+                int[] counts = progress.computeIfAbsent(item.jobId(), id -> new int[2]);
+                if (a.reply() != null && !sessions.contains(item.sessionId())) {
+                    String error = "Session " + item.sessionId() + " deleted";
+                    if (jdbcTemplate.update(FAIL_SQL, error, item.jobId(), item.index(), item.attempt()) > 0) {
+                        counts[1]++;
+                        count("failed");
+                    }
+                } else if (a.reply() != null) {
+                    if (jdbcTemplate.update(DONE_SQL, a.reply().id(), item.jobId(), item.index(), item.attempt()) > 0) {
+                        messages.add(a.question());
+                        messages.add(a.reply());
+                        counts[0]++;
+                        count("done");
+                    }
+                } else if (a.error() == null) {
+                    // claimed but not attempted: give the attempt back
+                    jdbcTemplate.update(RETRY_SQL, 0, null, 1, item.jobId(), item.index(), item.attempt());
+                } else if (a.terminal() || item.attempt() >= maxAttempts) {
+                    if (jdbcTemplate.update(FAIL_SQL, a.error(), item.jobId(), item.index(), item.attempt()) > 0) {
+                        counts[1]++;
+                        count("failed");
+                    }
+                } else {
+                    long delay = Math.max(a.retryAfterMs(), retryDelayMs(item.attempt()));
+                    jdbcTemplate.update(RETRY_SQL, delay, a.error(), 0, item.jobId(), item.index(), item.attempt());
+                    count("retried");
+                }
+            }
+            batchWriter.write(messages);
+            progress.forEach((jobId, counts) -> {
+                jdbcTemplate.update(PROGRESS_SQL, counts[0], counts[1], jobId);
+                if (jdbcTemplate.update(FINISH_SQL, jobId) > 0) {
+                    log.info("Batch job {} completed", jobId);
+                }
+            });
+        });
+    }
+
+    /**
+     * Locks the existing sessions among {@code sessionIds} until the transaction ends.
+     *
+     * @return the ids of the sessions that still exist
+     */
+    private Set<Long> lockSessions(List<Long> sessionIds) {
+        if (sessionIds.isEmpty()) return Set.of();
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_SESSIONS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", sessionIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1)));
+    }
+
+    private void pause() throws InterruptedException {
+        long wait;
+        while (running && (wait = pausedUntil.get() - System.currentTimeMillis()) > 0) {
+            Thread.sleep(Math.min(wait, pollIntervalMs));
+        }
+    }
+
+    private void count(String outcome) {
+        Counter.builder("batch.jobs.items")
+                .tag("outcome", outcome)
+                .description("Batch job items by attempt outcome")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Backoff before the next attempt of an item that failed its {@code attempt}-th try.
+     */
+    long retryDelayMs(int attempt) {
+        long delay = retryBackoffMs << Math.min(Math.max(attempt - 1, 0), 20);
+        return Math.min(delay, maxBackoffMs);
+    }
+
+    /**
+     * If {@code error} was caused by a provider {@code 429}, the {@code Retry-After} it
+     * asked for in milliseconds ({@code 0} if none); otherwise {@code -1}.
+     */
+    static long retryAfterMs(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof WebClientResponseException e
+                    && e.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                String retryAfter = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+                try {
+                    return retryAfter == null ? 0 : TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+                } catch (NumberFormatException ignored) {
+                    return 0;
+                }
+            }
+        }
+        return -1;
+    }
+
+    record ClaimedItem(long jobId, int index, long sessionId, String prompt, int attempt) {
+
+        ItemKey key() {
+            return new ItemKey(jobId, index);
+        }
+    }
+
+    record ItemKey(long jobId, int index) {
+    }
+
+    /**
+     * Outcome of one claimed item: a question and reply to store, an error, or neither if it was not attempted.
+     */
+    record Answer(ClaimedItem item, PendingMessage question, PendingMessage reply,
+                          String error, boolean terminal, long retryAfterMs) {
+
+        static Answer failed(ClaimedItem item, String error, boolean terminal, long retryAfterMs) {
+            return new Answer(item, null, null, error == null ? "Unknown error" : error, terminal, retryAfterMs);
+        }
+
+        static Answer released(ClaimedItem item) {
+            return new Answer(item, null, null, null, false, 0);
+        }
+    }
+}
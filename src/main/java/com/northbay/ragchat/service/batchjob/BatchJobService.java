@@ -0,0 +1,201 @@
+package com.northbay.ragchat.service.batchjob;
+
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.model.BatchJob;
+import com.northbay.ragchat.model.BatchJobItem;
+import com.northbay.ragchat.model.BatchJobItemRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stores offline LLM batch jobs and reports their progress.
+ * <p>
+ * A job is a list of (session, prompt) items kept in {@code llm_batch_job_items};
+ * {@link BatchJobRunner} answers them in the background. Job state lives only
+ * in the database, so progress survives restarts and any instance can serve
+ * status requests or resume the work.
+ */
+@Slf4j
+@Service
+public class BatchJobService {
+
+    private static final String JOB_SQL = """
+            SELECT id, status, total_items, completed_items, failed_items, created_at, updated_at, finished_at
+            FROM llm_batch_jobs WHERE id = ?
+            """;
+
+    private static final String INSERT_JOB_SQL = """
+            INSERT INTO llm_batch_jobs (status, total_items, created_at, updated_at)
+            VALUES ('QUEUED', ?, now(), now())
+            RETURNING id
+            """;
+
+    private static final String INSERT_ITEM_SQL = """
+            INSERT INTO llm_batch_job_items (job_id, item_index, session_id, prompt, status)
+            VALUES (?, ?, ?, ?, 'PENDING')
+            """;
+
+    private static final String EXISTING_SESSIONS_SQL = "SELECT id FROM chat_sessions WHERE id = ANY(?)";
+
+    private static final String CANCEL_JOB_SQL = """
+            UPDATE llm_batch_jobs SET status = 'CANCELLED', updated_at = now(), finished_at = now()
+            WHERE id = ? AND status IN ('QUEUED', 'RUNNING')
+            """;
+
+    private static final String CANCEL_ITEMS_SQL = """
+            UPDATE llm_batch_job_items SET status = 'CANCELLED', lease_until = NULL
+            WHERE job_id = ? AND status = 'PENDING'
+            """;
+
+    private static final String ITEMS_SQL = """
+            SELECT item_index, session_id, status, attempts, error, reply_message_id
+            FROM llm_batch_job_items
+            WHERE job_id = ? AND (CAST(? AS VARCHAR) IS NULL OR status = ?)
+            ORDER BY item_index
+            LIMIT ? OFFSET ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final int maxItems;
+
+    public BatchJobService(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.batch-jobs.max-items:10000}") int maxItems) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * Stores a new job with all its items pending.
+     *
+     * @throws ApiException if the job is empty, exceeds {@code app.batch-jobs.max-items},
+     *                      has an item without session or prompt, or refers to unknown sessions
+     */
+    public BatchJob create(List<BatchJobItemRequest> items) {
+        if (items == null || items.isEmpty() || items.size() > maxItems) {
+            throw new ApiException("INVALID_INPUT", "A batch job must contain 1 to " + maxItems + " items");
+        }
+        Set<Long> sessionIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            BatchJobItemRequest item = items.get(i);
+            if (item.getSessionId() == null || item.getPrompt() == null || item.getPrompt().isBlank()) {
+                throw new ApiException("INVALID_INPUT", "items[" + i + "] needs a sessionId and a non-empty prompt");
+            }
+            sessionIds.add(item.getSessionId().longValue());
+        }
+        Set<Long> unknown = new HashSet<>(sessionIds);
+        unknown.removeAll(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(EXISTING_SESSIONS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", sessionIds.toArray()));
+            return ps;
+        }, (rs, rowNum) -> rs.getLong(1)));
+        if (!unknown.isEmpty()) {
+            throw new ApiException("INVALID_INPUT", "Unknown sessions: " + unknown.stream().sorted().limit(10).toList());
+        }
+
+        Long jobId = tx.execute(status -> {
+            Long id = jdbcTemplate.queryForObject(INSERT_JOB_SQL, Long.class, items.size());
+            List<Integer> indexes = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) indexes.add(i);
+            jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, indexes, 1000, (ps, i) -> {
+                ps.setLong(1, id);
+                ps.setInt(2, i);
+                ps.setLong(3, items.get(i).getSessionId().longValue());
+                ps.setString(4, items.get(i).getPrompt());
+            });
+            return id;
+        });
+        log.info("Queued batch job {} with {} items on {} sessions", jobId, items.size(), sessionIds.size());
+        return get(jobId);
+    }
+
+    /**
+     * Returns the job's status and progress counters.
+     *
+     * @throws ApiException with {@code 404} if the job does not exist
+     */
+    public BatchJob get(Long jobId) {
+        List<BatchJob> jobs = jdbcTemplate.query(JOB_SQL, BatchJobService::toJob, jobId);
+        if (jobs.isEmpty()) {
+            throw notFound(jobId);
+        }
+        return jobs.get(0);
+    }
+
+    /**
+     * Cancels the job's pending items. Items already running finish and store their reply.
+     *
+     * @throws ApiException with {@code 404} if the job does not exist
+     */
+    public BatchJob cancel(Long jobId) {
+        tx.executeWithoutResult(status -> {
+            if (jdbcTemplate.update(CANCEL_JOB_SQL, jobId) > 0) {
+                int cancelled = jdbcTemplate.update(CANCEL_ITEMS_SQL, jobId);
+                log.info("Cancelled batch job {} ({} items not started)", jobId, cancelled);
+            }
+        });
+        return get(jobId);
+    }
+
+    /**
+     * Returns a page of the job's items in item order.
+     *
+     * @param status only items with this status, or {@code null} for all
+     * @throws ApiException with {@code 404} if the job does not exist
+     */
+    public List<BatchJobItem> listItems(Long jobId, String status, int page, int size) {
+        get(jobId);
+        return jdbcTemplate.query(ITEMS_SQL, BatchJobService::toItem, jobId, status, status, size, (long) page * size);
+    }
+
+    private static ApiException notFound(Long jobId) {
+        return new ApiException(HttpStatus.NOT_FOUND, "BATCH_JOB_NOT_FOUND", "Batch job " + jobId + " not found");
+    }
+
+    private static BatchJob toJob(ResultSet rs, int rowNum) throws SQLException {
+        BatchJob job = new BatchJob();
+        job.setId(rs.getInt("id"));
+        job.setStatus(BatchJob.StatusEnum.fromValue(rs.getString("status")));
+        job.setTotalItems(rs.getInt("total_items"));
+        job.setCompletedItems(rs.getInt("completed_items"));
+        job.setFailedItems(rs.getInt("failed_items"));
+        job.setCreatedAt(toOffsetDateTime(rs.getTimestamp("created_at")));
+        job.setUpdatedAt(toOffsetDateTime(rs.getTimestamp("updated_at")));
+        job.setFinishedAt(toOffsetDateTime(rs.getTimestamp("finished_at")));
+        return job;
+    }
+
+    private static BatchJobItem toItem(ResultSet rs, int rowNum) throws SQLException {
+        BatchJobItem item = new BatchJobItem();
+        item.setIndex(rs.getInt("item_index"));
+        item.setSessionId(rs.getInt("session_id"));
+        item.setStatus(BatchJobItem.StatusEnum.fromValue(rs.getString("status")));
+        item.setAttempts(rs.getInt("attempts"));
+        item.setError(rs.getString("error"));
+        long replyId = rs.getLong("reply_message_id");
+        item.setReplyMessageId(rs.wasNull() ? null : replyId);
+        return item;
+    }
+
+    private static OffsetDateTime toOffsetDateTime(Timestamp ts) {
+        return ts == null ? null : ts.toInstant().atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,30 @@
+package com.northbay.ragchat.service.compression;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * JPA converter that stores large text attributes through {@link MessagePayloadCodec}.
+ * <p>
+ * Hibernate obtains the converter from the Spring container, so the codec is
+ * constructor-injected like any other dependency.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    private final MessagePayloadCodec codec;
+
+    public CompressedTextConverter(MessagePayloadCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        return codec.encode(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return codec.decode(dbData);
+    }
+}
@@ -0,0 +1,163 @@
+package com.northbay.ragchat.service.compression;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Trains deflate preset dictionaries from recently stored messages.
+ * <p>
+ * A sample of recent large {@code content}/{@code context} values is split
+ * into word n-grams; phrases that recur across several messages are ranked by
+ * {@code documents × length} and packed into a dictionary of at most 32 KiB
+ * (the deflate window), with the highest-ranked phrases last so they get the
+ * shortest back-references. A new dictionary is stored only when it improves
+ * the compression ratio of the sample by at least {@code min-gain} over the
+ * current one, and is then used for new writes by {@link MessagePayloadCodec}.
+ */
+@Slf4j
+@Component
+public class CompressionDictionaryTrainer {
+
+    static final int MAX_DICTIONARY_BYTES = 32 * 1024;
+
+    private static final int MIN_NGRAM = 2;
+    private static final int MAX_NGRAM = 6;
+    private static final int MIN_PHRASE_CHARS = 8;
+
+    private static final String SAMPLE_SQL = """
+            SELECT v FROM (
+                SELECT content AS v FROM chat_messages ORDER BY id DESC LIMIT ?
+            ) c WHERE v IS NOT NULL
+            UNION ALL
+            SELECT v FROM (
+                SELECT context AS v FROM chat_messages ORDER BY id DESC LIMIT ?
+            ) x WHERE v IS NOT NULL
+            """;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO message_compression_dictionaries (dictionary, sample_count, sample_ratio, created_at)
+            VALUES (?, ?, ?, now())
+            RETURNING id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessagePayloadCodec codec;
+    private final int sampleSize;
+    private final double minGain;
+
+    public CompressionDictionaryTrainer(JdbcTemplate jdbcTemplate,
+                                        MessagePayloadCodec codec,
+                                        @Value("${app.compression.dictionary.sample-size:500}") int sampleSize,
+                                        @Value("${app.compression.dictionary.min-gain:0.05}") double minGain) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.codec = codec;
+        this.sampleSize = sampleSize;
+        this.minGain = minGain;
+    }
+
+    /**
+     * Trains a dictionary from current traffic and activates it if it is better.
+     */
+    @Scheduled(cron = "${app.compression.dictionary.train-cron:0 0 4 * * SUN}")
+    public void retrain() {
+        if (!codec.isEnabled()) return;
+        List<String> sample = jdbcTemplate.queryForList(SAMPLE_SQL, String.class, sampleSize, sampleSize).stream()
+                .map(codec::decode)
+                .filter(v -> v.length() >= codec.getThresholdChars())
+                .toList();
+        if (sample.size() < 50) {
+            log.info("Dictionary training skipped: only {} large values in the sample", sample.size());
+            return;
+        }
+
+        byte[] candidate = train(sample);
+        double candidateRatio = ratio(sample, candidate);
+        int currentId = codec.getActiveDictionaryId();
+        double currentRatio = ratio(sample, currentId == 0 ? null : currentDictionary(currentId));
+        log.info("Dictionary training: {} values, ratio {} -> {} with a {} byte dictionary",
+                sample.size(), String.format("%.3f", currentRatio), String.format("%.3f", candidateRatio),
+                candidate.length);
+        if (currentRatio - candidateRatio < minGain * currentRatio) {
+            return;
+        }
+
+        Integer id = jdbcTemplate.queryForObject(INSERT_SQL, Integer.class, candidate, sample.size(), candidateRatio);
+        codec.activate(id, candidate);
+    }
+
+    /**
+     * Builds a dictionary from the recurring phrases of {@code sample}.
+     */
+    static byte[] train(List<String> sample) {
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (String value : sample) {
+            List<String> words = Arrays.asList(value.split("\\s+"));
+            Set<String> seen = new HashSet<>();
+            for (int n = MIN_NGRAM; n <= MAX_NGRAM; n++) {
+                for (int i = 0; i + n <= words.size(); i++) {
+                    String phrase = String.join(" ", words.subList(i, i + n));
+                    if (phrase.length() >= MIN_PHRASE_CHARS && seen.add(phrase)) {
+                        documentFrequency.merge(phrase, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(documentFrequency.entrySet());
+        ranked.removeIf(e -> e.getValue() < 2);
+        ranked.sort(Comparator.comparingLong((Map.Entry<String, Integer> e) ->
+                (long) e.getValue() * e.getKey().length()).reversed());
+
+        List<String> chosen = new ArrayList<>();
+        StringBuilder packed = new StringBuilder();
+        int bytes = 0;
+        for (Map.Entry<String, Integer> entry : ranked) {
+            String phrase = entry.getKey();
+            if (packed.indexOf(phrase) >= 0) continue; // covered by a longer phrase
+            int size = phrase.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (bytes + size > MAX_DICTIONARY_BYTES) break;
+            chosen.add(phrase);
+            packed.append(phrase).append(' ');
+            bytes += size;
+        }
+
+        // deflate prefers matches close to the end of the dictionary
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes);
+        for (int i = chosen.size() - 1; i >= 0; i--) {
+            out.writeBytes(chosen.get(i).getBytes(StandardCharsets.UTF_8));
+            out.write(' ');
+        }
+        return out.toByteArray();
+    }
+
+    private static double ratio(List<String> sample, byte[] dictionary) {
+        long original = 0;
+        long compressed = 0;
+        for (String value : sample) {
+            byte[] input = value.getBytes(StandardCharsets.UTF_8);
+            original += input.length;
+            compressed += MessagePayloadCodec.deflate(input, dictionary, Deflater.DEFAULT_COMPRESSION).length;
+        }
+        return original == 0 ? 1.0 : (double) compressed / original;
+    }
+
+    private byte[] currentDictionary(int id) {
+        return jdbcTemplate.queryForObject(
+                "SELECT dictionary FROM message_compression_dictionaries WHERE id = ?", byte[].class, id);
+    }
+}
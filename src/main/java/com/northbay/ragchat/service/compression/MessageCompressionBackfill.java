@@ -0,0 +1,121 @@
+package com.northbay.ragchat.service.compression;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compresses messages that were stored before compression was enabled.
+ * <p>
+ * With {@code app.compression.backfill.enabled=true}, a background thread
+ * started once the application is ready walks {@code chat_messages} in id
+ * order in batches of {@code batch-size} and rewrites the large plain-text
+ * values through {@link MessagePayloadCodec}. Each batch commits on its own
+ * and already-compressed values are left alone, so the backfill can be
+ * interrupted and restarted at any time. {@code pause-ms} between batches
+ * keeps the extra write load bounded.
+ */
+@Slf4j
+@Component
+public class MessageCompressionBackfill {
+
+    private static final String PAGE_SQL = """
+            SELECT id, created_at, content, context FROM chat_messages
+            WHERE id > ? ORDER BY id LIMIT ?
+            """;
+
+    private static final String UPDATE_SQL =
+            "UPDATE chat_messages SET content = ?, context = ? WHERE id = ? AND created_at = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessagePayloadCodec codec;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pauseMs;
+
+    public MessageCompressionBackfill(JdbcTemplate jdbcTemplate,
+                                      MessagePayloadCodec codec,
+                                      @Value("${app.compression.backfill.enabled:false}") boolean enabled,
+                                      @Value("${app.compression.backfill.batch-size:1000}") int batchSize,
+                                      @Value("${app.compression.backfill.pause-ms:100}") long pauseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.codec = codec;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) return;
+        if (!codec.isEnabled()) {
+            log.warn("Compression backfill requested but app.compression.enabled=false; skipping");
+            return;
+        }
+        Thread worker = new Thread(this::run, "compression-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Compresses all eligible rows.
+     *
+     * @return the number of rows rewritten
+     */
+    public long run() {
+        long start = System.currentTimeMillis();
+        long lastId = 0;
+        long scanned = 0;
+        long rewritten = 0;
+        try {
+            while (true) {
+                List<Object[]> updates = new ArrayList<>();
+                long[] maxId = {lastId};
+                int rows = jdbcTemplate.query(PAGE_SQL, rs -> {
+                    int n = 0;
+                    while (rs.next()) {
+                        n++;
+                        maxId[0] = rs.getLong("id");
+                        String content = rs.getString("content");
+                        String context = rs.getString("context");
+                        String newContent = MessagePayloadCodec.isEncoded(content) ? content : codec.encode(content);
+                        String newContext = MessagePayloadCodec.isEncoded(context) ? context : codec.encode(context);
+                        if (!Objects.equals(content, newContent) || !Objects.equals(context, newContext)) {
+                            Timestamp createdAt = rs.getTimestamp("created_at");
+                            updates.add(new Object[]{newContent, newContext, maxId[0], createdAt});
+                        }
+                    }
+                    return n;
+                }, lastId, batchSize);
+                if (rows == 0) break;
+
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                }
+                scanned += rows;
+                rewritten += updates.size();
+                lastId = maxId[0];
+                if (scanned % (batchSize * 100L) < batchSize) {
+                    log.info("Compression backfill: {} rows scanned, {} rewritten, at id {}", scanned, rewritten, lastId);
+                }
+                Thread.sleep(pauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Compression backfill interrupted at id {}", lastId);
+        } catch (Exception e) {
+            log.error("Compression backfill failed at id {}: {}", lastId, e.getMessage(), e);
+        }
+        log.info("Compression backfill finished: {} rows scanned, {} rewritten in {} ms",
+                scanned, rewritten, System.currentTimeMillis() - start);
+        return rewritten;
+    }
+}
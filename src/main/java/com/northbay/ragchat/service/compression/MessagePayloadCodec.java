@@ -0,0 +1,220 @@
+package com.northbay.ragchat.service.compression;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Transparent compression of large message {@code content} and {@code context} values.
+ * <p>
+ * Values of at least {@code threshold-chars} characters are deflated with the
+ * current preset dictionary (see {@link CompressionDictionaryTrainer}) and
+ * stored in the same text column as
+ * <pre>
+ *   \u0001&lt;dictionary id&gt;:&lt;base64 raw deflate&gt;
+ * </pre>
+ * Dictionary id {@code 0} means no dictionary. The encoded form is only used
+ * when it is shorter than the original, so the column never grows; anything
+ * without the {@code \u0001} marker is plain text, which keeps existing rows,
+ * CSV imports and direct SQL writes readable.
+ * <p>
+ * Decoding is always on, so compression can be switched off
+ * ({@code app.compression.enabled=false}) without losing access to rows that
+ * were already compressed.
+ */
+@Slf4j
+@Component
+public class MessagePayloadCodec {
+
+    static final char MARKER = '\u0001';
+
+    private static final String ACTIVE_SQL =
+            "SELECT id, dictionary FROM message_compression_dictionaries ORDER BY id DESC LIMIT 1";
+    private static final String BY_ID_SQL =
+            "SELECT dictionary FROM message_compression_dictionaries WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int thresholdChars;
+    private final int level;
+
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private volatile int activeId;
+
+    public MessagePayloadCodec(JdbcTemplate jdbcTemplate,
+                               @Value("${app.compression.enabled:false}") boolean enabled,
+                               @Value("${app.compression.threshold-chars:512}") int thresholdChars,
+                               @Value("${app.compression.level:6}") int level) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.thresholdChars = thresholdChars;
+        this.level = level;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getThresholdChars() {
+        return thresholdChars;
+    }
+
+    public int getActiveDictionaryId() {
+        return activeId;
+    }
+
+    /**
+     * Picks up the newest dictionary, including ones trained by other instances.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.compression.dictionary.refresh-ms:300000}")
+    public void refreshActiveDictionary() {
+        try {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(ACTIVE_SQL);
+            if (!rows.isEmpty()) {
+                int id = ((Number) rows.get(0).get("id")).intValue();
+                activate(id, (byte[]) rows.get(0).get("dictionary"));
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not load compression dictionaries: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Registers a dictionary and uses it for subsequent writes.
+     */
+    public void activate(int id, byte[] dictionary) {
+        dictionaries.put(id, dictionary);
+        if (id != activeId) {
+            activeId = id;
+            log.info("Message compression: using dictionary {} ({} bytes)", id, dictionary.length);
+        }
+    }
+
+    /**
+     * Returns the stored form of the plain text {@code value}: compressed when
+     * enabled and worthwhile, otherwise unchanged.
+     */
+    public String encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        if (!value.isEmpty() && value.charAt(0) == MARKER) {
+            // plain text that happens to start with the marker must not be mistaken for a compressed value
+            return compress(value, activeId);
+        }
+        if (!enabled || value.length() < thresholdChars) {
+            return value;
+        }
+        String encoded = compress(value, activeId);
+        return encoded.length() < value.length() ? encoded : value;
+    }
+
+    /**
+     * Returns the original text of a stored value; plain values are returned unchanged.
+     */
+    public String decode(String stored) {
+        if (!isEncoded(stored)) {
+            return stored;
+        }
+        int sep = stored.indexOf(':');
+        int dictionaryId = Integer.parseInt(stored, 1, sep, 10);
+        byte[] compressed = Base64.getDecoder().decode(stored.substring(sep + 1));
+
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionaryId != 0) {
+                inflater.setDictionary(dictionary(dictionaryId));
+            }
+            // raw inflate needs one extra dummy input byte
+            inflater.setInput(Arrays.copyOf(compressed, compressed.length + 1));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed message payload");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed message payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Whether {@code value} is in the compressed stored form.
+     */
+    public static boolean isEncoded(String value) {
+        if (value == null || value.length() < 3 || value.charAt(0) != MARKER) {
+            return false;
+        }
+        int sep = value.indexOf(':');
+        if (sep < 2 || sep > 11) {
+            return false;
+        }
+        for (int i = 1; i < sep; i++) {
+            if (!Character.isDigit(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deflates {@code value} with the given dictionary (0 for none) and returns the stored form.
+     */
+    String compress(String value, int dictionaryId) {
+        byte[] input = value.getBytes(StandardCharsets.UTF_8);
+        return MARKER + Integer.toString(dictionaryId) + ':'
+                + Base64.getEncoder().withoutPadding().encodeToString(deflate(input,
+                dictionaryId == 0 ? null : dictionary(dictionaryId), level));
+    }
+
+    static byte[] deflate(byte[] input, byte[] dictionary, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] dictionary(int id) {
+        return dictionaries.computeIfAbsent(id, missing -> {
+            List<byte[]> rows = jdbcTemplate.queryForList(BY_ID_SQL, byte[].class, missing);
+            if (rows.isEmpty()) {
+                throw new IllegalStateException("Unknown compression dictionary " + missing);
+            }
+            return rows.get(0);
+        });
+    }
+}
@@ -0,0 +1,317 @@
+package com.northbay.ragchat.service.dispatch;
+
+import com.northbay.ragchat.diagnostics.RateLimitEvent;
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.security.ApiKeyContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Admission control for LLM calls: a global concurrency cap shared fairly between API keys.
+ * <p>
+ * Callers {@link #acquire(Lane, int) acquire} a permit before calling the LLM
+ * and close it afterwards. While fewer than {@code max-concurrency} calls are
+ * running a permit is granted immediately; otherwise the caller waits in a
+ * per-API-key queue of its {@link Lane}:
+ * <ul>
+ *   <li>{@link Lane#INTERACTIVE} is always served before {@link Lane#BATCH}, and batch
+ *       traffic may use at most {@code batch-max-concurrency} of the slots.</li>
+ *   <li>Within a lane, API keys are served by deficit round-robin: each turn a key
+ *       earns {@code quantum × weight} credits and spends the cost of each request
+ *       it dispatches, so a key flooding the queue only delays itself.</li>
+ *   <li>A waiter that is not dispatched within the lane's deadline, or that would
+ *       exceed {@code max-queue-per-key}, fails fast with {@code 503}.</li>
+ * </ul>
+ * Queue depth, in-flight calls, queue wait time and rejections are published
+ * as {@code llm.dispatch.*} metrics.
+ */
+@Component
+public class LlmDispatchScheduler {
+
+    /** Priority lanes. */
+    public enum Lane { INTERACTIVE, BATCH }
+
+    /** A granted slot; closing it (once) frees the slot for the next waiter. */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final int maxConcurrency;
+    private final int batchMaxConcurrency;
+    private final int maxQueuePerKey;
+    private final int quantum;
+    private final int costUnitChars;
+    private final Map<Lane, Duration> deadlines = new EnumMap<>(Lane.class);
+    private final Map<String, Integer> weights;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Lane, LaneQueue> lanes = new EnumMap<>(Lane.class);
+    private int inFlight;
+    private int batchInFlight;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Lane, Timer> waitTimers = new EnumMap<>(Lane.class);
+
+    public LlmDispatchScheduler(MeterRegistry meterRegistry,
+                                @Value("${app.llm.dispatch.max-concurrency:16}") int maxConcurrency,
+                                @Value("${app.llm.dispatch.batch-max-concurrency:4}") int batchMaxConcurrency,
+                                @Value("${app.llm.dispatch.max-queue-per-key:50}") int maxQueuePerKey,
+                                @Value("${app.llm.dispatch.quantum:4}") int quantum,
+                                @Value("${app.llm.dispatch.cost-unit-chars:2000}") int costUnitChars,
+                                @Value("${app.llm.dispatch.interactive-deadline-ms:5000}") long interactiveDeadlineMs,
+                                @Value("${app.llm.dispatch.batch-deadline-ms:600000}") long batchDeadlineMs,
+                                @Value("${app.llm.dispatch.key-weights:}") String keyWeights) {
+        this.meterRegistry = meterRegistry;
+        this.maxConcurrency = maxConcurrency;
+        this.batchMaxConcurrency = Math.min(batchMaxConcurrency, maxConcurrency);
+        this.maxQueuePerKey = maxQueuePerKey;
+        this.quantum = quantum;
+        this.costUnitChars = costUnitChars;
+        this.deadlines.put(Lane.INTERACTIVE, Duration.ofMillis(interactiveDeadlineMs));
+        this.deadlines.put(Lane.BATCH, Duration.ofMillis(batchDeadlineMs));
+        this.weights = parseWeights(keyWeights);
+
+        for (Lane lane : Lane.values()) {
+            LaneQueue queue = new LaneQueue();
+            lanes.put(lane, queue);
+            String tag = lane.name().toLowerCase();
+            Gauge.builder("llm.dispatch.queue.depth", queue, q -> q.depth)
+                    .tag("lane", tag)
+                    .description("LLM calls waiting for a dispatch slot")
+                    .register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("llm.dispatch.wait")
+                    .tag("lane", tag)
+                    .description("Time LLM calls spent queued before dispatch")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("llm.dispatch.in.flight", this, s -> s.inFlight)
+                .description("LLM calls currently running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Estimates the dispatch cost of a prompt: one unit per {@code cost-unit-chars} characters, at least one.
+     */
+    public int costOf(String prompt) {
+        return prompt == null ? 1 : Math.max(1, prompt.length() / costUnitChars + 1);
+    }
+
+    /**
+     * Waits for a dispatch slot for the current API key.
+     *
+     * @param lane the priority lane
+     * @param cost the request's cost in deficit round-robin credits, see {@link #costOf(String)}
+     * @return the permit, to be closed when the LLM call has finished
+     * @throws ApiException with {@code 503} if the key's queue is full or the lane's deadline passes
+     */
+    public Permit acquire(Lane lane, int cost) {
+        String key = Objects.toString(ApiKeyContext.current(), "");
+        Waiter waiter = new Waiter(key, lane, Math.max(1, cost), lock.newCondition());
+        long start = System.nanoTime();
+        long remaining = deadlines.get(lane).toNanos();
+
+        lock.lock();
+        try {
+            LaneQueue queue = lanes.get(lane);
+            if (queue.queuedFor(key) >= maxQueuePerKey) {
+                reject(lane, "queue_full");
+            }
+            queue.add(waiter);
+            dispatch();
+            while (!waiter.granted) {
+                if (remaining <= 0) {
+                    queue.remove(waiter);
+                    reject(lane, "deadline");
+                }
+                remaining = waiter.signal.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!waiter.granted) {
+                lanes.get(lane).remove(waiter);
+                reject(lane, "interrupted");
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        waitTimers.get(lane).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new GrantedPermit(lane);
+    }
+
+    /**
+     * Grants slots to queued waiters while capacity is available. Caller holds the lock.
+     */
+    private void dispatch() {
+        while (inFlight < maxConcurrency) {
+            Waiter next = lanes.get(Lane.INTERACTIVE).next(this::weight);
+            if (next == null && batchInFlight < batchMaxConcurrency) {
+                next = lanes.get(Lane.BATCH).next(this::weight);
+            }
+            if (next == null) {
+                return;
+            }
+            inFlight++;
+            if (next.lane == Lane.BATCH) batchInFlight++;
+            next.granted = true;
+            next.signal.signal();
+        }
+    }
+
+    private void release(Lane lane) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (lane == Lane.BATCH) batchInFlight--;
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reject(Lane lane, String reason) {
+        RateLimitEvent.record("llm-dispatch-" + lane.name().toLowerCase(), null, false, -1, reason);
+        Counter.builder("llm.dispatch.rejected")
+                .tag("lane", lane.name().toLowerCase())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_OVERLOADED",
+                "LLM capacity is exhausted, retry later");
+    }
+
+    private int weight(String key) {
+        return quantum * weights.getOrDefault(key, 1);
+    }
+
+    private static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String entry : spec.split(",")) {
+            int eq = entry.lastIndexOf('=');
+            if (eq > 0) {
+                parsed.put(entry.substring(0, eq).trim(), Integer.parseInt(entry.substring(eq + 1).trim()));
+            }
+        }
+        return parsed;
+    }
+
+    private final class GrantedPermit implements Permit {
+        private final Lane lane;
+        private boolean closed;
+
+        GrantedPermit(Lane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(lane);
+            }
+        }
+    }
+
+    static final class Waiter {
+        final String key;
+        final Lane lane;
+        final int cost;
+        final Condition signal;
+        boolean granted;
+
+        Waiter(String key, Lane lane, int cost, Condition signal) {
+            this.key = key;
+            this.lane = lane;
+            this.cost = cost;
+            this.signal = signal;
+        }
+    }
+
+    /**
+     * Deficit round-robin over the per-key queues of one lane. Guarded by the scheduler lock.
+     */
+    static final class LaneQueue {
+        private final Map<String, KeyQueue> byKey = new HashMap<>();
+        private final ArrayDeque<KeyQueue> active = new ArrayDeque<>();
+        private int depth;
+
+        private static final class KeyQueue {
+            final String key;
+            final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+            int deficit;
+            boolean inTurn;
+
+            KeyQueue(String key) {
+                this.key = key;
+            }
+        }
+
+        int queuedFor(String key) {
+            KeyQueue q = byKey.get(key);
+            return q == null ? 0 : q.waiters.size();
+        }
+
+        void add(Waiter waiter) {
+            KeyQueue q = byKey.computeIfAbsent(waiter.key, k -> {
+                KeyQueue created = new KeyQueue(k);
+                active.addLast(created);
+                return created;
+            });
+            q.waiters.addLast(waiter);
+            depth++;
+        }
+
+        void remove(Waiter waiter) {
+            KeyQueue q = byKey.get(waiter.key);
+            if (q != null && q.waiters.remove(waiter)) {
+                depth--;
+                if (q.waiters.isEmpty()) drop(q);
+            }
+        }
+
+        Waiter next(ToIntFunction<String> quantumOf) {
+            while (!active.isEmpty()) {
+                KeyQueue q = active.peekFirst();
+                Waiter head = q.waiters.peekFirst();
+                if (!q.inTurn) {
+                    q.deficit += quantumOf.applyAsInt(q.key);
+                    q.inTurn = true;
+                }
+                if (head.cost <= q.deficit) {
+                    q.deficit -= head.cost;
+                    q.waiters.pollFirst();
+                    depth--;
+                    if (q.waiters.isEmpty()) drop(q);
+                    return head;
+                }
+                // turn over: keep the remaining credit for the next round
+                q.inTurn = false;
+                active.addLast(active.pollFirst());
+            }
+            return null;
+        }
+
+        private void drop(KeyQueue q) {
+            active.remove(q);
+            byKey.remove(q.key);
+        }
+    }
+}
@@ -1,19 +1,49 @@
 package com.northbay.ragchat.service.impl;
 
+import com.northbay.ragchat.config.DataSourceRoutingContext;
+import com.northbay.ragchat.diagnostics.MessageInsertEvent;
+import com.northbay.ragchat.diagnostics.SessionLookupEvent;
 import com.northbay.ragchat.entity.ChatMessage;
 import com.northbay.ragchat.entity.ChatSession;
+import com.northbay.ragchat.exception.ApiException;
 import com.northbay.ragchat.mapper.ChatMapper;
 import com.northbay.ragchat.model.*;
 import com.northbay.ragchat.repository.ChatMessageRepository;
 import com.northbay.ragchat.repository.ChatSessionRepository;
+import com.northbay.ragchat.repository.projection.MessageView;
+import com.northbay.ragchat.repository.projection.SessionReadState;
+import com.northbay.ragchat.repository.projection.SessionView;
 import com.northbay.ragchat.service.ChatService;
-import com.northbay.ragchat.service.GroqLLMService;
+import com.northbay.ragchat.service.LlmCompletion;
+import com.northbay.ragchat.service.TaggedMessagePage;
+import com.northbay.ragchat.service.SessionArchiveService;
+import com.northbay.ragchat.service.SessionTurnLocks;
+import com.northbay.ragchat.service.SessionWriteTracker;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler.Lane;
+import com.northbay.ragchat.service.invalidation.InvalidationBus;
+import com.northbay.ragchat.service.invalidation.SessionVersionCache;
+import com.northbay.ragchat.service.push.ChatMessageAddedEvent;
+import com.northbay.ragchat.service.routing.LlmModelRouter;
+import com.northbay.ragchat.service.writebehind.MessageWriteBehindQueue;
+import com.northbay.ragchat.service.writebehind.PendingMessage;
+import com.northbay.ragchat.util.MessagePreviewUtil;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import lombok.extern.slf4j.Slf4j; // ✅ NEW IMPORT
+import java.time.Instant;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -26,16 +56,42 @@ import java.util.stream.Collectors;
 @Service
 public class ChatServiceImpl implements ChatService {
 
+    /** Attempts to store an assistant reply that has already been generated. */
+    private static final int REPLY_STORE_ATTEMPTS = 2;
+
     private final ChatSessionRepository sessionRepo;
     private final ChatMessageRepository messageRepo;
     private final ChatMapper mapper;
-    private final GroqLLMService groqLLMService;
+    private final LlmModelRouter modelRouter;
+    private final MessageWriteBehindQueue writeBehind;
+    private final SessionWriteTracker writeTracker;
+    private final SessionArchiveService archiveService;
+    private final LlmDispatchScheduler dispatchScheduler;
+    private final SessionTurnLocks turnLocks;
+    private final ApplicationEventPublisher events;
+    private final InvalidationBus invalidationBus;
+    private final SessionVersionCache versionCache;
+    private final TransactionTemplate tx;
 
-    public ChatServiceImpl(ChatSessionRepository sessionRepo, ChatMessageRepository messageRepo, ChatMapper mapper, GroqLLMService groqLLMService) {
+    public ChatServiceImpl(ChatSessionRepository sessionRepo, ChatMessageRepository messageRepo, ChatMapper mapper,
+                           LlmModelRouter modelRouter, MessageWriteBehindQueue writeBehind,
+                           SessionWriteTracker writeTracker, SessionArchiveService archiveService,
+                           LlmDispatchScheduler dispatchScheduler, SessionTurnLocks turnLocks,
+                           ApplicationEventPublisher events, InvalidationBus invalidationBus,
+                           SessionVersionCache versionCache, PlatformTransactionManager transactionManager) {
         this.sessionRepo = sessionRepo;
         this.messageRepo = messageRepo;
         this.mapper = mapper;
-        this.groqLLMService = groqLLMService;
+        this.modelRouter = modelRouter;
+        this.writeBehind = writeBehind;
+        this.writeTracker = writeTracker;
+        this.archiveService = archiveService;
+        this.dispatchScheduler = dispatchScheduler;
+        this.turnLocks = turnLocks;
+        this.events = events;
+        this.invalidationBus = invalidationBus;
+        this.versionCache = versionCache;
+        this.tx = new TransactionTemplate(transactionManager);
         log.info("ChatServiceImpl initialized and ready."); // ✅ LOGGED
     }
 
@@ -51,28 +107,40 @@ public class ChatServiceImpl implements ChatService {
         ChatSession session = ChatSession.builder()
                 .title(request.getTitle())
                 .owner(request.getOwner())
+                .model(validModel(request.getModel()))
                 .favorite(false)
+                .version(0L)
+                .messageCount(0)
                 .build();
         sessionRepo.save(session);
+        writeTracker.recordSessionWrite(session.getId(), session.getOwner());
         return mapper.toSessionDTO(session);
     }
 
     /**
-     * Returns all chat sessions for a given owner, or all sessions if no owner is provided.
+     * Returns all chat sessions for a given owner, or all sessions if no owner is provided,
+     * most recently active first. Served by a read replica unless the sessions were written within the sticky window,
+     * from a {@link SessionView} projection rather than managed entities.
      *
      * @param owner the owner of the sessions (optional)
      * @return list of chat sessions
      */
     @Override
+    @Transactional(readOnly = true)
     public List<ChatSessionDTO> listChatSessions(String owner) {
-        List<ChatSession> sessions = (owner != null)
-                ? sessionRepo.findByOwner(owner)
-                : sessionRepo.findAll();
-        return mapper.toSessionDTOList(sessions);
+        boolean recentWrite = owner != null ? writeTracker.isOwnerRecent(owner) : writeTracker.isAnyRecent();
+        return onPrimaryIf(recentWrite, () -> {
+            List<SessionView> sessions = (owner != null)
+                    ? sessionRepo.findViewsByOwner(owner)
+                    : sessionRepo.findAllViews();
+            return mapper.viewsToSessionDTOList(sessions);
+        });
     }
 
     /**
-     * Updates a chat session (title or favorite flag).
+     * Updates a chat session (title or favorite flag). The change and the
+     * version bump commit together, so the session never carries changed
+     * data under its old version.
      *
      * @param id      the session ID
      * @param request the update request
@@ -80,84 +148,133 @@ public class ChatServiceImpl implements ChatService {
      * @throws EntityNotFoundException if the session does not exist
      */
     @Override
+    @Transactional
     public ChatSessionDTO updateChatSession(Long id, ChatSessionUpdateRequest request) {
         ChatSession session = sessionRepo.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Chat session not found"));
         if (request.getTitle() != null) session.setTitle(request.getTitle());
         if (request.getFavorite() != null) session.setFavorite(request.getFavorite());
+        if (request.getModel() != null) session.setModel(validModel(request.getModel()));
         sessionRepo.save(session);
+        sessionRepo.incrementVersion(id);
+        invalidationBus.sessionChanged(id);
+        writeTracker.recordSessionWrite(session.getId(), session.getOwner());
+        if (request.getFavorite() != null) writeTracker.recordFavoritesWrite();
         return mapper.toSessionDTO(session);
     }
 
     /**
-     * Deletes a chat session by ID.
+     * Deletes a chat session by ID, together with its messages and archive.
+     * Messages are removed with one bulk statement rather than through the
+     * entity cascade, which would load and delete them one by one.
      *
      * @param id the session ID
      * @throws EntityNotFoundException if the session does not exist
      */
     @Override
+    @Transactional
     public void deleteChatSession(Long id) {
         log.warn("Service: Attempting to delete chat session with ID: {}", id); // ✅ LOGGED
-        if (!sessionRepo.existsById(id)) {
+        messageRepo.deleteAllOfSession(id);
+        if (sessionRepo.deleteSession(id) == 0) {
             throw new EntityNotFoundException("Chat session not found");
         }
-        sessionRepo.deleteById(id);
+        archiveService.discard(id);
+        invalidationBus.sessionChanged(id);
+        writeTracker.recordDelete(id);
     }
 
     /**
-     * Retrieves all sessions marked as favorite.
+     * Retrieves all sessions marked as favorite, most recently active first.
      *
      * @return list of favorite sessions
      */
     @Override
+    @Transactional(readOnly = true)
     public List<ChatSessionDTO> listFavoriteSessions() {
-        return mapper.toSessionDTOList(sessionRepo.findByFavoriteTrue());
+        return onPrimaryIf(writeTracker.isFavoritesRecent(),
+                () -> mapper.viewsToSessionDTOList(sessionRepo.findFavoriteViews()));
     }
 
     /**
      * Adds a new message to a specific chat session.
+     * <p>
+     * When write-behind is enabled, messages from non-user senders are
+     * acknowledged once they are durably queued and are committed in groups
+     * by {@link MessageWriteBehindQueue}, unless the caller runs a transaction
+     * (such as a batch) that the message has to be part of.
+     * <p>
+     * {@code user} messages take an interactive slot from {@link LlmDispatchScheduler}
+     * before anything is stored, so a request rejected for lack of LLM capacity
+     * leaves no unanswered user message behind.
+     * <p>
+     * Each stored message gets the next sequence number of its session. The
+     * session's {@link SessionTurnLocks turn lock} is held while a message is
+     * stored, but not during the LLM call, so messages of concurrent turns on
+     * the same session may come between a user message and its reply.
      *
      * @param sessionId the ID of the chat session
      * @param request   the message creation request
      * @return the created message as a DTO
      * @throws EntityNotFoundException if the session does not exist
+     * @throws ApiException            with {@code 503} if no LLM slot became available in time
+     *                                 or the session stayed busy with another turn
      */
     @Override
     public ChatMessageDTO addMessage(Long sessionId, ChatMessageCreateRequest request) {
-        ChatSession session = sessionRepo.findById(sessionId)
-                .orElseThrow(() -> new EntityNotFoundException("Session not found"));
-
-        ChatMessage msg = ChatMessage.builder()
-                .session(session)
-                .sender(request.getSender())
-                .content(request.getContent())
-                .context(request.getContext() != null && request.getContext().isPresent()
-                        ? request.getContext().get()
-                        : null)
-                .build();
-
-        messageRepo.save(msg);
-        if ("user".equalsIgnoreCase(request.getSender())) {
-            try {
-                log.debug("Calling Groq LLM for session {} message id {}", sessionId, msg.getId());
-                String assistantText = groqLLMService.generateCompletion(request.getContent());
-
-                ChatMessage assistant = ChatMessage.builder()
-                        .session(session)
-                        .sender("assistant")
-                        .content(assistantText)
-                        .context("{\"source\":\"groq\",\"model\":\"" + System.getenv().getOrDefault("GROQ_MODEL","llama3-70b-8192") + "\"}")
-                        .build();
+        if (writeBehind.isEnabled() && !"user".equalsIgnoreCase(request.getSender())
+                && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return appendWriteBehind(sessionId, request);
+        }
 
-                messageRepo.save(assistant);
+        SessionLookupEvent lookup = new SessionLookupEvent();
+        lookup.begin();
+        Optional<ChatSession> found = sessionRepo.findById(sessionId);
+        lookup.commit(sessionId, found.isPresent());
+        ChatSession session = found.orElseThrow(() -> new EntityNotFoundException("Session not found"));
 
-                return mapper.toMessageDTO(assistant);
+        boolean callsLlm = "user".equalsIgnoreCase(request.getSender());
+        LlmDispatchScheduler.Permit permit = callsLlm
+                ? dispatchScheduler.acquire(Lane.INTERACTIVE, dispatchScheduler.costOf(request.getContent()))
+                : null;
+        try {
+            return storeAndAnswer(session, request, callsLlm, permit);
+        } finally {
+            if (permit != null) permit.close();
+        }
+    }
 
+    private ChatMessageDTO storeAndAnswer(ChatSession session, ChatMessageCreateRequest request,
+                                          boolean callsLlm, LlmDispatchScheduler.Permit permit) {
+        Long sessionId = session.getId();
+        ChatMessage msg;
+        try (SessionTurnLocks.Handle turn = turnLocks.lock(sessionId)) {
+            if (Boolean.TRUE.equals(session.getArchived())) {
+                archiveService.restore(sessionId);
+            }
+            msg = store(ChatMessage.builder()
+                    .session(session)
+                    .sender(request.getSender())
+                    .content(request.getContent())
+                    .context(request.getContext() != null && request.getContext().isPresent()
+                            ? request.getContext().get()
+                            : null));
+        }
+        writeTracker.recordSessionWrite(sessionId, session.getOwner());
+        if (callsLlm) {
+            log.debug("Calling LLM for session {} message id {}", sessionId, msg.getId());
+            LlmCompletion completion;
+            try {
+                completion = modelRouter.complete(request.getContent(), session.getModel());
             } catch (Exception e) {
                 log.error("Error calling Groq LLM: {}", e.getMessage(), e);
                 // Fallback: return the stored user message DTO so the client still gets the persisted message
                 return mapper.toMessageDTO(msg);
+            } finally {
+                // free the slot as soon as the provider answers, not after our own writes
+                if (permit != null) permit.close();
             }
+            return mapper.toMessageDTO(storeReply(session, msg, completion));
         }
 
         // Non-user senders: return the stored message DTO
@@ -165,20 +282,178 @@ public class ChatServiceImpl implements ChatService {
     }
 
     /**
-     * Retrieves paginated chat messages for a given session.
+     * Stores the assistant's reply under the session's turn lock, retrying once.
+     * The reply has already been paid for, so a failure to store it is reported
+     * to the client rather than answered with the user message alone.
+     *
+     * @throws EntityNotFoundException if the session was deleted during the LLM call
+     * @throws ApiException with {@code 500} if the reply could not be stored
+     */
+    private ChatMessage storeReply(ChatSession session, ChatMessage question, LlmCompletion completion) {
+        Long sessionId = session.getId();
+        for (int attempt = 1; ; attempt++) {
+            try (SessionTurnLocks.Handle turn = turnLocks.lock(sessionId)) {
+                return store(ChatMessage.builder()
+                        .session(session)
+                        .sender("assistant")
+                        .content(completion.text())
+                        .context("{\"source\":\"groq\",\"model\":\"" + completion.model() + "\"}"));
+            } catch (EntityNotFoundException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                if (attempt < REPLY_STORE_ATTEMPTS) {
+                    log.warn("Storing the reply of session {} failed, retrying: {}", sessionId, e.getMessage());
+                    continue;
+                }
+                log.error("Reply of session {} to message {} was lost: {}", sessionId, question.getSeq(), e.getMessage(), e);
+                throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "REPLY_NOT_SAVED",
+                        "Message " + question.getSeq() + " was stored, but the assistant reply could not be saved");
+            }
+        }
+    }
+
+    /**
+     * Stores a message with the next sequence number of its session. Allocating
+     * the number and inserting the row share one transaction, so a failed
+     * insert does not leave a gap.
+     *
+     * @throws EntityNotFoundException if the session has been deleted in the meantime
+     */
+    private ChatMessage store(ChatMessage.ChatMessageBuilder builder) {
+        return tx.execute(status -> {
+            MessageInsertEvent insert = new MessageInsertEvent();
+            insert.begin();
+            ChatMessage draft = builder.createdAt(Instant.now()).build();
+            Long sessionId = draft.getSession().getId();
+            Long seq = sessionRepo.recordMessage(sessionId, draft.getCreatedAt(),
+                    MessagePreviewUtil.preview(draft.getContent()));
+            if (seq == null) {
+                throw new EntityNotFoundException("Session not found");
+            }
+            draft.setSeq(seq);
+            messageRepo.save(draft);
+            insert.commitAfterTransaction(sessionId, draft.getSeq(), draft.getSender());
+            invalidationBus.sessionChanged(sessionId);
+            events.publishEvent(new ChatMessageAddedEvent(sessionId, new MessageView(draft.getId(), draft.getSeq(),
+                    draft.getSender(), draft.getContent(), draft.getContext(), draft.getCreatedAt())));
+            return draft;
+        });
+    }
+
+    private ChatMessageDTO appendWriteBehind(Long sessionId, ChatMessageCreateRequest request) {
+        boolean archived = sessionRepo.findArchivedById(sessionId)
+                .orElseThrow(() -> new EntityNotFoundException("Session not found"));
+        if (archived) {
+            archiveService.restore(sessionId);
+        }
+        writeTracker.recordSessionWrite(sessionId, null);
+        PendingMessage pending = writeBehind.append(sessionId, request.getSender(), request.getContent(),
+                request.getContext() != null && request.getContext().isPresent()
+                        ? request.getContext().get()
+                        : null);
+        return mapper.toMessageDTO(ChatMessage.builder()
+                .id(pending.id())
+                .sender(pending.sender())
+                .content(pending.content())
+                .context(pending.context())
+                .createdAt(pending.createdAt())
+                .build());
+    }
+
+    /**
+     * Retrieves paginated chat messages for a given session, in sequence order.
      *
      * @param sessionId the ID of the chat session
      * @param page      the page number
      * @param size      the number of messages per page
+     * @param afterSeq  if not {@code null}, only messages with a greater sequence number are paged over
      * @return a paginated list of messages wrapped in {@link ChatMessagePage}
      * @throws EntityNotFoundException if the session does not exist
      */
     @Override
-    public ChatMessagePage getMessages(Long sessionId, Integer page, Integer size) {
-        ChatSession session = sessionRepo.findById(sessionId)
+    @Transactional(readOnly = true)
+    public ChatMessagePage getMessages(Long sessionId, Integer page, Integer size, Long afterSeq) {
+        return onPrimaryIf(writeTracker.isSessionRecent(sessionId), () -> {
+            boolean archived = sessionRepo.findArchivedById(sessionId)
+                    .orElseThrow(() -> new EntityNotFoundException("Session not found"));
+            return loadMessages(sessionId, archived, page, size, afterSeq);
+        });
+    }
+
+    /**
+     * Retrieves a page like {@link #getMessages(Long, Integer, Integer, Long)},
+     * tagged with the session version read from the same database just before
+     * the page. A page served by a lagging replica therefore carries that
+     * replica's older version, and the next conditional poll, checked against
+     * the primary, is answered with a fresh page instead of a {@code 304}.
+     *
+     * @throws EntityNotFoundException if the session does not exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public TaggedMessagePage getTaggedMessages(Long sessionId, Integer page, Integer size, Long afterSeq) {
+        return onPrimaryIf(writeTracker.isSessionRecent(sessionId), () -> {
+            SessionReadState state = sessionRepo.findReadStateById(sessionId)
+                    .orElseThrow(() -> new EntityNotFoundException("Session not found"));
+            return new TaggedMessagePage(loadMessages(sessionId, state.archived(), page, size, afterSeq),
+                    messagesETag(sessionId, state.version()));
+        });
+    }
+
+    /**
+     * Returns the ETag of a session's message pages, from the session version
+     * alone, so an unchanged poll is answered without loading any messages.
+     * Versions come from the {@link SessionVersionCache}; misses are read from
+     * the primary, since a lagging replica could cache an outdated version
+     * until the session changes again.
+     *
+     * @throws EntityNotFoundException if the session does not exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public String getMessagesETag(Long sessionId) {
+        long version = versionCache.get(sessionId, () -> onPrimaryIf(true, () -> sessionRepo.findVersionById(sessionId)))
                 .orElseThrow(() -> new EntityNotFoundException("Session not found"));
+        return messagesETag(sessionId, version);
+    }
+
+    private static String messagesETag(Long sessionId, long version) {
+        return "\"m" + sessionId + "-" + version + "\"";
+    }
+
+    /**
+     * Returns the ETag of the session list for {@code owner} (or all sessions).
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public String getSessionsETag(String owner) {
+        boolean recentWrite = owner != null ? writeTracker.isOwnerRecent(owner) : writeTracker.isAnyRecent();
+        String fingerprint = onPrimaryIf(recentWrite,
+                () -> owner != null ? sessionRepo.fingerprintByOwner(owner) : sessionRepo.fingerprintAll());
+        return "\"s" + fingerprint + "\"";
+    }
+
+    /**
+     * Returns the ETag of the favorite session list.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public String getFavoritesETag() {
+        return "\"f" + onPrimaryIf(writeTracker.isFavoritesRecent(), sessionRepo::fingerprintFavorites) + "\"";
+    }
 
-        Page<ChatMessage> messagePage = messageRepo.findBySession(session, PageRequest.of(page, size));
+    private ChatMessagePage loadMessages(Long sessionId, boolean archived, Integer page, Integer size, Long afterSeq) {
+        if (archived) {
+            // decoded read-only; only a write restores the session into chat_messages
+            return toPage(archiveService.read(sessionId).stream()
+                    .filter(m -> afterSeq == null || (m.getSeq() != null && m.getSeq() > afterSeq))
+                    .sorted(Comparator.comparing(ChatMessage::getSeq, Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .toList(), page, size);
+        }
+
+        Page<MessageView> messagePage = afterSeq == null
+                ? messageRepo.findViewsBySessionId(sessionId, PageRequest.of(page, size))
+                : messageRepo.findViewsBySessionIdAfterSeq(sessionId, afterSeq, PageRequest.of(page, size));
 
         ChatMessagePage apiPage = new ChatMessagePage();
         apiPage.setContent(
@@ -194,4 +469,55 @@ public class ChatServiceImpl implements ChatService {
         apiPage.setLast(messagePage.isLast());
         return apiPage;
     }
+
+    /**
+     * Pages over the messages of a session that was just read back from the archive.
+     */
+    private ChatMessagePage toPage(List<ChatMessage> messages, Integer page, Integer size) {
+        int from = (int) Math.min((long) page * size, messages.size());
+        int to = Math.min(from + size, messages.size());
+        int totalPages = (messages.size() + size - 1) / size;
+
+        ChatMessagePage apiPage = new ChatMessagePage();
+        apiPage.setContent(messages.subList(from, to).stream()
+                .map(mapper::toMessageDTO)
+                .collect(Collectors.toList()));
+        apiPage.setPage(page);
+        apiPage.setSize(size);
+        apiPage.setTotalElements(messages.size());
+        apiPage.setTotalPages(totalPages);
+        apiPage.setFirst(page == 0);
+        apiPage.setLast(page >= totalPages - 1);
+        return apiPage;
+    }
+
+    /**
+     * Returns the model to pin a session to: {@code null} for a blank name,
+     * otherwise one of the models the router knows.
+     *
+     * @throws ApiException if the model is not configured
+     */
+    private String validModel(String model) {
+        if (model == null || model.isBlank()) return null;
+        if (!modelRouter.models().contains(model)) {
+            throw new ApiException("INVALID_INPUT", "Unknown model '" + model + "', expected one of " + modelRouter.models());
+        }
+        return model;
+    }
+
+    /**
+     * Runs a read on the primary when it must observe a recent write
+     * (read-your-writes); otherwise leaves routing to the read-only transaction.
+     */
+    private <T> T onPrimaryIf(boolean recentWrite, Supplier<T> read) {
+        if (!recentWrite || DataSourceRoutingContext.isPrimaryForced()) {
+            return read.get();
+        }
+        DataSourceRoutingContext.forcePrimary();
+        try {
+            return read.get();
+        } finally {
+            DataSourceRoutingContext.clear();
+        }
+    }
 }
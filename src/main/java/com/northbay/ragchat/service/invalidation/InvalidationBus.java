@@ -0,0 +1,226 @@
+package com.northbay.ragchat.service.invalidation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Cross-instance cache invalidation over Postgres {@code LISTEN/NOTIFY}.
+ * <p>
+ * Writers report changed sessions with {@link #sessionChanged(Long)}. Inside a
+ * transaction the ids are collected and sent as one notification just before
+ * commit; Postgres delivers notifications only once the transaction commits
+ * and drops them on rollback. Local {@link InvalidationListener}s are called
+ * right after commit without waiting for the round trip.
+ * <p>
+ * Each instance keeps one connection listening on {@value #CHANNEL}. Every
+ * notification that arrives while the previous ones are processed is merged
+ * into a single invalidation. If more than {@code max-batch} sessions are
+ * pending, or the listener had to reconnect and may have missed
+ * notifications, listeners are flushed entirely instead.
+ * <p>
+ * Payload: {@code <instance>|<id>,<id>,...}, or {@code <instance>|*} to
+ * flush everything. Instances ignore their own notifications.
+ */
+@Slf4j
+@Component
+public class InvalidationBus {
+
+    static final String CHANNEL = "chat_invalidation";
+    static final String FLUSH_ALL = "*";
+
+    /** Postgres rejects payloads of 8000 bytes or more. */
+    private static final int MAX_PAYLOAD = 7900;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<InvalidationListener> listeners;
+    private final boolean enabled;
+    private final int pollTimeoutMs;
+    private final int maxBatch;
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+    private final Counter received;
+    private final Counter flushes;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public InvalidationBus(DataSource dataSource, JdbcTemplate jdbcTemplate, List<InvalidationListener> listeners,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.invalidation.enabled:true}") boolean enabled,
+                           @Value("${app.invalidation.poll-timeout-ms:5000}") int pollTimeoutMs,
+                           @Value("${app.invalidation.max-batch:1000}") int maxBatch) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.listeners = listeners;
+        this.enabled = enabled;
+        this.pollTimeoutMs = pollTimeoutMs;
+        this.maxBatch = maxBatch;
+        this.received = Counter.builder("invalidation.received")
+                .description("Sessions invalidated by other instances")
+                .register(meterRegistry);
+        this.flushes = Counter.builder("invalidation.flushes")
+                .description("Full cache flushes after reconnects or oversized batches")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        listenerThread = new Thread(this::listenLoop, "invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+        log.info("Invalidation bus listening on channel {} as instance {}", CHANNEL, instanceId);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread.join(pollTimeoutMs + 1000L);
+        }
+    }
+
+    /**
+     * Reports a change to a session. Inside a transaction, takes effect on commit.
+     */
+    public void sessionChanged(Long sessionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(Set.of(sessionId));
+            notifyOthers(Set.of(sessionId));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Long> pending = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Long> ids = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    notifyOthers(ids);
+                }
+
+                @Override
+                public void afterCommit() {
+                    dispatch(ids);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InvalidationBus.this);
+                }
+            });
+            pending = ids;
+        }
+        pending.add(sessionId);
+    }
+
+    private void notifyOthers(Set<Long> sessionIds) {
+        if (!enabled || sessionIds.isEmpty()) return;
+        String ids = sessionIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        String payload = instanceId + "|" + (ids.length() > MAX_PAYLOAD ? FLUSH_ALL : ids);
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+    }
+
+    private void listenLoop() {
+        long backoffMs = 1000;
+        while (running) {
+            try (Connection con = dataSource.getConnection()) {
+                try (Statement st = con.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pg = con.unwrap(PGConnection.class);
+                // whatever was sent while not listening is lost
+                flushAll("listener connected");
+                backoffMs = 1000;
+                while (running) {
+                    PGNotification[] batch = pg.getNotifications(pollTimeoutMs);
+                    if (batch == null || batch.length == 0) continue;
+                    Set<Long> sessionIds = new HashSet<>();
+                    boolean all = collect(batch, sessionIds);
+                    // merge everything else that is already waiting
+                    while (!all && sessionIds.size() <= maxBatch
+                            && (batch = pg.getNotifications()) != null && batch.length > 0) {
+                        all = collect(batch, sessionIds);
+                    }
+                    if (all || sessionIds.size() > maxBatch) {
+                        flushAll(all ? "flush requested" : sessionIds.size() + "+ sessions pending");
+                    } else if (!sessionIds.isEmpty()) {
+                        received.increment(sessionIds.size());
+                        for (InvalidationListener listener : listeners) {
+                            listener.invalidateRemoteSessions(sessionIds);
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) return;
+                log.warn("Invalidation listener lost its connection, retrying in {} ms: {}", backoffMs, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * Adds the session ids of foreign notifications to {@code sessionIds}.
+     *
+     * @return {@code true} if a full flush was requested
+     */
+    private boolean collect(PGNotification[] batch, Set<Long> sessionIds) {
+        for (PGNotification notification : batch) {
+            String payload = notification.getParameter();
+            int separator = payload.indexOf('|');
+            if (separator < 0 || payload.startsWith(instanceId + "|")) continue;
+            String ids = payload.substring(separator + 1);
+            if (FLUSH_ALL.equals(ids)) return true;
+            for (String id : ids.split(",")) {
+                try {
+                    sessionIds.add(Long.parseLong(id));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring malformed invalidation payload: {}", payload);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void dispatch(Set<Long> sessionIds) {
+        for (InvalidationListener listener : listeners) {
+            listener.invalidateSessions(sessionIds);
+        }
+    }
+
+    private void flushAll(String reason) {
+        flushes.increment();
+        log.info("Flushing local caches: {}", reason);
+        listeners.forEach(InvalidationListener::invalidateAll);
+    }
+}
@@ -0,0 +1,27 @@
+package com.northbay.ragchat.service.invalidation;
+
+import java.util.Set;
+
+/**
+ * Local cache (or other local state) that is told when {@link InvalidationBus} reports a change.
+ * <p>
+ * Called on the bus listener thread (for changes on other instances) or on
+ * the committing thread (for local changes), so implementations must be
+ * thread-safe and must not block.
+ */
+public interface InvalidationListener {
+
+    /** Drops whatever is cached for these sessions. */
+    void invalidateSessions(Set<Long> sessionIds);
+
+    /**
+     * Called instead of {@link #invalidateSessions(Set)} for changes made by
+     * other instances; by default treated like local changes.
+     */
+    default void invalidateRemoteSessions(Set<Long> sessionIds) {
+        invalidateSessions(sessionIds);
+    }
+
+    /** Drops everything; used when changes may have been missed. */
+    void invalidateAll();
+}
@@ -0,0 +1,74 @@
+package com.northbay.ragchat.service.invalidation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Local cache of session versions, so conditional GETs of message pages that
+ * hit an unchanged session are answered without a database round trip.
+ * <p>
+ * Entries are dropped through the {@link InvalidationBus} whenever a session
+ * changes on any instance. A value loaded while an invalidation happened is
+ * not cached, since it may predate the change. When the cache is full it is
+ * cleared rather than evicting individual entries; the next requests reload
+ * only the sessions that are actually polled.
+ */
+@Component
+public class SessionVersionCache implements InvalidationListener {
+
+    private final int maxEntries;
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SessionVersionCache(@Value("${app.invalidation.version-cache-size:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the cached version, or loads and caches it.
+     *
+     * @param loader reads the current version from the primary; empty if the session does not exist
+     */
+    public Optional<Long> get(Long sessionId, Supplier<Optional<Long>> loader) {
+        Long cached = versions.get(sessionId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long generation = invalidations.get();
+        Optional<Long> loaded = loader.get();
+        if (loaded.isPresent() && invalidations.get() == generation) {
+            if (versions.size() >= maxEntries) {
+                versions.clear();
+            }
+            versions.put(sessionId, loaded.get());
+            // an invalidation may have slipped in between the check and the put
+            if (invalidations.get() != generation) {
+                versions.remove(sessionId);
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void invalidateSessions(Set<Long> sessionIds) {
+        invalidations.incrementAndGet();
+        sessionIds.forEach(versions::remove);
+    }
+
+    @Override
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        versions.clear();
+    }
+
+    int size() {
+        return versions.size();
+    }
+}
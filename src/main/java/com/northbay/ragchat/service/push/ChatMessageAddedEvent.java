@@ -0,0 +1,10 @@
+package com.northbay.ragchat.service.push;
+
+import com.northbay.ragchat.repository.projection.MessageView;
+
+/**
+ * Published inside the transaction that stores a message. Listeners that
+ * must only see committed messages use {@code @TransactionalEventListener}.
+ */
+public record ChatMessageAddedEvent(Long sessionId, MessageView message) {
+}
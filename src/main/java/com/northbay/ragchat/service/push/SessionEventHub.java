@@ -0,0 +1,346 @@
+package com.northbay.ragchat.service.push;
+
+import com.northbay.ragchat.config.DataSourceRoutingContext;
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.mapper.ChatMapper;
+import com.northbay.ragchat.model.ChatMessageDTO;
+import com.northbay.ragchat.model.ChatMessagePage;
+import com.northbay.ragchat.repository.ChatSessionRepository;
+import com.northbay.ragchat.service.ChatService;
+import com.northbay.ragchat.service.invalidation.InvalidationListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fan-out of new messages to Server-Sent Events subscribers.
+ * <p>
+ * Every message stored by this instance is handed to the subscribers of its
+ * session once its transaction has committed. The committing thread only
+ * appends to each subscriber's bounded buffer; a small pool of sender threads
+ * writes to the connections, so a slow client never delays {@code addMessage}.
+ * A subscriber whose buffer overflows is evicted: it receives an {@code evicted}
+ * event (if it still reads at all) and its stream is closed, and the client
+ * reconnects with {@code Last-Event-ID} to resume from the database.
+ * <p>
+ * Each subscriber sends messages strictly in {@code seq} order, without gaps or
+ * duplicates. Transactions commit in {@code seq} order per session (the
+ * counter's row lock is held until commit), but their after-commit callbacks
+ * run on different threads and may arrive in any order. A message that arrives
+ * ahead of its predecessor is held back, and the missing ones, already
+ * committed, are read from the primary. Messages stored by other instances
+ * arrive as {@link InvalidationListener#invalidateRemoteSessions remote
+ * invalidations} and are read the same way.
+ * <p>
+ * Subscribers that pass the last {@code seq} they have seen first receive
+ * the messages stored since then, followed by the live messages.
+ */
+@Slf4j
+@Component
+public class SessionEventHub implements InvalidationListener {
+
+    /** Resolved lazily: the chat service reaches this hub through the invalidation bus. */
+    private final ObjectProvider<ChatService> chatService;
+    private final ChatSessionRepository sessionRepo;
+    private final ChatMapper mapper;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMs;
+    private final int replayPageSize;
+    private final ExecutorService senders;
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter evicted;
+
+    public SessionEventHub(ObjectProvider<ChatService> chatService, ChatSessionRepository sessionRepo,
+                           ChatMapper mapper, MeterRegistry meterRegistry,
+                           @Value("${app.push.buffer-size:64}") int bufferSize,
+                           @Value("${app.push.max-subscribers:10000}") int maxSubscribers,
+                           @Value("${app.push.timeout-ms:1800000}") long timeoutMs,
+                           @Value("${app.push.replay-page-size:100}") int replayPageSize,
+                           @Value("${app.push.sender-threads:4}") int senderThreads) {
+        this.chatService = chatService;
+        this.sessionRepo = sessionRepo;
+        this.mapper = mapper;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+        this.replayPageSize = replayPageSize;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread thread = new Thread(r, "sse-sender-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("push.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open message stream subscriptions")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("push.evicted")
+                .description("Subscribers disconnected because they fell behind")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the session's new messages.
+     *
+     * @param afterSeq if not {@code null}, messages with a greater {@code seq} are sent first
+     * @throws ApiException with {@code 503} if {@code app.push.max-subscribers} streams are open
+     */
+    public SseEmitter subscribe(Long sessionId, Long afterSeq) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_OVERLOADED",
+                    "Too many open message streams, retry later");
+        }
+        Subscriber subscriber = new Subscriber(sessionId, createEmitter(), afterSeq);
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+        // registered before the starting position is read, so nothing committed in between is missed
+        subscribers.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriber.schedule();
+        return subscriber.emitter;
+    }
+
+    /**
+     * Hands a committed message to the subscribers of its session.
+     */
+    @TransactionalEventListener
+    public void onMessageAdded(ChatMessageAddedEvent event) {
+        Set<Subscriber> sessionSubscribers = subscribers.get(event.sessionId());
+        if (sessionSubscribers == null) return;
+        ChatMessageDTO message = mapper.toMessageDTO(event.message());
+        for (Subscriber subscriber : sessionSubscribers) {
+            subscriber.offer(message);
+        }
+    }
+
+    /** Local changes arrive as {@link ChatMessageAddedEvent}s. */
+    @Override
+    public void invalidateSessions(Set<Long> sessionIds) {
+    }
+
+    /**
+     * Makes the subscribers of sessions changed on another instance read the
+     * new messages from the database.
+     */
+    @Override
+    public void invalidateRemoteSessions(Set<Long> sessionIds) {
+        for (Long sessionId : sessionIds) {
+            Set<Subscriber> sessionSubscribers = subscribers.get(sessionId);
+            if (sessionSubscribers != null) {
+                sessionSubscribers.forEach(Subscriber::catchUp);
+            }
+        }
+    }
+
+    /** Changes may have been missed: every subscriber reads from the database. */
+    @Override
+    public void invalidateAll() {
+        subscribers.values().forEach(set -> set.forEach(Subscriber::catchUp));
+    }
+
+    /**
+     * Sends a comment to every subscriber so proxies keep idle streams open
+     * and connections of vanished clients are detected.
+     */
+    @Scheduled(fixedDelayString = "${app.push.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.values().forEach(set -> set.forEach(Subscriber::heartbeat));
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        boolean[] removed = {false};
+        subscribers.computeIfPresent(subscriber.sessionId, (id, set) -> {
+            removed[0] = set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        if (removed[0]) {
+            subscriberCount.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    private final class Subscriber implements Runnable {
+
+        final Long sessionId;
+        final SseEmitter emitter;
+        final BlockingQueue<ChatMessageDTO> buffer = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final Long startAfter;
+        volatile boolean catchUpDue;
+        volatile boolean heartbeatDue;
+        volatile boolean closed;
+        /** Whether the emitter has been completed; only touched by the sender task. */
+        boolean finished;
+        /** Highest {@code seq} sent, {@code null} until positioned; only touched by the sender task. */
+        Long lastSeq;
+        /** Messages that arrived ahead of their predecessors; only touched by the sender task. */
+        final TreeMap<Long, ChatMessageDTO> ahead = new TreeMap<>();
+
+        Subscriber(Long sessionId, SseEmitter emitter, Long startAfter) {
+            this.sessionId = sessionId;
+            this.emitter = emitter;
+            this.startAfter = startAfter;
+            this.catchUpDue = startAfter != null;
+        }
+
+        void offer(ChatMessageDTO message) {
+            if (!buffer.offer(message)) {
+                evict();
+                return;
+            }
+            schedule();
+        }
+
+        void heartbeat() {
+            heartbeatDue = true;
+            schedule();
+        }
+
+        void catchUp() {
+            catchUpDue = true;
+            schedule();
+        }
+
+        void evict() {
+            if (remove(this)) {
+                evicted.increment();
+                log.info("Evicting slow message stream subscriber of session {}", sessionId);
+            }
+            closed = true;
+            buffer.clear();
+            schedule();
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        /** Writes pending output; runs on one sender thread at a time. */
+        @Override
+        public void run() {
+            try {
+                if (closed) {
+                    if (!finished) {
+                        finished = true;
+                        emitter.send(SseEmitter.event().name("evicted").data("Stream fell behind, reconnect to resume"));
+                        emitter.complete();
+                    }
+                    return;
+                }
+                if (lastSeq == null) {
+                    lastSeq = startAfter != null ? startAfter : currentSeq();
+                }
+                ChatMessageDTO message;
+                while ((message = buffer.poll()) != null) {
+                    if (message.getSeq() != null && message.getSeq() > lastSeq) {
+                        ahead.put(message.getSeq(), message);
+                    }
+                }
+                sendAhead();
+                // a gap: the missing messages have committed, but their callbacks have not run yet
+                if (catchUpDue || !ahead.isEmpty()) {
+                    catchUpDue = false;
+                    readStored();
+                    ahead.headMap(lastSeq, true).clear();
+                    sendAhead();
+                }
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                }
+            } catch (IOException | RuntimeException e) {
+                log.debug("Message stream of session {} closed: {}", sessionId, e.getMessage());
+                remove(this);
+                closed = true;
+                finished = true;
+                buffer.clear();
+                emitter.completeWithError(e);
+            } finally {
+                scheduled.set(false);
+                // work that arrived while this run was finishing
+                if (!buffer.isEmpty() || catchUpDue || heartbeatDue || (closed && !finished)) {
+                    schedule();
+                }
+            }
+        }
+
+        private Long currentSeq() {
+            Long seq = sessionRepo.findLastSeqById(sessionId);
+            return seq != null ? seq : 0L;
+        }
+
+        /** Sends the held-back messages that directly follow the last one sent. */
+        private void sendAhead() throws IOException {
+            while (!closed && !ahead.isEmpty() && ahead.firstKey() == lastSeq + 1) {
+                send(ahead.pollFirstEntry().getValue());
+            }
+        }
+
+        /** Sends the stored messages after the last one sent, read from the primary. */
+        private void readStored() throws IOException {
+            DataSourceRoutingContext.forcePrimary();
+            try {
+                while (!closed) {
+                    ChatMessagePage page = chatService.getObject().getMessages(sessionId, 0, replayPageSize, lastSeq);
+                    List<ChatMessageDTO> content = page.getContent() != null ? page.getContent() : List.of();
+                    for (ChatMessageDTO message : content) {
+                        send(message);
+                    }
+                    if (content.size() < replayPageSize) return;
+                }
+            } finally {
+                DataSourceRoutingContext.clear();
+            }
+        }
+
+        private void send(ChatMessageDTO message) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(String.valueOf(message.getSeq()))
+                    .name("message")
+                    .data(message, MediaType.APPLICATION_JSON));
+            lastSeq = message.getSeq();
+        }
+    }
+}
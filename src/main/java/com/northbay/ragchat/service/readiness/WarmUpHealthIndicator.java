@@ -0,0 +1,29 @@
+package com.northbay.ragchat.service.readiness;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports {@code OUT_OF_SERVICE} until {@link WarmUpRunner} has finished, keeping a
+ * fresh instance out of the readiness group (and the load balancer) while it warms up,
+ * and {@code DOWN} with the cause if the warm-up failed.
+ */
+@Component
+public class WarmUpHealthIndicator implements HealthIndicator {
+
+    private final WarmUpRunner warmUpRunner;
+
+    public WarmUpHealthIndicator(WarmUpRunner warmUpRunner) {
+        this.warmUpRunner = warmUpRunner;
+    }
+
+    @Override
+    public Health health() {
+        String failure = warmUpRunner.getFailure();
+        if (failure != null) {
+            return Health.down().withDetail("error", failure).build();
+        }
+        return warmUpRunner.isComplete() ? Health.up().build() : Health.outOfService().build();
+    }
+}
@@ -0,0 +1,181 @@
+package com.northbay.ragchat.service.readiness;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.controller.ChatMessagesController;
+import com.northbay.ragchat.controller.ChatSessionsController;
+import com.northbay.ragchat.model.ChatMessageCreateRequest;
+import com.northbay.ragchat.model.ChatSessionCreateRequest;
+import com.northbay.ragchat.model.ChatSessionDTO;
+import com.northbay.ragchat.service.GroqLLMService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms a fresh instance up before it reports ready.
+ * <p>
+ * After startup, a background thread
+ * <ol>
+ *   <li>opens {@code app.warm-up.connections} pooled database connections at once,</li>
+ *   <li>opens the connection to the LLM provider ({@link GroqLLMService#warmUp()}), and</li>
+ *   <li>runs {@code app.warm-up.iterations} rounds of add-message / get-messages
+ *       through the real controllers, service, mapper and Jackson serializers
+ *       against a scratch session.</li>
+ * </ol>
+ * The scratch messages are sent as {@code assistant}, so no LLM call is made.
+ * All rounds run in one transaction that is always rolled back: the scratch
+ * session is never visible to other requests, and the after-commit side effects
+ * of the writes (cache invalidation and {@code pg_notify}, SSE pushes, write
+ * tracking) never happen.
+ * <p>
+ * Until the warm-up is complete, or {@code app.warm-up.timeout-seconds} have
+ * passed, {@link WarmUpHealthIndicator} keeps the readiness probe out of service.
+ * A request path that fails during warm-up reports the instance {@code DOWN}
+ * instead of ready; a pool or LLM connection that cannot be opened is only logged.
+ */
+@Slf4j
+@Component
+public class WarmUpRunner {
+
+    private final ChatSessionsController sessions;
+    private final ChatMessagesController messages;
+    private final GroqLLMService llm;
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final int iterations;
+    private final int connections;
+    private final long timeoutMs;
+
+    private volatile boolean complete;
+    private volatile String failure;
+
+    public WarmUpRunner(ChatSessionsController sessions,
+                        ChatMessagesController messages,
+                        GroqLLMService llm,
+                        DataSource dataSource,
+                        ObjectMapper objectMapper,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${app.warm-up.enabled:true}") boolean enabled,
+                        @Value("${app.warm-up.iterations:500}") int iterations,
+                        @Value("${app.warm-up.connections:10}") int connections,
+                        @Value("${app.warm-up.timeout-seconds:60}") long timeoutSeconds) {
+        this.sessions = sessions;
+        this.messages = messages;
+        this.llm = llm;
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.connections = connections;
+        this.timeoutMs = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.complete = !enabled;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return why the warm-up failed, or {@code null} if it has not failed
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        Thread thread = new Thread(this::run, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMs;
+        try {
+            primeConnectionPool();
+            llm.warmUp();
+            int rounds = exerciseRequestPath(deadline);
+            log.info("Warm-up complete in {} ms ({} rounds)", System.currentTimeMillis() - start, rounds);
+            complete = true;
+        } catch (RuntimeException e) {
+            failure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            log.error("Warm-up failed after {} ms, reporting DOWN", System.currentTimeMillis() - start, e);
+        }
+    }
+
+    private void primeConnectionPool() {
+        List<Connection> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Connection connection = dataSource.getConnection();
+                opened.add(connection);
+                connection.isValid(2);
+            }
+        } catch (SQLException e) {
+            log.warn("Warm-up opened only {} of {} database connections: {}", opened.size(), connections, e.getMessage());
+        } finally {
+            for (Connection connection : opened) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("Closing warm-up connection failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private int exerciseRequestPath(long deadline) {
+        Integer rounds = tx.execute(status -> {
+            status.setRollbackOnly();
+            return exerciseRounds(deadline);
+        });
+        return rounds != null ? rounds : 0;
+    }
+
+    private int exerciseRounds(long deadline) {
+        ChatSessionCreateRequest create = new ChatSessionCreateRequest();
+        create.setTitle("warm-up");
+        create.setOwner("warm-up-" + UUID.randomUUID());
+        ChatSessionDTO session = serialize(sessions.createChatSession(create));
+        Integer id = session.getId();
+        int rounds = 0;
+        while (rounds < iterations && System.currentTimeMillis() < deadline) {
+            ChatMessageCreateRequest message = new ChatMessageCreateRequest();
+            message.setSender("assistant");
+            message.setContent("Warm-up message " + rounds);
+            serialize(messages.addMessage(id, message, null));
+            serialize(messages.getMessages(id, 0, 20, null, null));
+            serialize(sessions.listChatSessions(create.getOwner(), null));
+            rounds++;
+        }
+        return rounds;
+    }
+
+    private <T> T serialize(ResponseEntity<T> response) {
+        try {
+            objectMapper.writeValueAsBytes(response.getBody());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Serializing warm-up response failed", e);
+        }
+        return response.getBody();
+    }
+}
@@ -0,0 +1,199 @@
+package com.northbay.ragchat.service.routing;
+
+import com.northbay.ragchat.service.GroqLLMService;
+import com.northbay.ragchat.service.LlmCompletion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the Groq model for each completion.
+ * <p>
+ * Rules, in order:
+ * <ol>
+ *   <li>a session that names a model uses it;</li>
+ *   <li>otherwise the prompt goes to the first (smallest) tier of
+ *       {@code app.llm.routing.tiers} whose token limit it fits;</li>
+ *   <li>otherwise, and whenever the chosen model is benched, the default
+ *       {@code groq.model} answers.</li>
+ * </ol>
+ * Every call feeds the model's {@link ModelHealth}; a model whose recent error
+ * rate or average latency exceeds its limit is skipped for a cooldown period.
+ * A failed call on any other model is retried once on the default model.
+ * The default model is never benched, as there is nothing to fall back to.
+ */
+@Slf4j
+@Component
+public class LlmModelRouter {
+
+    /** A small model and the largest prompt, in estimated tokens, it is used for. */
+    record Tier(String model, int maxPromptTokens) {
+    }
+
+    private final GroqLLMService llm;
+    private final MeterRegistry meterRegistry;
+    private final String defaultModel;
+    private final boolean enabled;
+    private final List<Tier> tiers;
+    private final int charsPerToken;
+    private final int window;
+    private final double maxErrorRate;
+    private final long maxLatencyMs;
+    private final long cooldownMs;
+    private final Map<String, ModelHealth> health = new ConcurrentHashMap<>();
+
+    public LlmModelRouter(GroqLLMService llm, MeterRegistry meterRegistry,
+                          @Value("${app.llm.routing.enabled:true}") boolean enabled,
+                          @Value("${app.llm.routing.tiers:llama-3.1-8b-instant=256}") String tiers,
+                          @Value("${app.llm.routing.chars-per-token:4}") int charsPerToken,
+                          @Value("${app.llm.routing.window:20}") int window,
+                          @Value("${app.llm.routing.max-error-rate:0.2}") double maxErrorRate,
+                          @Value("${app.llm.routing.max-latency-ms:4000}") long maxLatencyMs,
+                          @Value("${app.llm.routing.cooldown-ms:30000}") long cooldownMs) {
+        this.llm = llm;
+        this.meterRegistry = meterRegistry;
+        this.defaultModel = llm.getDefaultModel();
+        this.enabled = enabled;
+        this.tiers = parseTiers(tiers);
+        this.charsPerToken = charsPerToken;
+        this.window = window;
+        this.maxErrorRate = maxErrorRate;
+        this.maxLatencyMs = maxLatencyMs;
+        this.cooldownMs = cooldownMs;
+        log.info("LLM routing {}: tiers {}, default {}", enabled ? "enabled" : "disabled", this.tiers, defaultModel);
+    }
+
+    /**
+     * Models a session may be pinned to.
+     */
+    public Set<String> models() {
+        Set<String> models = new LinkedHashSet<>();
+        tiers.forEach(t -> models.add(t.model()));
+        models.add(defaultModel);
+        return models;
+    }
+
+    /**
+     * Generates a reply, falling back to the default model if the routed model fails.
+     * If the default model fails too, the reply is an error text, as with
+     * {@link GroqLLMService#generateCompletion(String)}.
+     *
+     * @param sessionModel the model configured on the session, or {@code null}
+     */
+    public LlmCompletion complete(String prompt, String sessionModel) {
+        try {
+            return completeOrThrow(prompt, sessionModel);
+        } catch (RuntimeException e) {
+            log.error("Groq LLM call failed: {}", e.getMessage(), e);
+            return new LlmCompletion("[Error generating response from Groq: " + e.getMessage() + "]",
+                    defaultModel, 0, 0);
+        }
+    }
+
+    /**
+     * Like {@link #complete(String, String)}, but throws if the default model fails too,
+     * for callers that retry instead of storing an error text.
+     *
+     * @throws RuntimeException the default model's error
+     */
+    public LlmCompletion completeOrThrow(String prompt, String sessionModel) {
+        String model = choose(prompt, sessionModel);
+        try {
+            return call(model, prompt);
+        } catch (RuntimeException e) {
+            if (model.equals(defaultModel)) {
+                throw e;
+            }
+            log.warn("LLM model {} failed ({}), falling back to {}", model, e.getMessage(), defaultModel);
+            Counter.builder("llm.routing.fallbacks").tag("model", model).register(meterRegistry).increment();
+            return call(defaultModel, prompt);
+        }
+    }
+
+    String choose(String prompt, String sessionModel) {
+        long now = System.currentTimeMillis();
+        if (sessionModel != null && !sessionModel.isBlank()) {
+            return available(sessionModel, now) ? sessionModel : defaultModel;
+        }
+        if (!enabled) {
+            return defaultModel;
+        }
+        int tokens = estimateTokens(prompt);
+        for (Tier tier : tiers) {
+            if (tokens <= tier.maxPromptTokens() && available(tier.model(), now)) {
+                return tier.model();
+            }
+        }
+        return defaultModel;
+    }
+
+    int estimateTokens(String prompt) {
+        return prompt == null ? 0 : (prompt.length() + charsPerToken - 1) / charsPerToken;
+    }
+
+    private boolean available(String model, long now) {
+        return model.equals(defaultModel) || health(model).isAvailable(now);
+    }
+
+    private LlmCompletion call(String model, String prompt) {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            LlmCompletion completion = llm.complete(prompt, model);
+            failed = false;
+            Counter.builder("llm.tokens").tag("model", model).tag("kind", "prompt")
+                    .register(meterRegistry).increment(completion.promptTokens());
+            Counter.builder("llm.tokens").tag("model", model).tag("kind", "completion")
+                    .register(meterRegistry).increment(completion.completionTokens());
+            return completion;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            Timer.builder("llm.requests")
+                    .tag("model", model)
+                    .tag("outcome", failed ? "error" : "success")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            if (!model.equals(defaultModel)) {
+                health(model).record(TimeUnit.NANOSECONDS.toMillis(nanos), failed, System.currentTimeMillis());
+            }
+        }
+    }
+
+    private ModelHealth health(String model) {
+        return health.computeIfAbsent(model, m -> new ModelHealth(window, maxErrorRate, maxLatencyMs, cooldownMs));
+    }
+
+    /**
+     * Parses {@code model=maxPromptTokens} pairs, e.g. {@code "llama-3.1-8b-instant=256"},
+     * ordered by token limit.
+     */
+    static List<Tier> parseTiers(String spec) {
+        List<Tier> tiers = new ArrayList<>();
+        Arrays.stream(spec.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .forEach(s -> {
+                    int eq = s.lastIndexOf('=');
+                    if (eq <= 0) {
+                        throw new IllegalArgumentException("Invalid app.llm.routing.tiers entry: " + s);
+                    }
+                    tiers.add(new Tier(s.substring(0, eq).trim(), Integer.parseInt(s.substring(eq + 1).trim())));
+                });
+        tiers.sort(Comparator.comparingInt(Tier::maxPromptTokens));
+        return List.copyOf(tiers);
+    }
+}
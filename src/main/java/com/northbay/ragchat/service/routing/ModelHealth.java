@@ -0,0 +1,88 @@
+package com.northbay.ragchat.service.routing;
+
+import java.util.Arrays;
+
+/**
+ * Recent latency and error statistics of one model, deciding whether the
+ * router may still pick it.
+ * <p>
+ * Keeps the outcomes of the last {@code window} calls and a moving average of
+ * their latency. Once the error rate or the average latency exceeds its limit,
+ * the model is benched for {@code cooldownMs}; afterwards its statistics start
+ * over, so the next calls probe whether it has recovered.
+ * <p>
+ * Thread-safe.
+ */
+class ModelHealth {
+
+    /** Weight of each new latency sample in the moving average. */
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final int window;
+    private final double maxErrorRate;
+    private final long maxLatencyMs;
+    private final long cooldownMs;
+
+    private final boolean[] failures;
+    private int samples;
+    private int next;
+    private int failureCount;
+    private double latencyMs;
+    private long benchedUntil;
+
+    /**
+     * @param window       number of recent calls the error rate is computed over
+     * @param maxErrorRate error rate above which the model is benched
+     * @param maxLatencyMs average latency above which the model is benched, 0 for no limit
+     * @param cooldownMs   how long a benched model is skipped
+     */
+    ModelHealth(int window, double maxErrorRate, long maxLatencyMs, long cooldownMs) {
+        this.window = window;
+        this.maxErrorRate = maxErrorRate;
+        this.maxLatencyMs = maxLatencyMs;
+        this.cooldownMs = cooldownMs;
+        this.failures = new boolean[window];
+    }
+
+    synchronized boolean isAvailable(long nowMs) {
+        return nowMs >= benchedUntil;
+    }
+
+    /**
+     * Records the outcome of one call.
+     */
+    synchronized void record(long latencyMs, boolean failed, long nowMs) {
+        if (samples == window && failures[next]) failureCount--;
+        failures[next] = failed;
+        if (failed) failureCount++;
+        next = (next + 1) % window;
+        samples = Math.min(samples + 1, window);
+        if (!failed) {
+            this.latencyMs = this.latencyMs == 0 ? latencyMs : this.latencyMs + (latencyMs - this.latencyMs) * LATENCY_WEIGHT;
+        }
+
+        // judge error rates only once a few calls have been seen
+        boolean tooManyErrors = samples >= Math.min(window, 5) && (double) failureCount / samples > maxErrorRate;
+        boolean tooSlow = maxLatencyMs > 0 && this.latencyMs > maxLatencyMs;
+        if (tooManyErrors || tooSlow) {
+            benchedUntil = nowMs + cooldownMs;
+            reset();
+        }
+    }
+
+    synchronized double getErrorRate() {
+        return samples == 0 ? 0 : (double) failureCount / samples;
+    }
+
+    synchronized double getLatencyMs() {
+        return latencyMs;
+    }
+
+    private void reset() {
+        Arrays.fill(failures, false);
+        samples = 0;
+        next = 0;
+        failureCount = 0;
+        latencyMs = 0;
+    }
+}
@@ -0,0 +1,178 @@
+package com.northbay.ragchat.service.writebehind;
+
+import com.northbay.ragchat.repository.projection.MessageView;
+import com.northbay.ragchat.service.compression.MessagePayloadCodec;
+import com.northbay.ragchat.service.invalidation.InvalidationBus;
+import com.northbay.ragchat.service.push.ChatMessageAddedEvent;
+import com.northbay.ragchat.util.MessagePreviewUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes batches of messages with JDBC batch inserts in a single transaction.
+ * <p>
+ * Inserts are idempotent: rows whose id already exists are skipped, so a batch
+ * can safely be replayed after a crash. Messages whose session has been
+ * deleted in the meantime are dropped, matching the cascade-delete semantics
+ * of the synchronous path.
+ */
+@Slf4j
+@Component
+public class ChatMessageBatchWriter {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO chat_messages (id, session_id, seq, sender, content, context, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String EXISTING_IDS_SQL = "SELECT id FROM chat_messages WHERE id = ANY(?)";
+
+    private static final String RECORD_MESSAGES_SQL = """
+            UPDATE chat_sessions
+            SET version = COALESCE(version, 0) + 1,
+                message_count = COALESCE(message_count, 0) + ?,
+                last_message_preview = CASE WHEN last_message_at IS NULL OR last_message_at <= ?
+                                            THEN ? ELSE last_message_preview END,
+                last_message_at = CASE WHEN last_message_at IS NULL OR last_message_at <= ?
+                                       THEN ? ELSE last_message_at END,
+                last_seq = COALESCE(last_seq, 0) + ?
+            WHERE id = ?
+            RETURNING last_seq
+            """;
+
+    private static final String NEXT_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('chat_messages', 'id')) FROM generate_series(1, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    private final MessagePayloadCodec codec;
+    private final ApplicationEventPublisher events;
+    private final InvalidationBus invalidationBus;
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+
+    public ChatMessageBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  MessagePayloadCodec codec, ApplicationEventPublisher events,
+                                  InvalidationBus invalidationBus) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.codec = codec;
+        this.events = events;
+        this.invalidationBus = invalidationBus;
+    }
+
+    /**
+     * Returns the next message id, reserving {@code blockSize} ids from the
+     * {@code chat_messages} sequence whenever the local block is exhausted.
+     */
+    public synchronized long nextId(int blockSize) {
+        if (reservedIds.isEmpty()) {
+            reservedIds.addAll(jdbcTemplate.queryForList(NEXT_IDS_SQL, Long.class, blockSize));
+        }
+        return reservedIds.removeFirst();
+    }
+
+    /**
+     * Inserts all messages in one transaction, preserving list order, and updates
+     * the version and activity summary of every affected session once.
+     * <p>
+     * Messages already written by an earlier attempt are skipped before anything
+     * else happens, so a replay neither counts them again nor consumes sequence
+     * numbers. Each session then reserves a block of sequence numbers in the
+     * same update that records its activity, and its messages are numbered in
+     * list order from that block.
+     *
+     * @return the number of rows actually inserted
+     */
+    public int write(List<PendingMessage> messages) {
+        if (messages.isEmpty()) return 0;
+        Integer inserted = tx.execute(status -> {
+            Set<Long> existing = new HashSet<>(jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(EXISTING_IDS_SQL);
+                ps.setArray(1, con.createArrayOf("bigint", messages.stream().map(PendingMessage::id).toArray()));
+                return ps;
+            }, (rs, rowNum) -> rs.getLong(1)));
+
+            // per session, in session id order (lock order)
+            Map<Long, SessionActivity> activity = new TreeMap<>();
+            for (PendingMessage m : messages) {
+                if (!existing.contains(m.id())) {
+                    activity.computeIfAbsent(m.sessionId(), id -> new SessionActivity()).add(m);
+                }
+            }
+
+            List<NumberedMessage> rows = new ArrayList<>();
+            for (Map.Entry<Long, SessionActivity> e : activity.entrySet()) {
+                SessionActivity a = e.getValue();
+                Timestamp at = Timestamp.from(a.last.createdAt());
+                List<Long> lastSeq = jdbcTemplate.queryForList(RECORD_MESSAGES_SQL, Long.class,
+                        a.messages.size(), at, MessagePreviewUtil.preview(a.last.content()), at, at,
+                        a.messages.size(), e.getKey());
+                if (lastSeq.isEmpty()) {
+                    log.debug("Dropping {} message(s) of deleted session {}", a.messages.size(), e.getKey());
+                    continue;
+                }
+                invalidationBus.sessionChanged(e.getKey());
+                long seq = lastSeq.get(0) - a.messages.size();
+                for (PendingMessage m : a.messages) {
+                    rows.add(new NumberedMessage(m, ++seq));
+                }
+            }
+
+            int[][] counts = jdbcTemplate.batchUpdate(INSERT_SQL, rows, 1000, (ps, row) -> {
+                PendingMessage m = row.message();
+                ps.setLong(1, m.id());
+                ps.setLong(2, m.sessionId());
+                ps.setLong(3, row.seq());
+                ps.setString(4, m.sender());
+                ps.setString(5, codec.encode(m.content()));
+                ps.setString(6, codec.encode(m.context()));
+                ps.setTimestamp(7, Timestamp.from(m.createdAt()));
+            });
+            int total = 0;
+            int i = 0;
+            for (int[] batch : counts) {
+                for (int c : batch) {
+                    NumberedMessage row = rows.get(i++);
+                    if (c == 0) continue;
+                    total += Math.max(c, 0);
+                    PendingMessage m = row.message();
+                    events.publishEvent(new ChatMessageAddedEvent(m.sessionId(), new MessageView(m.id(), row.seq(),
+                            m.sender(), m.content(), m.context(), m.createdAt())));
+                }
+            }
+            return total;
+        });
+        return inserted == null ? 0 : inserted;
+    }
+
+    private record NumberedMessage(PendingMessage message, long seq) {
+    }
+
+    private static final class SessionActivity {
+        final List<PendingMessage> messages = new ArrayList<>();
+        PendingMessage last;
+
+        void add(PendingMessage m) {
+            messages.add(m);
+            if (last == null || !m.createdAt().isBefore(last.createdAt())) {
+                last = m;
+            }
+        }
+    }
+}
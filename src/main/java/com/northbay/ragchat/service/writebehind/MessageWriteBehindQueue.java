@@ -0,0 +1,392 @@
+package com.northbay.ragchat.service.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.exception.ApiException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Durable write-behind queue for high-rate, non-LLM message appends.
+ * <p>
+ * When enabled ({@code app.write-behind.enabled=true}), an append is written
+ * to a local write-ahead log segment and placed on a bounded in-memory queue;
+ * the caller is acknowledged as soon as the WAL write completes. A single
+ * flusher thread drains the queue every {@code flush-interval-ms} or as soon
+ * as {@code batch-size} messages are pending, and commits the whole drain in
+ * one transaction through {@link ChatMessageBatchWriter}.
+ * <p>
+ * Ordering: WAL records are appended and queued under one lock, and the
+ * single flusher writes batches in queue order, so messages of a session are
+ * stored in the order they were queued. Ids are allocated before taking the
+ * lock (a block refill queries the database), so they are unique but not
+ * necessarily increasing in queue order.
+ * <p>
+ * Durability: an append is acknowledged once its record is forced to disk.
+ * The force runs outside the queue lock as a group commit: appenders arriving
+ * while another one forces the segment wait for it, and one force usually
+ * covers all of them. Every drain rotates the WAL segment under the same lock,
+ * so a closed segment contains exactly the drained batch and is deleted only
+ * after that batch has committed. Segments left over from a crash are replayed
+ * on startup; replays are idempotent because inserts skip existing ids.
+ * <p>
+ * A batch that still fails after {@code max-attempts} commits is moved to
+ * {@code <wal-dir>/dead-letter} and the flusher moves on, so one poison batch
+ * does not stall every later append. Moving the file back into {@code wal-dir}
+ * replays it on the next startup.
+ * <p>
+ * Back-pressure: when the queue is full, appends wait up to
+ * {@code enqueue-timeout-ms} and are then rejected with {@code 503} rather
+ * than bypassing the queue, which would break per-session ordering.
+ */
+@Slf4j
+@Component
+public class MessageWriteBehindQueue {
+
+    private final ChatMessageBatchWriter batchWriter;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final Path walDir;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final long enqueueTimeoutMs;
+    private final boolean fsync;
+    private final int idBlockSize;
+    private final int maxAttempts;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Held while forcing the segment; taken before {@link #lock} when both are needed. */
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final ArrayDeque<PendingMessage> queue = new ArrayDeque<>();
+
+    private FileChannel segment;
+    private Path segmentPath;
+    private long segmentIndex;
+    private int inFlight;
+    /** Records written to the WAL so far, guarded by {@link #lock}. */
+    private long appended;
+    /** Records known to be on disk, written under {@link #syncLock}. */
+    private volatile long synced;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public MessageWriteBehindQueue(ChatMessageBatchWriter batchWriter,
+                                   ObjectMapper objectMapper,
+                                   @Value("${app.write-behind.enabled:false}") boolean enabled,
+                                   @Value("${app.write-behind.wal-dir:./data/wal}") String walDir,
+                                   @Value("${app.write-behind.flush-interval-ms:5}") long flushIntervalMs,
+                                   @Value("${app.write-behind.batch-size:500}") int batchSize,
+                                   @Value("${app.write-behind.queue-capacity:10000}") int queueCapacity,
+                                   @Value("${app.write-behind.enqueue-timeout-ms:1000}") long enqueueTimeoutMs,
+                                   @Value("${app.write-behind.fsync:true}") boolean fsync,
+                                   @Value("${app.write-behind.id-block-size:1000}") int idBlockSize,
+                                   @Value("${app.write-behind.max-attempts:10}") int maxAttempts) {
+        this.batchWriter = batchWriter;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.walDir = Path.of(walDir);
+        this.flushIntervalMs = flushIntervalMs;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+        this.fsync = fsync;
+        this.idBlockSize = idBlockSize;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays leftover WAL segments and starts the flusher thread.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) return;
+        Files.createDirectories(walDir);
+
+        List<Path> leftovers = listSegments();
+        for (Path leftover : leftovers) {
+            List<PendingMessage> replay = readSegment(leftover);
+            int inserted = batchWriter.write(replay);
+            log.warn("Write-behind: replayed WAL segment {} ({} records, {} inserted)",
+                    leftover.getFileName(), replay.size(), inserted);
+            Files.delete(leftover);
+            segmentIndex = Math.max(segmentIndex, indexOf(leftover));
+        }
+        openNextSegment();
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Write-behind enabled: wal={}, flush every {} ms or {} messages, capacity {}",
+                walDir, flushIntervalMs, batchSize, queueCapacity);
+    }
+
+    /**
+     * Appends a message durably and returns it with its final id.
+     *
+     * @throws ApiException with {@code 503} if the queue stays full past the enqueue timeout
+     */
+    public PendingMessage append(Long sessionId, String sender, String content, String context) {
+        PendingMessage msg = new PendingMessage(batchWriter.nextId(idBlockSize), sessionId,
+                sender, content, context, Instant.now());
+        long position;
+        lock.lock();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMs);
+            while (queue.size() + inFlight >= queueCapacity) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "INTERNAL_ERROR",
+                            "Message queue is full, retry later");
+                }
+                spaceAvailable.awaitNanos(remaining);
+            }
+
+            byte[] record = objectMapper.writeValueAsBytes(msg);
+            ByteBuffer buf = ByteBuffer.allocate(record.length + 1).put(record).put((byte) '\n').flip();
+            while (buf.hasRemaining()) {
+                segment.write(buf);
+            }
+            position = ++appended;
+
+            queue.addLast(msg);
+            if (queue.size() >= batchSize) {
+                batchReady.signal();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Write-behind WAL append failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "INTERNAL_ERROR", "Interrupted while enqueuing");
+        } finally {
+            lock.unlock();
+        }
+
+        if (fsync) {
+            try {
+                awaitDurable(position);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Write-behind WAL sync failed", e);
+            }
+        }
+        return msg;
+    }
+
+    /**
+     * Returns once the WAL record at {@code position} is on disk, forcing the
+     * current segment unless a force that already covers it has finished.
+     * Earlier segments were forced when they were rotated.
+     */
+    private void awaitDurable(long position) throws IOException {
+        syncLock.lock();
+        try {
+            if (synced >= position) return;
+            long target;
+            FileChannel channel;
+            lock.lock();
+            try {
+                target = appended;
+                channel = segment;
+            } finally {
+                lock.unlock();
+            }
+            channel.force(false);
+            synced = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                flushOnce(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Write-behind flush loop error: {}", e.getMessage(), e);
+            }
+        }
+        try {
+            while (flushOnce(false)) {
+                // drain what was acknowledged before shutdown
+            }
+        } catch (Exception e) {
+            log.error("Write-behind final flush failed, WAL will be replayed on startup: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drains the queue into one group commit.
+     *
+     * @return whether anything was flushed
+     */
+    private boolean flushOnce(boolean wait) throws InterruptedException, IOException {
+        lock.lock();
+        try {
+            if (wait && queue.size() < batchSize) {
+                batchReady.await(flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+            if (queue.isEmpty()) return false;
+        } finally {
+            lock.unlock();
+        }
+
+        // only this thread drains, so the queue is still non-empty
+        List<PendingMessage> batch;
+        Path closedSegment;
+        syncLock.lock();
+        lock.lock();
+        try {
+            batch = new ArrayList<>(queue);
+            queue.clear();
+            inFlight = batch.size();
+            closedSegment = segmentPath;
+            if (fsync) {
+                // covers appenders still waiting for their force
+                segment.force(false);
+                synced = appended;
+            }
+            segment.close();
+            openNextSegment();
+        } finally {
+            lock.unlock();
+            syncLock.unlock();
+        }
+
+        long backoff = 50;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long start = System.nanoTime();
+                batchWriter.write(batch);
+                log.debug("Write-behind: committed {} messages in {} µs",
+                        batch.size(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                break;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    deadLetter(closedSegment, batch.size(), e);
+                    break;
+                }
+                // the records stay in the closed segment; retry before later batches so order is preserved
+                log.error("Write-behind: commit of {} messages failed (attempt {} of {}), retrying in {} ms: {}",
+                        batch.size(), attempt, maxAttempts, backoff, e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, 5_000);
+            }
+        }
+        Files.deleteIfExists(closedSegment);
+
+        lock.lock();
+        try {
+            inFlight = 0;
+            spaceAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting work and flushes whatever is still queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled || flusher == null) return;
+        running = false;
+        lock.lock();
+        try {
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        lock.lock();
+        try {
+            segment.close();
+            if (queue.isEmpty()) {
+                Files.deleteIfExists(segmentPath);
+            }
+        } catch (IOException e) {
+            log.warn("Write-behind: could not close WAL segment: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void deadLetter(Path closedSegment, int size, Exception cause) throws IOException {
+        Path deadLetterDir = walDir.resolve("dead-letter");
+        Files.createDirectories(deadLetterDir);
+        Path target = deadLetterDir.resolve(closedSegment.getFileName());
+        Files.move(closedSegment, target, StandardCopyOption.REPLACE_EXISTING);
+        log.error("Write-behind: gave up on {} messages after {} attempts, moved WAL segment to {}: {}",
+                size, maxAttempts, target, cause.getMessage(), cause);
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        segmentPath = walDir.resolve(String.format("wal-%020d.log", segmentIndex));
+        segment = FileChannel.open(segmentPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(walDir)) {
+            return files.filter(p -> p.getFileName().toString().matches("wal-\\d{20}\\.log"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private List<PendingMessage> readSegment(Path path) throws IOException {
+        List<PendingMessage> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    records.add(objectMapper.readValue(line, PendingMessage.class));
+                } catch (IOException e) {
+                    // a torn final record from a crash mid-write was never acknowledged
+                    log.warn("Write-behind: skipping unreadable WAL record in {}", path.getFileName());
+                }
+            }
+        }
+        return records;
+    }
+
+    private static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(4, name.length() - 4));
+    }
+}
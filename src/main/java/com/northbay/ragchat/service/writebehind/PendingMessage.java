@@ -0,0 +1,17 @@
+package com.northbay.ragchat.service.writebehind;
+
+import java.time.Instant;
+
+/**
+ * A message acknowledged by the write-behind queue but not yet committed
+ * to {@code chat_messages}. Its id is pre-allocated from the table's sequence
+ * so clients receive the final id in the acknowledgement.
+ */
+public record PendingMessage(
+        Long id,
+        Long sessionId,
+        String sender,
+        String content,
+        String context,
+        Instant createdAt) {
+}
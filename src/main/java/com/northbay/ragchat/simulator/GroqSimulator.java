@@ -0,0 +1,125 @@
+package com.northbay.ragchat.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.cli.CommandLineOptions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for Groq's {@code /chat/completions} endpoint, run as its own
+ * process so that its threads and sleeps do not compete with the service
+ * under test. The {@code groq-sim} profile points
+ * {@link com.northbay.ragchat.service.GroqLLMService} at it:
+ * <pre>
+ * java -cp app.jar -Dloader.main=com.northbay.ragchat.simulator.GroqSimulator \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher --port=8090
+ * </pre>
+ * Latency and reply are derived from the prompt alone: a base latency plus a
+ * per-character cost and Gaussian jitter seeded with the prompt's hash. The
+ * same prompt therefore always takes the same time and gets the same answer,
+ * which keeps replay benchmarks repeatable without calling the real provider.
+ * Options: {@code --port}, {@code --base-latency-ms}, {@code --per-char-ms},
+ * {@code --jitter-ms} and {@code --reply-chars}.
+ */
+@Slf4j
+public class GroqSimulator {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long baseLatencyMs;
+    private final double perCharMs;
+    private final double jitterMs;
+    private final int replyChars;
+
+    public GroqSimulator(long baseLatencyMs, double perCharMs, double jitterMs, int replyChars) {
+        this.baseLatencyMs = baseLatencyMs;
+        this.perCharMs = perCharMs;
+        this.jitterMs = jitterMs;
+        this.replyChars = replyChars;
+    }
+
+    public static void main(String[] args) throws IOException {
+        CommandLineOptions options = CommandLineOptions.parse(args);
+        GroqSimulator simulator = new GroqSimulator(
+                options.getLong("base-latency-ms", 400),
+                options.getDouble("per-char-ms", 0.05),
+                options.getDouble("jitter-ms", 100),
+                (int) options.getLong("reply-chars", 600));
+        int port = (int) options.getLong("port", 8090);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        // every request sleeps for its simulated latency, so each gets its own thread
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/chat/completions", simulator::handleCompletion);
+        server.createContext("/models", exchange -> simulator.respond(exchange, 200, Map.of("data", List.of())));
+        server.start();
+        log.info("Groq simulator listening on port {}", port);
+    }
+
+    private void handleCompletion(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, Map.of("error", "POST only"));
+            return;
+        }
+        JsonNode request;
+        try (InputStream body = exchange.getRequestBody()) {
+            request = objectMapper.readTree(body);
+        }
+        try {
+            respond(exchange, 200, complete(request));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, Map.of("error", "interrupted"));
+        }
+    }
+
+    /**
+     * Answers one completion request after its simulated latency.
+     */
+    Map<String, Object> complete(JsonNode request) throws InterruptedException {
+        JsonNode messages = request.path("messages");
+        String prompt = messages.isEmpty() ? "" : messages.get(messages.size() - 1).path("content").asText();
+        Random random = new Random(prompt.hashCode());
+
+        long latencyMs = Math.max(0, Math.round(baseLatencyMs + prompt.length() * perCharMs
+                + random.nextGaussian() * jitterMs));
+        Thread.sleep(latencyMs);
+
+        String seed = "Simulated reply " + Integer.toHexString(prompt.hashCode()) + ". ";
+        String reply = seed.repeat(replyChars / seed.length() + 1).substring(0, replyChars);
+        int promptTokens = prompt.length() / 4;
+        int completionTokens = replyChars / 4;
+        return Map.of(
+                "id", "sim-" + Integer.toHexString(prompt.hashCode()),
+                "object", "chat.completion",
+                "model", request.path("model").asText(),
+                "choices", List.of(Map.of(
+                        "index", 0,
+                        "message", Map.of("role", "assistant", "content", reply),
+                        "finish_reason", "stop")),
+                "usage", Map.of(
+                        "prompt_tokens", promptTokens,
+                        "completion_tokens", completionTokens,
+                        "total_tokens", promptTokens + completionTokens));
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] json = objectMapper.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.northbay.ragchat.util;
+
+/**
+ * Helpers for conditional GET handling with {@code If-None-Match}.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * Returns whether an {@code If-None-Match} header value matches {@code etag},
+     * using the weak comparison required for GET requests (RFC 9110 §13.1.2).
+     *
+     * @param ifNoneMatch the header value; may be {@code null}, {@code *} or a comma-separated list
+     * @param etag        the current quoted ETag
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String current = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
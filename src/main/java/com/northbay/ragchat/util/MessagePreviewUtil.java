@@ -0,0 +1,34 @@
+package com.northbay.ragchat.util;
+
+/**
+ * Builds the short last-message preview stored on chat sessions.
+ */
+public final class MessagePreviewUtil {
+
+    /** Maximum preview length in characters, matching {@code chat_sessions.last_message_preview}. */
+    public static final int MAX_LENGTH = 160;
+
+    private MessagePreviewUtil() {
+    }
+
+    /**
+     * Collapses whitespace and truncates {@code content} to {@link #MAX_LENGTH}
+     * characters, ending with an ellipsis when cut, without splitting a surrogate pair.
+     *
+     * @param content the plain (decoded) message content; may be {@code null}
+     */
+    public static String preview(String content) {
+        if (content == null) {
+            return null;
+        }
+        String text = content.strip().replaceAll("\\s+", " ");
+        if (text.length() <= MAX_LENGTH) {
+            return text;
+        }
+        int end = MAX_LENGTH - 1;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end) + "…";
+    }
+}
@@ -0,0 +1,30 @@
+-- Offline LLM batch jobs, maintained by BatchJobService and worked off by BatchJobRunner.
+-- Items are claimed in chunks with FOR UPDATE SKIP LOCKED and a lease (lease_until), so
+-- any instance can pick up a job and items of a crashed worker are claimed again once
+-- their lease expires. A PENDING item with a future lease_until is waiting for a retry.
+CREATE TABLE IF NOT EXISTS llm_batch_jobs (
+  id BIGSERIAL PRIMARY KEY,
+  status VARCHAR(16) NOT NULL,
+  total_items INT NOT NULL,
+  completed_items INT NOT NULL DEFAULT 0,
+  failed_items INT NOT NULL DEFAULT 0,
+  created_at TIMESTAMPTZ NOT NULL,
+  updated_at TIMESTAMPTZ NOT NULL,
+  finished_at TIMESTAMPTZ
+);
+
+CREATE TABLE IF NOT EXISTS llm_batch_job_items (
+  job_id BIGINT NOT NULL REFERENCES llm_batch_jobs(id) ON DELETE CASCADE,
+  item_index INT NOT NULL,
+  session_id BIGINT NOT NULL,
+  prompt TEXT NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  attempts INT NOT NULL DEFAULT 0,
+  lease_until TIMESTAMPTZ,
+  error TEXT,
+  reply_message_id BIGINT,
+  PRIMARY KEY (job_id, item_index)
+);
+
+CREATE INDEX IF NOT EXISTS idx_llm_batch_job_items_open
+  ON llm_batch_job_items (job_id, item_index) WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,7 @@
+-- Dictionary ids were allocated with max(id) + 1, which fails with a primary key
+-- violation when two instances train at the same time. Let the database assign them.
+ALTER TABLE message_compression_dictionaries
+  ALTER COLUMN id ADD GENERATED BY DEFAULT AS IDENTITY;
+
+SELECT setval(pg_get_serial_sequence('message_compression_dictionaries', 'id'),
+              COALESCE((SELECT max(id) FROM message_compression_dictionaries), 0) + 1, false);
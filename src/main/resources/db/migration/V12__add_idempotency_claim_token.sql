@@ -0,0 +1,3 @@
+-- Identifies the request holding an IN_PROGRESS claim, so a request whose lease expired
+-- and was re-claimed cannot complete or release the newer claim.
+ALTER TABLE idempotency_keys ADD COLUMN IF NOT EXISTS claim_token VARCHAR(36);
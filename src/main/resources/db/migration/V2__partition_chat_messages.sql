@@ -0,0 +1,56 @@
+-- Converts chat_messages into a table range-partitioned by created_at.
+-- The existing heap table is attached as the partition covering everything
+-- before the start of next month, so no rows are moved. Its primary key is
+-- rebuilt on (id, created_at) to match the partitioned parent, and a CHECK
+-- constraint matching the partition bound lets ATTACH skip its validation scan.
+-- Monthly partitions from then on are created (and dropped past retention)
+-- by ChatMessagePartitionManager.
+DO $$
+DECLARE
+    cutover TIMESTAMPTZ := date_trunc('month', now()) + INTERVAL '1 month';
+    next_id BIGINT;
+    legacy_pkey NAME;
+    m INT;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'chat_messages' AND relkind = 'p') THEN
+        RETURN;
+    END IF;
+
+    ALTER TABLE chat_messages RENAME TO chat_messages_legacy;
+    ALTER TABLE chat_messages_legacy ALTER COLUMN id DROP IDENTITY IF EXISTS;
+    ALTER TABLE chat_messages_legacy ALTER COLUMN id DROP DEFAULT;
+    UPDATE chat_messages_legacy SET created_at = 'epoch' WHERE created_at IS NULL;
+    ALTER TABLE chat_messages_legacy ALTER COLUMN created_at SET NOT NULL;
+
+    SELECT conname INTO legacy_pkey FROM pg_constraint
+     WHERE conrelid = 'chat_messages_legacy'::regclass AND contype = 'p';
+    IF legacy_pkey IS NOT NULL THEN
+        EXECUTE format('ALTER TABLE chat_messages_legacy DROP CONSTRAINT %I', legacy_pkey);
+    END IF;
+    ALTER TABLE chat_messages_legacy ADD CONSTRAINT chat_messages_legacy_pkey PRIMARY KEY (id, created_at);
+
+    CREATE TABLE chat_messages (LIKE chat_messages_legacy INCLUDING CONSTRAINTS)
+        PARTITION BY RANGE (created_at);
+
+    SELECT COALESCE(max(id), 0) + 1 INTO next_id FROM chat_messages_legacy;
+    EXECUTE format('CREATE SEQUENCE chat_messages_part_id_seq START WITH %s', next_id);
+    ALTER SEQUENCE chat_messages_part_id_seq OWNED BY chat_messages.id;
+    ALTER TABLE chat_messages ALTER COLUMN id SET DEFAULT nextval('chat_messages_part_id_seq');
+
+    ALTER TABLE chat_messages ADD PRIMARY KEY (id, created_at);
+    ALTER TABLE chat_messages ADD FOREIGN KEY (session_id) REFERENCES chat_sessions (id) ON DELETE CASCADE;
+    CREATE INDEX ON chat_messages (session_id, created_at);
+
+    -- added after the LIKE above so the parent does not inherit it
+    EXECUTE format('ALTER TABLE chat_messages_legacy ADD CONSTRAINT chat_messages_legacy_before_cutover '
+                   'CHECK (created_at < %L)', cutover);
+    EXECUTE format('ALTER TABLE chat_messages ATTACH PARTITION chat_messages_legacy FOR VALUES FROM (MINVALUE) TO (%L)',
+                   cutover);
+
+    FOR m IN 0..2 LOOP
+        EXECUTE format('CREATE TABLE chat_messages_p%s PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                       to_char(cutover + make_interval(months => m), 'YYYYMM'),
+                       cutover + make_interval(months => m),
+                       cutover + make_interval(months => m + 1));
+    END LOOP;
+END $$;
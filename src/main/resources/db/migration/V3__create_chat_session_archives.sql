@@ -0,0 +1,12 @@
+-- Cold tier for inactive sessions, maintained by SessionArchiveService.
+-- Each archived session keeps its chat_sessions row (flagged archived) and has
+-- all of its messages in one compressed payload instead of chat_messages.
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS archived BOOLEAN DEFAULT FALSE;
+
+CREATE TABLE IF NOT EXISTS chat_session_archives (
+  session_id BIGINT PRIMARY KEY REFERENCES chat_sessions(id) ON DELETE CASCADE,
+  message_count INTEGER,
+  codec VARCHAR(16),
+  payload BYTEA,
+  archived_at TIMESTAMPTZ NOT NULL
+);
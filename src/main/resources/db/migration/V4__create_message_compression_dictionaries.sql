@@ -0,0 +1,10 @@
+-- Preset dictionaries for compressed message content/context, maintained by
+-- CompressionDictionaryTrainer. Rows are append-only: compressed values refer
+-- to the dictionary id they were written with.
+CREATE TABLE IF NOT EXISTS message_compression_dictionaries (
+  id INTEGER PRIMARY KEY,
+  dictionary BYTEA NOT NULL,
+  sample_count INTEGER,
+  sample_ratio DOUBLE PRECISION,
+  created_at TIMESTAMPTZ NOT NULL
+);
@@ -0,0 +1,2 @@
+-- Per-session change counter backing the ETags of message pages and session lists.
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- Stored responses for Idempotency-Key retries, maintained by IdempotencyService.
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  id VARCHAR(64) PRIMARY KEY,
+  request_hash VARCHAR(64) NOT NULL,
+  status VARCHAR(16) NOT NULL,
+  response_body TEXT,
+  created_at TIMESTAMPTZ NOT NULL,
+  expires_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,27 @@
+-- Denormalized activity summary, maintained with every stored message, so the
+-- session list is an index-ordered scan of chat_sessions alone.
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS last_message_at TIMESTAMPTZ;
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS message_count INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS last_message_preview VARCHAR(160);
+
+-- Backfill from existing messages. Compressed contents (prefixed with chr(1))
+-- cannot be decoded here; those sessions get their preview with the next message.
+UPDATE chat_sessions cs
+SET message_count = a.message_count,
+    last_message_at = a.last_message_at,
+    last_message_preview = CASE WHEN left(a.last_content, 1) = chr(1) THEN NULL
+                                ELSE left(regexp_replace(a.last_content, '\s+', ' ', 'g'), 160) END
+FROM (
+    SELECT session_id,
+           count(*) AS message_count,
+           max(created_at) AS last_message_at,
+           (array_agg(content ORDER BY created_at DESC, id DESC))[1] AS last_content
+    FROM chat_messages
+    GROUP BY session_id
+) a
+WHERE a.session_id = cs.id;
+
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_activity
+    ON chat_sessions (last_message_at DESC NULLS LAST, id DESC);
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_owner_activity
+    ON chat_sessions (owner, last_message_at DESC NULLS LAST, id DESC);
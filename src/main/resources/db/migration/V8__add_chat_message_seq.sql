@@ -0,0 +1,36 @@
+-- Per-session message sequence numbers: chat_sessions.last_seq is the counter,
+-- advanced atomically in the transaction that inserts the messages, so every
+-- session's seq values are gap-free and unique.
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS last_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS seq BIGINT;
+
+UPDATE chat_messages m
+SET seq = n.seq
+FROM (SELECT id, created_at, row_number() OVER (PARTITION BY session_id ORDER BY created_at, id) AS seq
+      FROM chat_messages) n
+WHERE m.id = n.id AND m.created_at = n.created_at AND m.seq IS NULL;
+
+UPDATE chat_sessions cs
+SET last_seq = s.last_seq
+FROM (SELECT session_id, max(seq) AS last_seq FROM chat_messages GROUP BY session_id) s
+WHERE s.session_id = cs.id;
+
+-- archived sessions: their archives predate seq and are numbered in order on restore
+UPDATE chat_sessions cs
+SET last_seq = a.message_count
+FROM chat_session_archives a
+WHERE a.session_id = cs.id AND a.message_count IS NOT NULL;
+
+ALTER TABLE chat_messages ALTER COLUMN seq SET NOT NULL;
+
+-- A unique index on a partitioned table must include the partition key, so on
+-- the partitioned layout (V2) uniqueness comes from the counter and the index
+-- only serves ordered and "after seq" reads.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'chat_messages' AND relkind = 'p') THEN
+        CREATE INDEX IF NOT EXISTS idx_chat_messages_session_seq ON chat_messages (session_id, seq);
+    ELSE
+        CREATE UNIQUE INDEX IF NOT EXISTS idx_chat_messages_session_seq ON chat_messages (session_id, seq);
+    END IF;
+END $$;
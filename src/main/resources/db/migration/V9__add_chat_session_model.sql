@@ -0,0 +1,2 @@
+-- Optional per-session LLM model; NULL lets LlmModelRouter choose per prompt.
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS llm_model VARCHAR(100);
@@ -0,0 +1,56 @@
+package com.northbay.ragchat.capture;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ReplayReport} class.
+ * <p>
+ * Verifies that rejections are counted apart from successes and errors, that
+ * their fast responses do not improve the latency percentiles, and that a
+ * rising rejection rate is reported as a regression.
+ */
+class ReplayReportTest {
+
+    private static final String ROUTE = "POST /api/v1/chat/sessions/{id}/messages";
+
+    @Test
+    void shouldComputePercentilesOverSuccessfulResponsesOnly() {
+        ReplayReport.RouteStats stats = ReplayReport.RouteStats.of(List.of(300.0, 100.0, 200.0), 5, 1);
+
+        assertThat(stats.count()).isEqualTo(3);
+        assertThat(stats.rejected()).isEqualTo(5);
+        assertThat(stats.errors()).isEqualTo(1);
+        assertThat(stats.p50()).isEqualTo(200.0);
+        assertThat(stats.max()).isEqualTo(300.0);
+        assertThat(stats.rejectionRate()).isEqualTo(5.0 / 9);
+        assertThat(stats.errorRate()).isEqualTo(1.0 / 9);
+    }
+
+    @Test
+    void shouldReportRisingRejectionRateSeparatelyFromErrors() {
+        ReplayReport baseline = report(ReplayReport.RouteStats.of(List.of(100.0, 100.0), 0, 0));
+        ReplayReport now = report(ReplayReport.RouteStats.of(List.of(100.0), 1, 0));
+
+        assertThat(now.regressionsAgainst(baseline, 0.2, 5))
+                .containsExactly(ROUTE + ": rejection rate 0.0% -> 50.0%");
+    }
+
+    @Test
+    void shouldReportLatencyRegressionBeyondTolerance() {
+        ReplayReport baseline = report(ReplayReport.RouteStats.of(List.of(100.0), 0, 0));
+
+        assertThat(report(ReplayReport.RouteStats.of(List.of(115.0), 0, 0))
+                .regressionsAgainst(baseline, 0.2, 5)).isEmpty();
+        assertThat(report(ReplayReport.RouteStats.of(List.of(130.0), 0, 0))
+                .regressionsAgainst(baseline, 0.2, 5)).hasSize(2);
+    }
+
+    private static ReplayReport report(ReplayReport.RouteStats stats) {
+        return new ReplayReport(1.0, Map.of(ROUTE, stats));
+    }
+}
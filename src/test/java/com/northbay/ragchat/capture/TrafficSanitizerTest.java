@@ -0,0 +1,50 @@
+package com.northbay.ragchat.capture;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link TrafficSanitizer} class.
+ * <p>
+ * Verifies that user data is replaced by same-length pseudonyms that stay
+ * equal for equal values, while fields that select code paths are kept.
+ */
+class TrafficSanitizerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TrafficSanitizer sanitizer = new TrafficSanitizer(objectMapper, "test-salt");
+
+    @Test
+    void shouldReplaceContentButKeepSenderAndShape() throws Exception {
+        String body = "{\"sender\":\"user\",\"content\":\"My card number is 4111\",\"context\":null}";
+
+        JsonNode sanitized = objectMapper.readTree(sanitizer.sanitizeBody(body));
+
+        assertThat(sanitized.get("sender").asText()).isEqualTo("user");
+        assertThat(sanitized.get("content").asText())
+                .hasSize("My card number is 4111".length())
+                .doesNotContain("4111");
+        assertThat(sanitized.get("context").isNull()).isTrue();
+    }
+
+    @Test
+    void shouldMapEqualValuesToEqualPseudonyms() {
+        String first = sanitizer.sanitizeQuery("owner=alice&page=0&size=20");
+        String second = sanitizer.sanitizeQuery("owner=alice&page=1&size=20");
+
+        assertThat(first).startsWith("owner=").endsWith("&page=0&size=20").doesNotContain("alice");
+        assertThat(first.substring(0, first.indexOf('&'))).isEqualTo(second.substring(0, second.indexOf('&')));
+        assertThat(sanitizer.pseudonym("alice")).isNotEqualTo(sanitizer.pseudonym("bob"));
+    }
+
+    @Test
+    void shouldAliasApiKeys() {
+        assertThat(sanitizer.keyAlias("secret-key")).startsWith("key-").doesNotContain("secret");
+        assertThat(sanitizer.keyAlias("secret-key")).isEqualTo(sanitizer.keyAlias("secret-key"));
+        assertThat(new TrafficSanitizer(objectMapper, "other-salt").keyAlias("secret-key"))
+                .isNotEqualTo(sanitizer.keyAlias("secret-key"));
+    }
+}
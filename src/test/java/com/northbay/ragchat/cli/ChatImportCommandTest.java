@@ -0,0 +1,67 @@
+package com.northbay.ragchat.cli;
+
+import com.northbay.ragchat.dto.ChatImportResult;
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.service.ChatImportService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ChatImportCommand} class.
+ * <p>
+ * Verifies that the format is inferred from the file name, that gzipped files
+ * are decompressed, and that a failed import is reported through the exit
+ * code instead of terminating the JVM.
+ */
+class ChatImportCommandTest {
+
+    private final ChatImportService importService = mock(ChatImportService.class);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void shouldImportGzippedCsvAndExitWithZero() throws Exception {
+        Path file = dir.resolve("history.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write("record_type,ref\n".getBytes(StandardCharsets.UTF_8));
+        }
+        when(importService.importStream(any(), eq(ChatImportService.Format.CSV))).thenAnswer(inv -> {
+            assertThat(new String(inv.<InputStream>getArgument(0).readAllBytes(), StandardCharsets.UTF_8))
+                    .isEqualTo("record_type,ref\n");
+            return new ChatImportResult(1, 0, 0, 0, 1, 1000);
+        });
+        ChatImportCommand command = new ChatImportCommand(importService, file.toString(), "");
+
+        command.run(new DefaultApplicationArguments());
+
+        verify(importService).importStream(any(), eq(ChatImportService.Format.CSV));
+        assertThat(command.getExitCode()).isZero();
+    }
+
+    @Test
+    void shouldReportFailedImportThroughExitCode() throws Exception {
+        Path file = dir.resolve("history.ndjson");
+        Files.writeString(file, "{\"type\":\n");
+        when(importService.importStream(any(), eq(ChatImportService.Format.NDJSON)))
+                .thenThrow(new ApiException("INVALID_INPUT", "Malformed JSON on line 1"));
+        ChatImportCommand command = new ChatImportCommand(importService, file.toString(), "");
+
+        command.run(new DefaultApplicationArguments());
+
+        assertThat(command.getExitCode()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,36 @@
+package com.northbay.ragchat.config;
+
+import com.northbay.ragchat.dto.ChatMessageDTO;
+import com.northbay.ragchat.service.writebehind.PendingMessage;
+import org.junit.jupiter.api.Test;
+import org.openapitools.jackson.nullable.JsonNullable;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link AppRuntimeHints} class.
+ * <p>
+ * Verifies that the reflectively used types, proxies and resources are registered for native images.
+ */
+class AppRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    void shouldRegisterReflectionProxyAndResourceHints() {
+        new AppRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertThat(RuntimeHintsPredicates.reflection().onType(ChatMessageDTO.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(PendingMessage.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(JsonNullable.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.proxies().forInterfaces(Connection.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.proxies().forInterfaces(PreparedStatement.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource()
+                .forResource("static/openapi/northbay-chat-service-v1.yaml")).accepts(hints);
+    }
+}
@@ -0,0 +1,69 @@
+package com.northbay.ragchat.config;
+
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.TraceContext;
+import io.micrometer.tracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link RequestIdFilter} class.
+ * <p>
+ * Verifies that the trace id becomes the request id unless the client sent one.
+ */
+class RequestIdFilterTest {
+
+    private final Tracer tracer = mock(Tracer.class);
+    private final Span span = mock(Span.class);
+    private final RequestIdFilter filter = new RequestIdFilter(tracer);
+
+    @BeforeEach
+    void setUp() {
+        TraceContext context = mock(TraceContext.class);
+        when(context.traceId()).thenReturn("4bf92f3577b34da6a3ce929d0e0e4736");
+        when(span.context()).thenReturn(context);
+        when(tracer.currentSpan()).thenReturn(span);
+    }
+
+    @Test
+    void shouldUseTraceIdAsRequestId() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), response,
+                (req, res) -> seen.set(RequestIdFilter.currentRequestId()));
+
+        assertThat(seen.get()).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(response.getHeader("X-Request-Id")).isEqualTo("4bf92f3577b34da6a3ce929d0e0e4736");
+        assertThat(RequestIdFilter.currentRequestId()).isNull();
+    }
+
+    @Test
+    void shouldKeepClientRequestIdAndTagTheSpan() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+        request.addHeader("X-Request-Id", "client-42");
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> seen.set(RequestIdFilter.currentRequestId()));
+
+        assertThat(seen.get()).isEqualTo("client-42");
+        verify(span).tag("request.id", "client-42");
+    }
+
+    @Test
+    void shouldGenerateRequestIdWithoutTrace() throws Exception {
+        when(tracer.currentSpan()).thenReturn(null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/sessions"), response, (req, res) -> { });
+
+        assertThat(response.getHeader("X-Request-Id")).hasSize(36);
+    }
+}
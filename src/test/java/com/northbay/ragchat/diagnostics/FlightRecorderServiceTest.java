@@ -0,0 +1,55 @@
+package com.northbay.ragchat.diagnostics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link FlightRecorderService} class.
+ * <p>
+ * Verifies the recording lifecycle and that dumps contain the service's own events.
+ */
+class FlightRecorderServiceTest {
+
+    private final FlightRecorderService service = new FlightRecorderService(false, "default", 5, 50);
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void shouldDumpRecordedEvents() throws Exception {
+        assertThat(service.status().running()).isFalse();
+        assertThatThrownBy(service::dump).isInstanceOf(IllegalStateException.class);
+
+        assertThat(service.start(null).running()).isTrue();
+        RateLimitEvent.record("api-key", "/api/v1/chat-sessions", false, 0, "bucket_empty");
+        service.stop();
+
+        Path dump = service.dump();
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                    .filter(e -> e.getEventType().getName().equals("com.northbay.ragchat.RateLimit"))
+                    .toList();
+            assertThat(events).hasSize(1);
+            assertThat(events.get(0).getString("limiter")).isEqualTo("api-key");
+            assertThat(events.get(0).getBoolean("allowed")).isFalse();
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+        assertThat(service.status().running()).isFalse();
+    }
+
+    @Test
+    void shouldRejectUnknownSettings() {
+        assertThatThrownBy(() -> service.start("no-such-settings")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
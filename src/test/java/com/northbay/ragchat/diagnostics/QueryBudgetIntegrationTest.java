@@ -0,0 +1,137 @@
+package com.northbay.ragchat.diagnostics;
+
+import com.northbay.ragchat.controller.BatchJobsController;
+import com.northbay.ragchat.controller.ChatMessagesController;
+import com.northbay.ragchat.controller.ChatSessionsController;
+import com.northbay.ragchat.service.LlmCompletion;
+import com.northbay.ragchat.service.routing.LlmModelRouter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Integration tests for the {@link QueryBudget} declarations of the controllers.
+ * <p>
+ * Runs every budgeted endpoint against PostgreSQL with {@code app.sql.enforce-budgets=true},
+ * each in its most expensive case, and requires every budget to equal the
+ * number of statements measured for its handler. A budget that is too small
+ * fails the request; one that is too large fails the comparison.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.sql.enforce-budgets=true",
+        "spring.flyway.enabled=true",
+        "spring.jpa.properties.hibernate.hbm2ddl.extra_physical_table_types=PARTITIONED TABLE",
+        "app.api-keys=test-key",
+        "app.warm-up.enabled=false",
+        "app.batch-jobs.enabled=false",
+        "app.jfr.always-on=false",
+        "management.tracing.enabled=false",
+        "groq.api.key=unused"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class QueryBudgetIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final List<Class<?>> CONTROLLERS =
+            List.of(ChatSessionsController.class, ChatMessagesController.class, BatchJobsController.class);
+
+    @MockBean
+    private LlmModelRouter modelRouter;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = webTestClient.mutate().defaultHeader("X-API-KEY", "test-key").build();
+        when(modelRouter.complete(any(), any())).thenReturn(new LlmCompletion("Hi there", "test-model", 3, 2));
+    }
+
+    @Test
+    void shouldSpendExactlyTheDeclaredBudgetOnEveryEndpoint() {
+        Number sessionId = body(client.post().uri("/api/v1/chat-sessions")
+                .bodyValue(Map.of("title", "Budget", "owner", "rpark"))
+                .exchange().expectStatus().isCreated()).get("id");
+
+        client.post().uri("/api/v1/chat-sessions/{id}/messages", sessionId)
+                .bodyValue(Map.of("sender", "system", "content", "You are helpful."))
+                .exchange().expectStatus().isCreated();
+        // a user turn stores the question and the answer, and claims and completes the idempotency key
+        client.post().uri("/api/v1/chat-sessions/{id}/messages", sessionId)
+                .header("Idempotency-Key", "budget-1")
+                .bodyValue(Map.of("sender", "user", "content", "Hello"))
+                .exchange().expectStatus().isCreated();
+
+        // a full first page needs the count query; the version is not cached after the last write
+        String etag = client.get().uri("/api/v1/chat-sessions/{id}/messages?page=0&size=1", sessionId)
+                .exchange().expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+        client.get().uri("/api/v1/chat-sessions/{id}/messages?page=0&size=1", sessionId)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange().expectStatus().isNotModified();
+
+        client.patch().uri("/api/v1/chat-sessions/{id}", sessionId)
+                .bodyValue(Map.of("title", "Renamed", "favorite", true))
+                .exchange().expectStatus().isOk();
+        client.get().uri("/api/v1/chat-sessions?owner=rpark").exchange().expectStatus().isOk();
+        client.get().uri("/api/v1/chat-sessions/favorites").exchange().expectStatus().isOk();
+
+        Number jobId = body(client.post().uri("/api/v1/batch-jobs")
+                .bodyValue(Map.of("items", List.of(Map.of("sessionId", sessionId, "prompt", "Summarize"))))
+                .exchange().expectStatus().isAccepted()).get("id");
+        client.get().uri("/api/v1/batch-jobs/{id}", jobId).exchange().expectStatus().isOk();
+        client.get().uri("/api/v1/batch-jobs/{id}/items", jobId).exchange().expectStatus().isOk();
+
+        client.delete().uri("/api/v1/chat-sessions/{id}", sessionId).exchange().expectStatus().isNoContent();
+        client.delete().uri("/api/v1/chat-sessions/{id}", sessionId).exchange().expectStatus().isNotFound();
+
+        List<String> mismatches = new ArrayList<>();
+        for (Class<?> controller : CONTROLLERS) {
+            for (Method method : controller.getDeclaredMethods()) {
+                QueryBudget budget = method.getAnnotation(QueryBudget.class);
+                if (budget == null) continue;
+                String handler = controller.getSimpleName() + "." + method.getName();
+                DistributionSummary statements = meterRegistry.find("http.server.db.statements")
+                        .tag("handler", handler).summary();
+                assertThat(statements).as("requests measured for %s", handler).isNotNull();
+                int measured = (int) statements.max();
+                if (measured != budget.value()) {
+                    mismatches.add(handler + ": @QueryBudget(" + budget.value() + "), measured " + measured);
+                }
+            }
+        }
+        assertThat(mismatches).as("budgets differing from the measured statement counts").isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> body(WebTestClient.ResponseSpec response) {
+        return response.expectBody(Map.class).returnResult().getResponseBody();
+    }
+}
@@ -0,0 +1,97 @@
+package com.northbay.ragchat.diagnostics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link StatementCountingDataSource} class.
+ * <p>
+ * Verifies per-request statement and row counting, bind-shape descriptions
+ * and query budget enforcement.
+ */
+class StatementCountingDataSourceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private DataSource target;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+        when(statement.executeUpdate()).thenReturn(3);
+        when(resultSet.next()).thenReturn(true, true, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SqlStatementStats current = SqlStatementStats.current();
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    @Test
+    void shouldCountStatementsAndRowsOfTheCurrentScope() throws Exception {
+        DataSource dataSource = new StatementCountingDataSource(target, registry, 200, false);
+
+        try (SqlStatementStats stats = SqlStatementStats.open()) {
+            try (Connection connection = dataSource.getConnection()) {
+                PreparedStatement select = connection.prepareStatement("SELECT * FROM chat_messages WHERE session_id = ?");
+                select.setLong(1, 7L);
+                ResultSet rs = select.executeQuery();
+                while (rs.next()) {
+                    // read rows
+                }
+                connection.prepareStatement("UPDATE chat_sessions SET title = ?").executeUpdate();
+            }
+
+            assertThat(stats.statements()).isEqualTo(2);
+            assertThat(stats.rows()).isEqualTo(5);
+        }
+        assertThat(SqlStatementStats.current()).isNull();
+        assertThat(registry.get("db.statements").tag("kind", "query").timer().count()).isEqualTo(1);
+        assertThat(registry.get("db.statements").tag("kind", "update").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFailStatementsBeyondTheBudgetWhenEnforced() throws Exception {
+        DataSource dataSource = new StatementCountingDataSource(target, registry, 200, true);
+
+        try (SqlStatementStats stats = SqlStatementStats.open();
+             Connection connection = dataSource.getConnection()) {
+            stats.budget(1, "ChatMessagesController.getMessages");
+            connection.prepareStatement("SELECT 1").executeQuery();
+
+            assertThatThrownBy(() -> connection.prepareStatement("SELECT 2").executeQuery())
+                    .isInstanceOf(QueryBudgetExceededException.class)
+                    .hasMessageContaining("ChatMessagesController.getMessages")
+                    .hasMessageContaining("SELECT 2");
+            assertThat(stats.statements()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldDescribeBindShapesWithoutValues() {
+        assertThat(StatementCountingDataSource.shape("secret", "setString")).isEqualTo("String(6)");
+        assertThat(StatementCountingDataSource.shape(42L, "setLong")).isEqualTo("Long");
+        assertThat(StatementCountingDataSource.shape(12, "setNull")).isEqualTo("null");
+        assertThat(StatementCountingDataSource.describe(Map.of(1, "Long"))).isEqualTo("1:Long");
+    }
+}
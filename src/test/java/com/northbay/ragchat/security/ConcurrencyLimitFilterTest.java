@@ -0,0 +1,56 @@
+package com.northbay.ragchat.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ConcurrencyLimitFilter} class.
+ * <p>
+ * Verifies that timeouts and upstream failures shrink the limit, while
+ * {@code 503}s the service answers on purpose to shed load do not.
+ */
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimitFilter filter =
+            new ConcurrencyLimitFilter(meterRegistry, true, 2, 20, 64, 50, 200, 4, 0.2, 600, 1.5);
+
+    @Test
+    void shouldShrinkTheLimitOnGatewayTimeouts() throws Exception {
+        run(HttpServletResponse.SC_GATEWAY_TIMEOUT, false);
+
+        assertThat(crudLimit()).isEqualTo(45);
+        assertThat(meterRegistry.get("http.concurrency.in.flight").tag("route", "crud").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldNotShrinkTheLimitOnDeliberateLoadShedding() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            run(HttpServletResponse.SC_SERVICE_UNAVAILABLE, true);
+        }
+
+        assertThat(crudLimit()).isEqualTo(50);
+        assertThat(meterRegistry.get("http.concurrency.in.flight").tag("route", "crud").gauge().value()).isZero();
+    }
+
+    private void run(int status, boolean loadShed) throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/api/v1/chat-sessions");
+        MockHttpServletResponse res = new MockHttpServletResponse();
+
+        filter.doFilter(req, res, (request, response) -> {
+            if (loadShed) {
+                request.setAttribute(ConcurrencyLimitFilter.LOAD_SHED_ATTRIBUTE, Boolean.TRUE);
+            }
+            ((HttpServletResponse) response).setStatus(status);
+        });
+    }
+
+    private double crudLimit() {
+        return meterRegistry.get("http.concurrency.limit").tag("route", "crud").gauge().value();
+    }
+}
@@ -0,0 +1,102 @@
+package com.northbay.ragchat.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link GradientConcurrencyLimiter} class.
+ * <p>
+ * Verifies that requests beyond the limit are shed and that the limit grows
+ * under steady latency and shrinks when latency rises or requests are dropped,
+ * but not when they are ignored.
+ */
+class GradientConcurrencyLimiterTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(10, 2, 100, 0.5, 100, 1.5);
+
+    @Test
+    void shouldShedRequestsBeyondTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldGrowWhileSaturatedAndLatencyIsSteady() {
+        saturateWith(20 * MS, 20);
+
+        assertThat(limiter.getLimit()).isGreaterThan(10);
+    }
+
+    @Test
+    void shouldShrinkWhenLatencyRises() {
+        saturateWith(20 * MS, 50);
+        int healthy = limiter.getLimit();
+        while (limiter.tryAcquire()) {
+            // fill up
+        }
+
+        for (int i = 0; i < 10; i++) {
+            limiter.release(200 * MS, false);
+        }
+
+        assertThat(limiter.getLimit()).isLessThan(healthy / 2);
+        assertThat(limiter.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void shouldBackOffOnDropsButNotBelowMinimum() {
+        limiter.tryAcquire();
+        limiter.release(5000 * MS, true);
+        assertThat(limiter.getLimit()).isEqualTo(9);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(5000 * MS, true);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFreeIgnoredSlotsWithoutChangingTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+        }
+
+        for (int i = 0; i < 10; i++) {
+            limiter.ignore();
+        }
+
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldNotGrowWhileMostlyIdle() {
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.release(20 * MS, false);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    /** Fills the current limit, then completes every request with {@code rtt}, {@code rounds} times. */
+    private void saturateWith(long rtt, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            int admitted = 0;
+            while (limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(rtt, false);
+            }
+        }
+    }
+}
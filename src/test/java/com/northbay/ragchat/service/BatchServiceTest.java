@@ -0,0 +1,131 @@
+package com.northbay.ragchat.service;
+
+import com.northbay.ragchat.model.*;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link BatchService} class.
+ * <p>
+ * Verifies that a failing operation rolls back a transactional batch and
+ * skips the rest, and that a batch calling the LLM keeps running past a
+ * failed operation.
+ */
+@ExtendWith(MockitoExtension.class)
+class BatchServiceTest {
+
+    @Mock
+    private ChatService chatService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BatchService batchService;
+
+    @BeforeEach
+    void setUp() {
+        batchService = new BatchService(chatService, transactionManager, 100);
+    }
+
+    @Test
+    void shouldCommitTransactionalBatchWhenAllOperationsSucceed() {
+        TransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        when(chatService.createChatSession(any())).thenReturn(session(7));
+
+        BatchResponse response = batchService.execute(List.of(create("First"), addMessage(0, "ai")));
+
+        assertThat(response.getTransactional()).isTrue();
+        assertThat(response.getCommitted()).isTrue();
+        assertThat(response.getResults()).extracting(BatchOperationResult::getStatus).containsExactly(201, 201);
+        verify(chatService).addMessage(eq(7L), any());
+        verify(transactionManager).commit(status);
+        verify(transactionManager, never()).rollback(any());
+    }
+
+    @Test
+    void shouldRollBackTransactionalBatchOnFirstFailure() {
+        TransactionStatus status = new SimpleTransactionStatus();
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        when(chatService.createChatSession(any())).thenReturn(session(7));
+        doThrow(new EntityNotFoundException("Chat session not found")).when(chatService).deleteChatSession(99L);
+
+        BatchOperation delete = new BatchOperation();
+        delete.setOp(BatchOperation.OpEnum.DELETE_SESSION);
+        delete.setSessionId(99);
+
+        BatchResponse response = batchService.execute(List.of(create("First"), delete, addMessage(0, "ai")));
+
+        assertThat(response.getCommitted()).isFalse();
+        assertThat(response.getResults()).extracting(BatchOperationResult::getStatus).containsExactly(201, 404, 424);
+        assertThat(response.getResults().get(1).getErrorCode()).isEqualTo("SESSION_NOT_FOUND");
+        verify(chatService, never()).addMessage(any(), any());
+        verify(transactionManager).rollback(status);
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void shouldContinueNonTransactionalBatchAfterFailure() {
+        when(chatService.createChatSession(any())).thenReturn(session(7));
+        when(chatService.addMessage(eq(7L), any())).thenThrow(new IllegalStateException("boom"));
+
+        BatchOperation invalid = new BatchOperation();
+        invalid.setOp(BatchOperation.OpEnum.CREATE_SESSION);
+
+        BatchResponse response = batchService.execute(List.of(
+                create("First"), addMessage(0, "user"), invalid, create("Second")));
+
+        assertThat(response.getTransactional()).isFalse();
+        assertThat(response.getCommitted()).isTrue();
+        assertThat(response.getResults()).extracting(BatchOperationResult::getStatus)
+                .containsExactly(201, 500, 400, 201);
+        verify(chatService, times(2)).createChatSession(any());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void shouldSkipOperationsReferringToFailedOne() {
+        when(chatService.createChatSession(any())).thenThrow(new IllegalStateException("boom"));
+
+        BatchResponse response = batchService.execute(List.of(create("First"), addMessage(0, "user")));
+
+        assertThat(response.getResults()).extracting(BatchOperationResult::getStatus).containsExactly(500, 424);
+        verify(chatService, never()).addMessage(any(), any());
+    }
+
+    private static BatchOperation create(String title) {
+        BatchOperation op = new BatchOperation();
+        op.setOp(BatchOperation.OpEnum.CREATE_SESSION);
+        op.setTitle(title);
+        return op;
+    }
+
+    private static BatchOperation addMessage(int sessionRef, String sender) {
+        BatchOperation op = new BatchOperation();
+        op.setOp(BatchOperation.OpEnum.ADD_MESSAGE);
+        op.setSessionRef(sessionRef);
+        op.setSender(sender);
+        op.setContent("Hello");
+        return op;
+    }
+
+    private static ChatSessionDTO session(int id) {
+        ChatSessionDTO session = new ChatSessionDTO();
+        session.setId(id);
+        return session;
+    }
+}
@@ -0,0 +1,230 @@
+package com.northbay.ragchat.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.entity.ChatMessage;
+import com.northbay.ragchat.service.compression.MessagePayloadCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ChatExportService} class.
+ * <p>
+ * Verifies that rows are read through a forward-only cursor inside a
+ * read-only transaction and written to the stream while the query is still
+ * running, that messages are exported in sequence order with their
+ * {@code seq}, that archived sessions are exported from their archive, and
+ * that a failing stream aborts the export.
+ */
+class ChatExportServiceTest {
+
+    private static final Instant CREATED = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SessionArchiveService archiveService = mock(SessionArchiveService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+    private ChatExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        exportService = new ChatExportService(jdbcTemplate, transactionManager, objectMapper,
+                new MessagePayloadCodec(null, false, 64, 6), archiveService, 250);
+    }
+
+    @Test
+    void shouldStreamRowsFromForwardOnlyCursor() throws Exception {
+        for (long id = 1; id <= 2000; id++) {
+            rows.add(row(1L, false, id, "user", "Message " + id + " ".repeat(100)));
+        }
+        AtomicLong writtenDuringQuery = new AtomicLong();
+        CountingStream out = new CountingStream();
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        doAnswer(inv -> {
+            inv.<PreparedStatementCreator>getArgument(0).createPreparedStatement(connection);
+            replay(inv.getArgument(1));
+            writtenDuringQuery.set(out.bytes);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        long messages = exportService.exportSession(1L, out);
+
+        assertThat(messages).isEqualTo(2000);
+        verify(connection).prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY));
+        verify(statement).setFetchSize(250);
+        verify(statement).setObject(1, 1L);
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager).getTransaction(definition.capture());
+        assertThat(definition.getValue().isReadOnly()).isTrue();
+        // most of the export reached the stream before the cursor was exhausted
+        assertThat(writtenDuringQuery.get()).isGreaterThan(out.bytes / 2);
+        verifyNoInteractions(archiveService);
+    }
+
+    @Test
+    void shouldExportArchivedSessionsFromTheirArchive() throws Exception {
+        rows.add(row(1L, true, null, null, null));
+        rows.add(row(2L, false, 10L, "user", "Live question"));
+        when(archiveService.read(1L)).thenReturn(List.of(
+                archived(3L, "user", "Archived question"), archived(4L, "assistant", "Archived answer")));
+        doAnswer(inv -> {
+            replay(inv.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long messages = exportService.exportOwner("alice", out);
+
+        assertThat(messages).isEqualTo(3);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            if (!line.isBlank()) lines.add(objectMapper.readTree(line));
+        }
+        assertThat(lines).extracting(l -> l.get("type").asText() + ":" + l.get("id").asLong())
+                .containsExactly("session:1", "message:3", "message:4", "session:2", "message:10");
+        assertThat(lines.get(1).get("sessionId").asLong()).isEqualTo(1L);
+        assertThat(lines.get(2).get("content").asText()).isEqualTo("Archived answer");
+        assertThat(lines.get(2).get("seq").asLong()).isEqualTo(2L);
+        assertThat(lines.get(4).get("createdAt").asText()).isEqualTo(CREATED.toString());
+        verify(archiveService, never()).read(2L);
+    }
+
+    @Test
+    void shouldExportMessagesInSeqOrderWithTheirSeq() throws Exception {
+        // write-behind allocated the later message a lower id
+        rows.add(row(1L, false, 20L, 1L, "user", "First"));
+        rows.add(row(1L, false, 12L, 2L, "tool", "Second"));
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(mock(PreparedStatement.class));
+        doAnswer(inv -> {
+            inv.<PreparedStatementCreator>getArgument(0).createPreparedStatement(connection);
+            replay(inv.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportSession(1L, out);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(connection).prepareStatement(sql.capture(), anyInt(), anyInt());
+        assertThat(sql.getValue()).contains("ORDER BY s.id, m.seq NULLS FIRST, m.id");
+        String[] lines = out.toString().split("\n");
+        assertThat(objectMapper.readTree(lines[1]).get("seq").asLong()).isEqualTo(1L);
+        assertThat(objectMapper.readTree(lines[2]).get("seq").asLong()).isEqualTo(2L);
+        assertThat(objectMapper.readTree(lines[2]).get("id").asLong()).isEqualTo(12L);
+    }
+
+    @Test
+    void shouldAbortWhenTheStreamFails() {
+        for (long id = 1; id <= 2000; id++) {
+            rows.add(row(1L, false, id, "user", "Message " + id + " ".repeat(100)));
+        }
+        doAnswer(inv -> {
+            replay(inv.getArgument(1));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThatThrownBy(() -> exportService.exportSession(1L, disconnected))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Broken pipe");
+    }
+
+    /** Feeds {@link #rows} to the callback one at a time, as JdbcTemplate does with a cursor. */
+    private void replay(RowCallbackHandler handler) throws Exception {
+        Map<String, Object> current = new HashMap<>();
+        boolean[] lastNull = new boolean[1];
+        ResultSet rs = mock(ResultSet.class, inv -> {
+            if (inv.getMethod().getName().equals("wasNull")) return lastNull[0];
+            if (inv.getArguments().length == 0 || !(inv.getArgument(0) instanceof String)) return null;
+            Object value = current.get(inv.<String>getArgument(0));
+            lastNull[0] = value == null;
+            return switch (inv.getMethod().getName()) {
+                case "getLong" -> value == null ? 0L : (Long) value;
+                case "getBoolean" -> value != null && (Boolean) value;
+                default -> value;
+            };
+        });
+        for (Map<String, Object> row : rows) {
+            current.clear();
+            current.putAll(row);
+            handler.processRow(rs);
+        }
+    }
+
+    private static Map<String, Object> row(Long sessionId, boolean archived, Long messageId,
+                                           String sender, String content) {
+        return row(sessionId, archived, messageId, messageId, sender, content);
+    }
+
+    private static Map<String, Object> row(Long sessionId, boolean archived, Long messageId, Long seq,
+                                           String sender, String content) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("s_id", sessionId);
+        row.put("title", "Session " + sessionId);
+        row.put("owner", "alice");
+        row.put("archived", archived);
+        row.put("s_created_at", Timestamp.from(CREATED));
+        row.put("m_id", messageId);
+        row.put("m_seq", seq);
+        row.put("sender", sender);
+        row.put("content", content);
+        row.put("m_created_at", messageId == null ? null : Timestamp.from(CREATED));
+        return row;
+    }
+
+    private static ChatMessage archived(Long id, String sender, String content) {
+        return ChatMessage.builder().id(id).seq(id - 2).sender(sender).content(content).createdAt(CREATED).build();
+    }
+
+    private static final class CountingStream extends OutputStream {
+        volatile long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
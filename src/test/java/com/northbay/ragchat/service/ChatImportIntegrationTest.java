@@ -0,0 +1,164 @@
+package com.northbay.ragchat.service;
+
+import com.northbay.ragchat.dto.ChatImportResult;
+import com.northbay.ragchat.exception.ApiException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for the {@link ChatImportService} class.
+ * <p>
+ * Runs imports against PostgreSQL and verifies that both formats are copied
+ * through the staging table into new sessions, that source ids colliding with
+ * existing sessions are remapped instead of overwriting them, that messages
+ * can only be attached to sessions of the same import, and that a failed
+ * import leaves nothing behind.
+ */
+@SpringBootTest(properties = {
+        "spring.flyway.enabled=true",
+        "spring.jpa.properties.hibernate.hbm2ddl.extra_physical_table_types=PARTITIONED TABLE",
+        "app.api-keys=test-key",
+        "app.warm-up.enabled=false",
+        "app.batch-jobs.enabled=false",
+        "app.jfr.always-on=false",
+        "management.tracing.enabled=false",
+        "groq.api.key=unused"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class ChatImportIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private ChatImportService importService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldCopyNdjsonThroughStagingIntoNewSessions() {
+        ChatImportResult result = importNdjson("""
+                {"type":"session","id":1,"title":"Trip","owner":"ndjson-owner","favorite":true}
+                {"type":"message","sessionId":1,"sender":"user","content":"Where to?"}
+                {"type":"message","sessionId":1,"sender":"assistant","content":"Lisbon, \\"definitely\\"","context":"a,b"}
+                {"type":"session","id":2,"title":"Empty","owner":"ndjson-owner"}
+                """);
+
+        assertThat(result.stagedRows()).isEqualTo(4);
+        assertThat(result.sessions()).isEqualTo(2);
+        assertThat(result.messages()).isEqualTo(2);
+        assertThat(result.skippedMessages()).isZero();
+
+        Map<String, Object> trip = jdbcTemplate.queryForMap(
+                "SELECT * FROM chat_sessions WHERE owner = 'ndjson-owner' AND title = 'Trip'");
+        assertThat(trip).containsEntry("favorite", true).containsEntry("message_count", 2).containsEntry("last_seq", 2L);
+        assertThat((String) trip.get("last_message_preview")).startsWith("Lisbon");
+        assertThat(jdbcTemplate.queryForList("SELECT seq, sender, content, context FROM chat_messages "
+                        + "WHERE session_id = ? ORDER BY seq", trip.get("id")))
+                .extracting(m -> m.get("seq") + ":" + m.get("sender") + ":" + m.get("content") + ":" + m.get("context"))
+                .containsExactly("1:user:Where to?:null", "2:assistant:Lisbon, \"definitely\":a,b");
+    }
+
+    @Test
+    void shouldCopyCsvWithHeaderThroughStaging() {
+        String csv = """
+                record_type,ref,session_ref,title,owner,favorite,sender,content,context,created_at
+                session,s1,,Imported,csv-owner,false,,,,
+                message,,s1,,,,user,"Hello, world",,
+                message,,s1,,,,assistant,Hi,,
+                """;
+
+        ChatImportResult result = importService.importStream(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ChatImportService.Format.CSV);
+
+        assertThat(result.sessions()).isEqualTo(1);
+        assertThat(result.messages()).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("SELECT m.content FROM chat_messages m "
+                        + "JOIN chat_sessions s ON s.id = m.session_id WHERE s.owner = 'csv-owner' ORDER BY m.seq",
+                String.class))
+                .containsExactly("Hello, world", "Hi");
+    }
+
+    @Test
+    void shouldRemapSourceIdsThatCollideWithExistingSessions() {
+        Long existing = createSession("conflict-owner", "Existing");
+        jdbcTemplate.update("INSERT INTO chat_messages (session_id, seq, sender, content, created_at) "
+                + "VALUES (?, 1, 'user', 'Original', now())", existing);
+        jdbcTemplate.update("UPDATE chat_sessions SET message_count = 1, last_seq = 1 WHERE id = ?", existing);
+
+        // the file reuses the existing id, twice: the first session line wins
+        ChatImportResult result = importNdjson("""
+                {"type":"session","id":%d,"title":"Imported","owner":"conflict-owner"}
+                {"type":"session","id":%d,"title":"Duplicate","owner":"conflict-owner"}
+                {"type":"message","sessionId":%d,"sender":"user","content":"Imported message"}
+                """.formatted(existing, existing, existing));
+
+        assertThat(result.sessions()).isEqualTo(1);
+        assertThat(result.messages()).isEqualTo(1);
+        List<Map<String, Object>> sessions = jdbcTemplate.queryForList(
+                "SELECT id, title, message_count FROM chat_sessions WHERE owner = 'conflict-owner' ORDER BY id");
+        assertThat(sessions).extracting(s -> s.get("title") + ":" + s.get("message_count"))
+                .containsExactly("Existing:1", "Imported:1");
+        assertThat(sessions.get(1).get("id")).isNotEqualTo(existing);
+        assertThat(jdbcTemplate.queryForList("SELECT content FROM chat_messages WHERE session_id = ?",
+                String.class, existing)).containsExactly("Original");
+    }
+
+    @Test
+    void shouldNotAttachMessagesToSessionsOutsideTheImport() {
+        Long foreign = createSession("other-owner", "Not yours");
+
+        ChatImportResult result = importNdjson("""
+                {"type":"session","id":1,"title":"Mine","owner":"importing-owner"}
+                {"type":"message","sessionId":%d,"sender":"user","content":"Injected"}
+                {"type":"message","sessionId":1,"sender":"user","content":"Own message"}
+                """.formatted(foreign));
+
+        assertThat(result.messages()).isEqualTo(1);
+        assertThat(result.skippedMessages()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM chat_messages WHERE session_id = ?",
+                Long.class, foreign)).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT message_count FROM chat_sessions WHERE id = ?",
+                Integer.class, foreign)).isZero();
+    }
+
+    @Test
+    void shouldRollBackTheWholeImportOnMalformedInput() {
+        assertThatThrownBy(() -> importNdjson("""
+                {"type":"session","id":1,"title":"Partial","owner":"rollback-owner"}
+                {"type":"message","sessionId":1,"sender":"user","content":"Staged"}
+                {"type":"message","sessionId":1,
+                """))
+                .isInstanceOf(ApiException.class)
+                .hasMessageContaining("line 3");
+
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM chat_sessions WHERE owner = 'rollback-owner'",
+                Long.class)).isZero();
+    }
+
+    private ChatImportResult importNdjson(String ndjson) {
+        return importService.importStream(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), ChatImportService.Format.NDJSON);
+    }
+
+    private Long createSession(String owner, String title) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO chat_sessions (title, owner, updated_at) VALUES (?, ?, now()) RETURNING id",
+                Long.class, title, owner);
+    }
+}
@@ -0,0 +1,46 @@
+package com.northbay.ragchat.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ChatMessagePartitionManager} class.
+ * <p>
+ * Verifies that upcoming partitions are created whenever the table is
+ * partitioned, with or without the opt-in flag, and that retention only
+ * runs when enabled.
+ */
+class ChatMessagePartitionManagerTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void shouldCreateUpcomingPartitionsEvenWhenNotEnabled() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(1);
+
+        new ChatMessagePartitionManager(jdbcTemplate, false, 3, 6, true).maintain();
+
+        String thisMonth = LocalDate.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyyMM"));
+        verify(jdbcTemplate).execute(contains("chat_messages_p" + thisMonth + " PARTITION OF chat_messages"));
+        verify(jdbcTemplate, times(4)).execute(contains("CREATE TABLE IF NOT EXISTS"));
+        verify(jdbcTemplate, never()).queryForList(anyString());
+    }
+
+    @Test
+    void shouldDoNothingWhenTableIsNotPartitioned() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(0);
+
+        new ChatMessagePartitionManager(jdbcTemplate, true, 3, 6, true).maintain();
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+}
@@ -2,23 +2,42 @@ package com.northbay.ragchat.service;
 
 import com.northbay.ragchat.entity.ChatMessage;
 import com.northbay.ragchat.entity.ChatSession;
+import com.northbay.ragchat.exception.ApiException;
 import com.northbay.ragchat.mapper.ChatMapper;
 import com.northbay.ragchat.model.*;
 import com.northbay.ragchat.repository.ChatMessageRepository;
 import com.northbay.ragchat.repository.ChatSessionRepository;
+import com.northbay.ragchat.repository.projection.MessageView;
+import com.northbay.ragchat.repository.projection.SessionReadState;
+import com.northbay.ragchat.repository.projection.SessionView;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler;
 import com.northbay.ragchat.service.impl.ChatServiceImpl;
+import com.northbay.ragchat.service.invalidation.InvalidationBus;
+import com.northbay.ragchat.service.invalidation.SessionVersionCache;
+import com.northbay.ragchat.service.push.ChatMessageAddedEvent;
+import com.northbay.ragchat.service.routing.LlmModelRouter;
+import com.northbay.ragchat.service.writebehind.MessageWriteBehindQueue;
+import com.northbay.ragchat.service.writebehind.PendingMessage;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -40,11 +59,42 @@ class ChatServiceImplTest {
     @Mock
     private ChatMapper mapper;
 
+    @Mock
+    private MessageWriteBehindQueue writeBehind;
+
+    @Mock
+    private SessionWriteTracker writeTracker;
+
+    @Mock
+    private SessionArchiveService archiveService;
+
+    @Mock
+    private LlmDispatchScheduler dispatchScheduler;
+
+    @Mock
+    private SessionTurnLocks turnLocks;
+
+    @Mock
+    private ApplicationEventPublisher events;
+
+    @Mock
+    private InvalidationBus invalidationBus;
+
+    @Mock
+    private LlmModelRouter modelRouter;
+
+    @Spy
+    private SessionVersionCache versionCache = new SessionVersionCache(100);
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private ChatServiceImpl chatService;
 
     private ChatSession session;
     private ChatMessage message;
+    private SessionView sessionView;
     private ChatSessionDTO sessionDTO;
     private ChatMessageDTO messageDTO;
 
@@ -52,6 +102,7 @@ class ChatServiceImplTest {
     void setup() {
         session = ChatSession.builder()
                 .id(1L)
+                .createdAt(Instant.parse("2025-10-01T00:00:00Z"))
                 .title("Test Session")
                 .owner("user1")
                 .favorite(false)
@@ -64,6 +115,9 @@ class ChatServiceImplTest {
                 .content("Hello")
                 .build();
 
+        sessionView = new SessionView(1L, "Test Session", "user1", false, null, session.getCreatedAt(),
+                null, 0, null);
+
         sessionDTO = new ChatSessionDTO();
         sessionDTO.setId(1);
         sessionDTO.setTitle("Test Session");
@@ -90,16 +144,31 @@ class ChatServiceImplTest {
         verify(sessionRepo).save(any(ChatSession.class));
     }
 
+    // ❌ createChatSession - model not configured
+    @Test
+    void shouldRejectUnknownSessionModel() {
+        ChatSessionCreateRequest req = new ChatSessionCreateRequest();
+        req.setTitle("My Chat");
+        req.setModel("gpt-17");
+        when(modelRouter.models()).thenReturn(Set.of("llama-3.1-8b-instant", "llama-3.3-70b-versatile"));
+
+        assertThatThrownBy(() -> chatService.createChatSession(req))
+                .isInstanceOf(ApiException.class)
+                .hasMessageContaining("gpt-17");
+        verify(sessionRepo, never()).save(any());
+    }
+
     // ✅ listChatSessions
     @Test
     void shouldListChatSessions() {
-        when(sessionRepo.findByOwner("user1")).thenReturn(List.of(session));
-        when(mapper.toSessionDTOList(anyList())).thenReturn(List.of(sessionDTO));
+        when(sessionRepo.findViewsByOwner("user1")).thenReturn(List.of(sessionView));
+        when(mapper.viewsToSessionDTOList(anyList())).thenReturn(List.of(sessionDTO));
 
         List<ChatSessionDTO> result = chatService.listChatSessions("user1");
 
         assertThat(result).hasSize(1);
-        verify(sessionRepo).findByOwner("user1");
+        verify(sessionRepo).findViewsByOwner("user1");
+        verify(sessionRepo, never()).findByOwner(any());
     }
 
     // ✅ updateChatSession
@@ -133,17 +202,20 @@ class ChatServiceImplTest {
     // ✅ deleteChatSession
     @Test
     void shouldDeleteExistingChatSession() {
-        when(sessionRepo.existsById(1L)).thenReturn(true);
+        when(sessionRepo.deleteSession(1L)).thenReturn(1);
 
         chatService.deleteChatSession(1L);
 
-        verify(sessionRepo).deleteById(1L);
+        verify(messageRepo).deleteAllOfSession(1L);
+        verify(sessionRepo, never()).deleteById(any());
+        verify(archiveService).discard(1L);
+        verify(invalidationBus).sessionChanged(1L);
     }
 
     // ❌ deleteChatSession - not found
     @Test
     void shouldThrowWhenDeletingNonexistentSession() {
-        when(sessionRepo.existsById(1L)).thenReturn(false);
+        when(sessionRepo.deleteSession(1L)).thenReturn(0);
 
         assertThatThrownBy(() -> chatService.deleteChatSession(1L))
                 .isInstanceOf(EntityNotFoundException.class)
@@ -153,13 +225,13 @@ class ChatServiceImplTest {
     // ✅ listFavoriteSessions
     @Test
     void shouldListFavoriteSessions() {
-        when(sessionRepo.findByFavoriteTrue()).thenReturn(List.of(session));
-        when(mapper.toSessionDTOList(anyList())).thenReturn(List.of(sessionDTO));
+        when(sessionRepo.findFavoriteViews()).thenReturn(List.of(sessionView));
+        when(mapper.viewsToSessionDTOList(anyList())).thenReturn(List.of(sessionDTO));
 
         List<ChatSessionDTO> result = chatService.listFavoriteSessions();
 
         assertThat(result).hasSize(1);
-        verify(sessionRepo).findByFavoriteTrue();
+        verify(sessionRepo).findFavoriteViews();
     }
 
     // ✅ addMessage
@@ -170,6 +242,7 @@ class ChatServiceImplTest {
         req.setContent("Hello");
 
         when(sessionRepo.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepo.recordMessage(eq(1L), any(), eq("Hello"))).thenReturn(1L);
         when(messageRepo.save(any(ChatMessage.class))).thenReturn(message);
         when(mapper.toMessageDTO(any(ChatMessage.class))).thenReturn(messageDTO);
 
@@ -178,6 +251,99 @@ class ChatServiceImplTest {
         assertThat(result).isNotNull();
         assertThat(result.getContent()).isEqualTo("Hello");
         verify(messageRepo).save(any(ChatMessage.class));
+        verify(sessionRepo).recordMessage(eq(1L), any(), eq("Hello"));
+    }
+
+    // ✅ addMessage - sequence number from the session counter
+    @Test
+    void shouldAssignNextSeqToStoredMessage() {
+        ChatMessageCreateRequest req = new ChatMessageCreateRequest();
+        req.setSender("agent");
+        req.setContent("Hello");
+
+        when(sessionRepo.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepo.recordMessage(eq(1L), any(), eq("Hello"))).thenReturn(7L);
+
+        chatService.addMessage(1L, req);
+
+        ArgumentCaptor<ChatMessage> saved = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(messageRepo).save(saved.capture());
+        assertThat(saved.getValue().getSeq()).isEqualTo(7L);
+        verify(turnLocks).lock(1L);
+        verify(transactionManager).commit(any());
+        verify(invalidationBus).sessionChanged(1L);
+
+        ArgumentCaptor<ChatMessageAddedEvent> published = ArgumentCaptor.forClass(ChatMessageAddedEvent.class);
+        verify(events).publishEvent(published.capture());
+        assertThat(published.getValue().sessionId()).isEqualTo(1L);
+        assertThat(published.getValue().message().seq()).isEqualTo(7L);
+    }
+
+    // ✅ addMessage - turn lock released during the LLM call
+    @Test
+    void shouldNotHoldTurnLockDuringLlmCall() {
+        ChatMessageCreateRequest req = new ChatMessageCreateRequest();
+        req.setSender("user");
+        req.setContent("Hello");
+        SessionTurnLocks.Handle userTurn = mock(SessionTurnLocks.Handle.class);
+        SessionTurnLocks.Handle replyTurn = mock(SessionTurnLocks.Handle.class);
+
+        when(sessionRepo.findById(1L)).thenReturn(Optional.of(session));
+        when(turnLocks.lock(1L)).thenReturn(userTurn, replyTurn);
+        when(sessionRepo.recordMessage(eq(1L), any(), any())).thenReturn(7L, 8L);
+        when(modelRouter.complete(eq("Hello"), any())).thenReturn(new LlmCompletion("Hi", "test-model", 3, 2));
+
+        chatService.addMessage(1L, req);
+
+        InOrder order = inOrder(userTurn, modelRouter, turnLocks, replyTurn);
+        order.verify(userTurn).close();
+        order.verify(modelRouter).complete(eq("Hello"), any());
+        order.verify(turnLocks).lock(1L);
+        order.verify(replyTurn).close();
+        verify(messageRepo, times(2)).save(any(ChatMessage.class));
+    }
+
+    // ✅ addMessage - a failed reply store is retried
+    @Test
+    void shouldRetryStoringTheReply() {
+        ChatMessageCreateRequest req = new ChatMessageCreateRequest();
+        req.setSender("user");
+        req.setContent("Hello");
+        when(sessionRepo.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepo.recordMessage(eq(1L), any(), any())).thenReturn(7L, 8L);
+        when(modelRouter.complete(eq("Hello"), any())).thenReturn(new LlmCompletion("Hi", "test-model", 3, 2));
+        SessionTurnLocks.Handle turn = mock(SessionTurnLocks.Handle.class);
+        when(turnLocks.lock(1L)).thenReturn(turn)
+                .thenThrow(new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_OVERLOADED", "busy"))
+                .thenReturn(turn);
+        when(mapper.toMessageDTO(any(ChatMessage.class))).thenReturn(messageDTO);
+
+        chatService.addMessage(1L, req);
+
+        ArgumentCaptor<ChatMessage> saved = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(messageRepo, times(2)).save(saved.capture());
+        assertThat(saved.getAllValues()).extracting(ChatMessage::getSender).containsExactly("user", "assistant");
+    }
+
+    // ❌ addMessage - a reply that cannot be stored is reported, not dropped
+    @Test
+    void shouldReportReplyThatCouldNotBeStored() {
+        ChatMessageCreateRequest req = new ChatMessageCreateRequest();
+        req.setSender("user");
+        req.setContent("Hello");
+        when(sessionRepo.findById(1L)).thenReturn(Optional.of(session));
+        when(sessionRepo.recordMessage(eq(1L), any(), any())).thenReturn(7L);
+        when(modelRouter.complete(eq("Hello"), any())).thenReturn(new LlmCompletion("Hi", "test-model", 3, 2));
+        SessionTurnLocks.Handle turn = mock(SessionTurnLocks.Handle.class);
+        when(turnLocks.lock(1L)).thenReturn(turn)
+                .thenThrow(new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_OVERLOADED", "busy"));
+
+        assertThatThrownBy(() -> chatService.addMessage(1L, req))
+                .isInstanceOfSatisfying(ApiException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+                    assertThat(e.getMessage()).contains("Message 7 was stored");
+                });
+        verify(turnLocks, times(3)).lock(1L);
     }
 
     // ❌ addMessage - session not found
@@ -193,24 +359,125 @@ class ChatServiceImplTest {
                 .hasMessageContaining("Session not found");
     }
 
+    // ✅ addMessage - write-behind for non-user senders
+    @Test
+    void shouldQueueNonUserMessageWhenWriteBehindEnabled() {
+        ChatMessageCreateRequest req = new ChatMessageCreateRequest();
+        req.setSender("tool");
+        req.setContent("Indexed 3 documents");
+
+        when(writeBehind.isEnabled()).thenReturn(true);
+        when(sessionRepo.findArchivedById(1L)).thenReturn(Optional.of(false));
+        when(writeBehind.append(1L, "tool", "Indexed 3 documents", null))
+                .thenReturn(new PendingMessage(42L, 1L, "tool", "Indexed 3 documents", null, Instant.now()));
+        when(mapper.toMessageDTO(any(ChatMessage.class))).thenReturn(messageDTO);
+
+        ChatMessageDTO result = chatService.addMessage(1L, req);
+
+        assertThat(result).isNotNull();
+        verify(writeBehind).append(1L, "tool", "Indexed 3 documents", null);
+        verify(messageRepo, never()).save(any(ChatMessage.class));
+    }
+
+    // ✅ getMessagesETag - derived from the session version only
+    @Test
+    void shouldBuildMessagesETagFromSessionVersion() {
+        when(sessionRepo.findVersionById(1L)).thenReturn(Optional.of(7L));
+
+        assertThat(chatService.getMessagesETag(1L)).isEqualTo("\"m1-7\"");
+        verifyNoInteractions(messageRepo);
+    }
+
+    // ✅ getMessagesETag - cached until the session is invalidated
+    @Test
+    void shouldServeMessagesETagFromCacheUntilInvalidated() {
+        when(sessionRepo.findVersionById(1L)).thenReturn(Optional.of(7L), Optional.of(8L));
+
+        assertThat(chatService.getMessagesETag(1L)).isEqualTo("\"m1-7\"");
+        assertThat(chatService.getMessagesETag(1L)).isEqualTo("\"m1-7\"");
+        versionCache.invalidateSessions(Set.of(1L));
+        assertThat(chatService.getMessagesETag(1L)).isEqualTo("\"m1-8\"");
+
+        verify(sessionRepo, times(2)).findVersionById(1L);
+    }
+
+    // ❌ getMessagesETag - not found
+    @Test
+    void shouldThrowWhenETagRequestedForMissingSession() {
+        when(sessionRepo.findVersionById(999L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> chatService.getMessagesETag(999L))
+                .isInstanceOf(EntityNotFoundException.class);
+    }
+
+    // ✅ getMessages - archived session is served from the archive without restoring it
+    @Test
+    void shouldReadArchivedSessionWithoutRestoring() {
+        when(sessionRepo.findArchivedById(1L)).thenReturn(Optional.of(true));
+        when(archiveService.read(1L)).thenReturn(List.of(message));
+        when(mapper.toMessageDTO(any(ChatMessage.class))).thenReturn(messageDTO);
+
+        ChatMessagePage result = chatService.getMessages(1L, 0, 5);
+
+        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.getTotalElements()).isEqualTo(1);
+        verify(messageRepo, never()).findViewsBySessionId(any(), any());
+        verify(archiveService, never()).restore(any());
+        verify(writeTracker, never()).recordSessionWrite(any(), any());
+    }
+
     // ✅ getMessages
     @Test
     void shouldReturnMessagesForSession() {
-        when(sessionRepo.findById(1L)).thenReturn(Optional.of(session));
-        Page<ChatMessage> page = new PageImpl<>(List.of(message));
-        when(messageRepo.findBySession(eq(session), any(PageRequest.class))).thenReturn(page);
-        when(mapper.toMessageDTO(any(ChatMessage.class))).thenReturn(messageDTO);
+        when(sessionRepo.findArchivedById(1L)).thenReturn(Optional.of(false));
+        MessageView view = new MessageView(10L, 1L, "user1", "Hello", null, session.getCreatedAt());
+        Page<MessageView> page = new PageImpl<>(List.of(view));
+        when(messageRepo.findViewsBySessionId(eq(1L), any(PageRequest.class)))
+                .thenReturn(page);
+        when(mapper.toMessageDTO(view)).thenReturn(messageDTO);
 
         ChatMessagePage result = chatService.getMessages(1L, 0, 5);
 
         assertThat(result).isNotNull();
         assertThat(result.getContent()).hasSize(1);
+        verify(messageRepo, never()).findBySession(any(), any());
+    }
+
+    // ✅ getMessages - delta after a known seq
+    @Test
+    void shouldReturnOnlyMessagesAfterSeq() {
+        when(sessionRepo.findArchivedById(1L)).thenReturn(Optional.of(false));
+        MessageView view = new MessageView(11L, 8L, "assistant", "Hi", null, session.getCreatedAt());
+        when(messageRepo.findViewsBySessionIdAfterSeq(eq(1L), eq(7L), any(PageRequest.class)))
+                .thenReturn(new PageImpl<>(List.of(view)));
+        when(mapper.toMessageDTO(view)).thenReturn(messageDTO);
+
+        ChatMessagePage result = chatService.getMessages(1L, 0, 5, 7L);
+
+        assertThat(result.getContent()).hasSize(1);
+        verify(messageRepo, never()).findViewsBySessionId(any(), any());
+    }
+
+    // ✅ getTaggedMessages - tagged with the version read together with the page
+    @Test
+    void shouldTagPageWithVersionReadBeforeIt() {
+        when(sessionRepo.findReadStateById(1L)).thenReturn(Optional.of(new SessionReadState(5L, false)));
+        MessageView view = new MessageView(10L, 1L, "user1", "Hello", null, session.getCreatedAt());
+        when(messageRepo.findViewsBySessionId(eq(1L), any(PageRequest.class))).thenReturn(new PageImpl<>(List.of(view)));
+        when(mapper.toMessageDTO(view)).thenReturn(messageDTO);
+
+        TaggedMessagePage result = chatService.getTaggedMessages(1L, 0, 5, null);
+
+        assertThat(result.etag()).isEqualTo("\"m1-5\"");
+        assertThat(result.page().getContent()).hasSize(1);
+        // not the cached primary version, which may be newer than this page
+        verify(sessionRepo, never()).findVersionById(any());
     }
 
     // ❌ getMessages - session not found
     @Test
     void shouldThrowWhenGettingMessagesForNonexistentSession() {
-        when(sessionRepo.findById(999L)).thenReturn(Optional.empty());
+        when(sessionRepo.findArchivedById(999L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> chatService.getMessages(999L, 0, 5))
                 .isInstanceOf(EntityNotFoundException.class)
@@ -0,0 +1,178 @@
+package com.northbay.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.exception.ApiException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Integration tests for the {@link IdempotencyService} class.
+ * <p>
+ * Runs against PostgreSQL with two service instances sharing one database, as
+ * two application nodes would, and verifies that a completed request is
+ * replayed, that concurrent duplicates run the action once on the same and on
+ * different nodes, and that after a lease expires only the request holding the
+ * current claim stores its response.
+ */
+@SpringBootTest(properties = {
+        "spring.flyway.enabled=true",
+        "spring.jpa.properties.hibernate.hbm2ddl.extra_physical_table_types=PARTITIONED TABLE",
+        "app.api-keys=test-key",
+        "app.warm-up.enabled=false",
+        "app.batch-jobs.enabled=false",
+        "app.jfr.always-on=false",
+        "management.tracing.enabled=false",
+        "groq.api.key=unused"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class IdempotencyServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger runs = new AtomicInteger();
+    private final String key = UUID.randomUUID().toString();
+    private final String hash = IdempotencyService.fingerprint("POST", "/messages", "Hello");
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldReplayCompletedRequest() {
+        IdempotencyService node = node(60_000);
+
+        IdempotencyService.Result<String> first = node.execute(key, hash, String.class, () -> run("stored"));
+        IdempotencyService.Result<String> retry = node.execute(key, hash, String.class, () -> run("again"));
+
+        assertThat(first).isEqualTo(new IdempotencyService.Result<>("stored", false));
+        assertThat(retry).isEqualTo(new IdempotencyService.Result<>("stored", true));
+        assertThat(runs).hasValue(1);
+        assertThatThrownBy(() -> node.execute(key, IdempotencyService.fingerprint("other"), String.class,
+                () -> run("other")))
+                .isInstanceOfSatisfying(ApiException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+    }
+
+    @Test
+    void shouldRunConcurrentDuplicateOnceOnTheSameNode() throws Exception {
+        assertConcurrentDuplicateRunsOnce(node(60_000), null);
+    }
+
+    @Test
+    void shouldRunConcurrentDuplicateOnceAcrossNodes() throws Exception {
+        assertConcurrentDuplicateRunsOnce(node(60_000), node(60_000));
+    }
+
+    @Test
+    void shouldKeepTheResponseOfTheRequestThatReclaimedAnExpiredLease() throws Exception {
+        IdempotencyService crashedNode = node(200);
+        IdempotencyService retryNode = node(200);
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+
+        Future<IdempotencyService.Result<String>> late = executor.submit(() ->
+                crashedNode.execute(key, hash, String.class, () -> {
+                    stalled.countDown();
+                    await(resume);
+                    return run("late");
+                }));
+        assertThat(stalled.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(400);
+
+        IdempotencyService.Result<String> retry = retryNode.execute(key, hash, String.class, () -> run("retry"));
+        resume.countDown();
+
+        assertThat(retry).isEqualTo(new IdempotencyService.Result<>("retry", false));
+        assertThat(late.get(5, TimeUnit.SECONDS).value()).isEqualTo("late");
+        assertThat(runs).hasValue(2);
+        // the late completion did not overwrite the retry's stored response
+        assertThat(node(60_000).execute(key, hash, String.class, () -> run("third")))
+                .isEqualTo(new IdempotencyService.Result<>("retry", true));
+    }
+
+    @Test
+    void shouldReleaseTheClaimWhenTheRequestFails() {
+        IdempotencyService node = node(60_000);
+
+        assertThatThrownBy(() -> node.execute(key, hash, String.class, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("LLM unavailable");
+        })).hasMessage("LLM unavailable");
+
+        assertThat(node.execute(key, hash, String.class, () -> run("second try")))
+                .isEqualTo(new IdempotencyService.Result<>("second try", false));
+        assertThat(runs).hasValue(2);
+    }
+
+    /**
+     * Sends a duplicate while the original is still running, on {@code second} or, if null, on {@code first}.
+     */
+    private void assertConcurrentDuplicateRunsOnce(IdempotencyService first, IdempotencyService second)
+            throws Exception {
+        IdempotencyService duplicateNode = second != null ? second : first;
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<IdempotencyService.Result<String>> original = executor.submit(() ->
+                first.execute(key, hash, String.class, () -> {
+                    running.countDown();
+                    await(release);
+                    return run("once");
+                }));
+        assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<IdempotencyService.Result<String>> duplicate = executor.submit(() ->
+                duplicateNode.execute(key, hash, String.class, () -> run("twice")));
+        Thread.sleep(100);
+        release.countDown();
+
+        assertThat(original.get(5, TimeUnit.SECONDS)).isEqualTo(new IdempotencyService.Result<>("once", false));
+        assertThat(duplicate.get(5, TimeUnit.SECONDS)).isEqualTo(new IdempotencyService.Result<>("once", true));
+        assertThat(runs).hasValue(1);
+    }
+
+    private IdempotencyService node(long leaseMs) {
+        return new IdempotencyService(jdbcTemplate, objectMapper, 24, leaseMs, 5000, 20);
+    }
+
+    private String run(String value) {
+        runs.incrementAndGet();
+        return value;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
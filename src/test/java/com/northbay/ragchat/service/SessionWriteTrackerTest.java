@@ -0,0 +1,58 @@
+package com.northbay.ragchat.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SessionWriteTracker} class.
+ * <p>
+ * Verifies that writes inside a transaction are only recorded once it commits.
+ */
+class SessionWriteTrackerTest {
+
+    private final SessionWriteTracker tracker = new SessionWriteTracker(60_000);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldRecordImmediatelyWithoutTransaction() {
+        tracker.recordSessionWrite(1L, "rpark");
+
+        assertThat(tracker.isSessionRecent(1L)).isTrue();
+        assertThat(tracker.isOwnerRecent("rpark")).isTrue();
+        assertThat(tracker.isFavoritesRecent()).isFalse();
+    }
+
+    @Test
+    void shouldRecordOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        tracker.recordSessionWrite(1L, "rpark");
+        tracker.recordFavoritesWrite();
+
+        assertThat(tracker.isSessionRecent(1L)).isFalse();
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(tracker.isSessionRecent(1L)).isTrue();
+        assertThat(tracker.isFavoritesRecent()).isTrue();
+    }
+
+    @Test
+    void shouldForgetRolledBackWrites() {
+        TransactionSynchronizationManager.initSynchronization();
+        tracker.recordDelete(1L);
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(tracker.isSessionRecent(1L)).isFalse();
+        assertThat(tracker.isAnyRecent()).isFalse();
+    }
+}
@@ -0,0 +1,148 @@
+package com.northbay.ragchat.service.batchjob;
+
+import com.northbay.ragchat.service.writebehind.ChatMessageBatchWriter;
+import com.northbay.ragchat.service.writebehind.PendingMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link BatchJobRunner} class.
+ * <p>
+ * Verifies the exponential backoff between attempts, that provider rate
+ * limits are recognized, with their {@code Retry-After}, through wrapping
+ * exceptions, that a checkpoint fails items whose session was deleted, that
+ * lease renewal covers every item still held, and that no workers start
+ * without the job tables.
+ */
+class BatchJobRunnerTest {
+
+    private final BatchJobRunner runner = new BatchJobRunner(null, null, null, null, null, null, null,
+            false, 1, 20, 600_000, 5, 1000, 8000, 5000);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final ChatMessageBatchWriter batchWriter = mock(ChatMessageBatchWriter.class);
+    private final BatchJobRunner checkpointing = new BatchJobRunner(jdbcTemplate, transactionManager, batchWriter,
+            null, null, null, new SimpleMeterRegistry(), false, 1, 20, 600_000, 5, 1000, 8000, 5000);
+
+    @Test
+    void shouldNotStartWorkersWithoutJobTables() {
+        when(jdbcTemplate.queryForObject(contains("to_regclass"), eq(Boolean.class))).thenReturn(false);
+        BatchJobRunner enabled = new BatchJobRunner(jdbcTemplate, transactionManager, batchWriter,
+                null, null, null, new SimpleMeterRegistry(), true, 4, 20, 600_000, 5, 1000, 8000, 5000);
+
+        enabled.start();
+
+        verify(jdbcTemplate).queryForObject(contains("to_regclass"), eq(Boolean.class));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void shouldDoubleBackoffUpToTheMaximum() {
+        assertThat(runner.retryDelayMs(1)).isEqualTo(1000);
+        assertThat(runner.retryDelayMs(2)).isEqualTo(2000);
+        assertThat(runner.retryDelayMs(4)).isEqualTo(8000);
+        assertThat(runner.retryDelayMs(30)).isEqualTo(8000);
+    }
+
+    @Test
+    void shouldReadRetryAfterOfWrappedRateLimitError() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "7");
+        WebClientResponseException tooMany = WebClientResponseException.create(
+                429, "Too Many Requests", headers, new byte[0], StandardCharsets.UTF_8);
+        RuntimeException wrapped = new RuntimeException("Groq API call failed",
+                new RuntimeException("Groq API error", tooMany));
+
+        assertThat(BatchJobRunner.retryAfterMs(wrapped)).isEqualTo(7000);
+        assertThat(BatchJobRunner.retryAfterMs(WebClientResponseException.create(
+                429, "Too Many Requests", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8))).isZero();
+    }
+
+    @Test
+    void shouldNotTreatOtherErrorsAsRateLimits() {
+        WebClientResponseException serverError = WebClientResponseException.create(
+                500, "Internal Server Error", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+
+        assertThat(BatchJobRunner.retryAfterMs(new RuntimeException(serverError))).isEqualTo(-1);
+        assertThat(BatchJobRunner.retryAfterMs(new IllegalStateException("timeout"))).isEqualTo(-1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldFailAnsweredItemWhoseSessionWasDeleted() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenReturn(List.of());
+        when(jdbcTemplate.update(contains("'FAILED'"), any(), any(), any(), any())).thenReturn(1);
+
+        checkpointing.checkpoint(List.of(answered(new BatchJobRunner.ClaimedItem(1, 0, 7, "Summarize", 1))));
+
+        verify(jdbcTemplate).update(contains("'FAILED'"), eq("Session 7 deleted"), eq(1L), eq(0), eq(1));
+        verify(jdbcTemplate, never()).update(contains("'DONE'"), any(), any(), any(), any());
+        verify(batchWriter).write(List.of());
+        verify(jdbcTemplate).update(contains("failed_items + ?"), eq(0), eq(1), eq(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldStoreRepliesOfItemsWhoseSessionExists() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenReturn(List.of(7L));
+        when(jdbcTemplate.update(contains("'DONE'"), any(), any(), any(), any())).thenReturn(1);
+        BatchJobRunner.Answer answer = answered(new BatchJobRunner.ClaimedItem(1, 0, 7, "Summarize", 1));
+
+        checkpointing.checkpoint(List.of(answer));
+
+        verify(jdbcTemplate).update(contains("'DONE'"), eq(101L), eq(1L), eq(0), eq(1));
+        verify(batchWriter).write(List.of(answer.question(), answer.reply()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldRenewLeasesOfAllHeldItems() throws Exception {
+        ArgumentCaptor<PreparedStatementCreator> statement = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        when(jdbcTemplate.query(statement.capture(), any(RowMapper.class)))
+                .thenReturn(List.of(new BatchJobRunner.ItemKey(1, 0)));
+
+        assertThat(checkpointing.renewLeases(List.of(
+                new BatchJobRunner.ClaimedItem(1, 0, 7, "First", 1),
+                new BatchJobRunner.ClaimedItem(1, 1, 7, "Second", 2))))
+                .containsExactly(new BatchJobRunner.ItemKey(1, 0));
+
+        Connection con = mock(Connection.class);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        when(con.prepareStatement(anyString())).thenReturn(ps);
+        statement.getValue().createPreparedStatement(con);
+        verify(ps).setLong(1, 600_000);
+        verify(con).createArrayOf("bigint", new Object[]{1L, 1L});
+        verify(con).createArrayOf("integer", new Object[]{0, 1});
+        verify(con).createArrayOf("integer", new Object[]{1, 2});
+    }
+
+    private static BatchJobRunner.Answer answered(BatchJobRunner.ClaimedItem item) {
+        PendingMessage question = new PendingMessage(100L, item.sessionId(), "user", item.prompt(), null, Instant.now());
+        PendingMessage reply = new PendingMessage(101L, item.sessionId(), "assistant", "Done", null, Instant.now());
+        return new BatchJobRunner.Answer(item, question, reply, null, false, 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.northbay.ragchat.service.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link MessagePayloadCodec} class.
+ * <p>
+ * Verifies the stored format round-trips with and without a trained
+ * dictionary and that short or plain values are left untouched.
+ */
+class MessagePayloadCodecTest {
+
+    private static final String ANSWER = "Based on the retrieved documents, the refund policy allows returns within "
+            + "30 days of purchase. Based on the retrieved documents, items must be unused and in the original "
+            + "packaging. Based on the retrieved documents, refunds are issued to the original payment method "
+            + "within 5 business days of receiving the returned item.";
+
+    private final MessagePayloadCodec codec = new MessagePayloadCodec(null, true, 64, 6);
+
+    @Test
+    void shouldLeaveShortValuesUncompressed() {
+        assertThat(codec.encode("hello")).isEqualTo("hello");
+        assertThat(codec.encode(null)).isNull();
+        assertThat(codec.decode("hello")).isEqualTo("hello");
+    }
+
+    @Test
+    void shouldRoundTripLargeValues() {
+        String stored = codec.encode(ANSWER);
+
+        assertThat(MessagePayloadCodec.isEncoded(stored)).isTrue();
+        assertThat(stored.length()).isLessThan(ANSWER.length());
+        assertThat(codec.decode(stored)).isEqualTo(ANSWER);
+    }
+
+    @Test
+    void shouldRoundTripWithTrainedDictionary() {
+        List<String> sample = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sample.add(ANSWER.replace("30 days", i + " days"));
+        }
+        codec.activate(1, CompressionDictionaryTrainer.train(sample));
+
+        String stored = codec.encode(ANSWER);
+
+        assertThat(stored).startsWith("\u00011:");
+        assertThat(codec.decode(stored)).isEqualTo(ANSWER);
+    }
+
+    @Test
+    void shouldNotMistakePlainTextStartingWithMarker() {
+        String plain = "\u00012:not compressed";
+
+        String stored = codec.encode(plain);
+
+        assertThat(stored).isNotEqualTo(plain);
+        assertThat(codec.decode(stored)).isEqualTo(plain);
+    }
+}
@@ -0,0 +1,120 @@
+package com.northbay.ragchat.service.dispatch;
+
+import com.northbay.ragchat.exception.ApiException;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler.Lane;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler.LaneQueue;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler.Permit;
+import com.northbay.ragchat.service.dispatch.LlmDispatchScheduler.Waiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LlmDispatchScheduler} class.
+ * <p>
+ * Verifies deficit round-robin ordering between API keys, lane priority,
+ * queue-time deadlines and the published metrics.
+ */
+class LlmDispatchSchedulerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private LlmDispatchScheduler scheduler(int maxConcurrency, long interactiveDeadlineMs) {
+        return new LlmDispatchScheduler(registry, maxConcurrency, 1, 10, 1, 2000,
+                interactiveDeadlineMs, 5000, "");
+    }
+
+    @Test
+    void shouldAlternateBetweenKeysInProportionToWeight() {
+        LaneQueue queue = new LaneQueue();
+        for (int i = 0; i < 3; i++) {
+            queue.add(new Waiter("flood", Lane.INTERACTIVE, 1, null));
+        }
+        queue.add(new Waiter("quiet", Lane.INTERACTIVE, 1, null));
+        queue.add(new Waiter("quiet", Lane.INTERACTIVE, 1, null));
+
+        List<String> order = new ArrayList<>();
+        for (Waiter w; (w = queue.next(key -> key.equals("quiet") ? 2 : 1)) != null; ) {
+            order.add(w.key);
+        }
+
+        assertThat(order).containsExactly("flood", "quiet", "quiet", "flood", "flood");
+    }
+
+    @Test
+    void shouldMakeExpensiveRequestsWaitForEnoughCredit() {
+        LaneQueue queue = new LaneQueue();
+        queue.add(new Waiter("big", Lane.INTERACTIVE, 3, null));
+        queue.add(new Waiter("small", Lane.INTERACTIVE, 1, null));
+        queue.add(new Waiter("small", Lane.INTERACTIVE, 1, null));
+
+        List<String> order = new ArrayList<>();
+        for (Waiter w; (w = queue.next(key -> 1)) != null; ) {
+            order.add(w.key);
+        }
+
+        assertThat(order).containsExactly("small", "small", "big");
+    }
+
+    @Test
+    void shouldRejectWhenDeadlinePassesAndCountIt() {
+        LlmDispatchScheduler scheduler = scheduler(1, 20);
+        Permit held = scheduler.acquire(Lane.INTERACTIVE, 1);
+
+        assertThatThrownBy(() -> scheduler.acquire(Lane.INTERACTIVE, 1))
+                .isInstanceOf(ApiException.class)
+                .hasMessageContaining("capacity");
+        held.close();
+        held.close();
+
+        assertThat(registry.get("llm.dispatch.rejected").tag("reason", "deadline").counter().count()).isEqualTo(1);
+        assertThat(registry.get("llm.dispatch.queue.depth").tag("lane", "interactive").gauge().value()).isZero();
+        // the slot is free again, and closing twice did not free a second one
+        scheduler.acquire(Lane.INTERACTIVE, 1);
+        assertThat(registry.get("llm.dispatch.in.flight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldServeInteractiveBeforeBatch() throws Exception {
+        LlmDispatchScheduler scheduler = scheduler(1, 5000);
+        Permit held = scheduler.acquire(Lane.INTERACTIVE, 1);
+        List<Lane> served = new CopyOnWriteArrayList<>();
+
+        Thread batch = waitFor(scheduler, Lane.BATCH, served);
+        awaitDepth(Lane.BATCH, 1);
+        Thread interactive = waitFor(scheduler, Lane.INTERACTIVE, served);
+        awaitDepth(Lane.INTERACTIVE, 1);
+
+        held.close();
+        batch.join(5000);
+        interactive.join(5000);
+
+        assertThat(served).containsExactly(Lane.INTERACTIVE, Lane.BATCH);
+        assertThat(registry.get("llm.dispatch.wait").tag("lane", "batch").timer().count()).isEqualTo(1);
+    }
+
+    private static Thread waitFor(LlmDispatchScheduler scheduler, Lane lane, List<Lane> served) {
+        Thread thread = new Thread(() -> {
+            try (Permit permit = scheduler.acquire(lane, 1)) {
+                served.add(lane);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void awaitDepth(Lane lane, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String tag = lane.name().toLowerCase();
+        while (registry.get("llm.dispatch.queue.depth").tag("lane", tag).gauge().value() < depth) {
+            assertThat(System.nanoTime()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
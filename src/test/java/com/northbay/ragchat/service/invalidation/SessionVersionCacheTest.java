@@ -0,0 +1,57 @@
+package com.northbay.ragchat.service.invalidation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SessionVersionCache} class.
+ * <p>
+ * Verifies that versions are cached until invalidated, that values loaded
+ * concurrently with an invalidation are not cached, and that the cache stays bounded.
+ */
+class SessionVersionCacheTest {
+
+    private final SessionVersionCache cache = new SessionVersionCache(2);
+
+    @Test
+    void shouldCacheUntilSessionIsInvalidated() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, () -> Optional.of((long) loads.incrementAndGet()));
+        assertThat(cache.get(1L, () -> Optional.of((long) loads.incrementAndGet()))).contains(1L);
+
+        cache.invalidateSessions(Set.of(1L));
+        assertThat(cache.get(1L, () -> Optional.of((long) loads.incrementAndGet()))).contains(2L);
+    }
+
+    @Test
+    void shouldNotCacheValueLoadedDuringInvalidation() {
+        Optional<Long> loaded = cache.get(1L, () -> {
+            cache.invalidateAll();
+            return Optional.of(5L);
+        });
+
+        assertThat(loaded).contains(5L);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void shouldNotCacheMissingSessions() {
+        assertThat(cache.get(1L, Optional::empty)).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void shouldClearWhenFull() {
+        cache.get(1L, () -> Optional.of(1L));
+        cache.get(2L, () -> Optional.of(1L));
+        cache.get(3L, () -> Optional.of(1L));
+
+        assertThat(cache.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,190 @@
+package com.northbay.ragchat.service.push;
+
+import com.northbay.ragchat.mapper.ChatMapper;
+import com.northbay.ragchat.model.ChatMessageDTO;
+import com.northbay.ragchat.model.ChatMessagePage;
+import com.northbay.ragchat.repository.ChatSessionRepository;
+import com.northbay.ragchat.repository.projection.MessageView;
+import com.northbay.ragchat.service.ChatService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link SessionEventHub} class.
+ * <p>
+ * Verifies that subscribers receive messages in {@code seq} order without
+ * gaps or duplicates: live, when resuming, when commit callbacks arrive out
+ * of order and when another instance stored them, and that a subscriber
+ * falling behind is evicted.
+ */
+class SessionEventHubTest {
+
+    private final ChatService chatService = mock(ChatService.class);
+    private final ChatSessionRepository sessionRepo = mock(ChatSessionRepository.class);
+    private final ChatMapper mapper = mock(ChatMapper.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    private SessionEventHub hub;
+
+    @AfterEach
+    void tearDown() {
+        if (hub != null) hub.stop();
+    }
+
+    @Test
+    void shouldPushMessagesStoredAfterSubscribing() throws Exception {
+        createHub(64);
+        when(sessionRepo.findLastSeqById(1L)).thenReturn(4L);
+
+        hub.subscribe(1L, null);
+        verify(sessionRepo, timeout(2000)).findLastSeqById(1L);
+        hub.onMessageAdded(added(1L, 5));
+        hub.onMessageAdded(added(2L, 1));
+        hub.onMessageAdded(added(1L, 6));
+
+        assertThat(awaitEvents(emitter(), 2)).containsExactly("message:5", "message:6");
+        verifyNoInteractions(chatService);
+    }
+
+    @Test
+    void shouldResumeAfterLastSeenSeqWithoutDuplicates() throws Exception {
+        createHub(64);
+        when(chatService.getMessages(1L, 0, 100, 2L)).thenReturn(page(3, 4));
+
+        hub.subscribe(1L, 2L);
+        hub.onMessageAdded(added(1L, 4));
+        hub.onMessageAdded(added(1L, 5));
+
+        assertThat(awaitEvents(emitter(), 3)).containsExactly("message:3", "message:4", "message:5");
+        verify(sessionRepo, never()).findLastSeqById(any());
+    }
+
+    @Test
+    void shouldFillGapsWhenCommitCallbacksArriveOutOfOrder() throws Exception {
+        createHub(64);
+        when(sessionRepo.findLastSeqById(1L)).thenReturn(4L);
+        when(chatService.getMessages(1L, 0, 100, 4L)).thenReturn(page(5, 6));
+
+        hub.subscribe(1L, null);
+        verify(sessionRepo, timeout(2000)).findLastSeqById(1L);
+        hub.onMessageAdded(added(1L, 6));
+        hub.onMessageAdded(added(1L, 5));
+        hub.onMessageAdded(added(1L, 7));
+
+        assertThat(awaitEvents(emitter(), 3)).containsExactly("message:5", "message:6", "message:7");
+    }
+
+    @Test
+    void shouldReadMessagesStoredByOtherInstances() throws Exception {
+        createHub(64);
+        when(sessionRepo.findLastSeqById(1L)).thenReturn(4L);
+        when(chatService.getMessages(1L, 0, 100, 4L)).thenReturn(page(5));
+
+        hub.subscribe(1L, null);
+        verify(sessionRepo, timeout(2000)).findLastSeqById(1L);
+        hub.invalidateRemoteSessions(Set.of(1L, 2L));
+
+        assertThat(awaitEvents(emitter(), 1)).containsExactly("message:5");
+    }
+
+    @Test
+    void shouldEvictSubscriberWhoseBufferOverflows() throws Exception {
+        createHub(1);
+        CountDownLatch positioned = new CountDownLatch(1);
+        when(sessionRepo.findLastSeqById(1L)).thenAnswer(inv -> {
+            positioned.await(2, TimeUnit.SECONDS);
+            return 4L;
+        });
+
+        hub.subscribe(1L, null);
+        hub.onMessageAdded(added(1L, 5));
+        hub.onMessageAdded(added(1L, 6));
+        positioned.countDown();
+
+        assertThat(awaitEvents(emitter(), 1)).containsExactly("evicted");
+        assertThat(meterRegistry.get("push.evicted").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("push.subscribers").gauge().value()).isZero();
+    }
+
+    private void createHub(int bufferSize) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<ChatService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(chatService);
+        when(mapper.toMessageDTO(any(MessageView.class))).thenAnswer(inv -> dto(inv.<MessageView>getArgument(0).seq()));
+        hub = new SessionEventHub(provider, sessionRepo, mapper, meterRegistry, bufferSize, 10, 60_000, 100, 1) {
+            @Override
+            SseEmitter createEmitter() {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    private RecordingEmitter emitter() {
+        assertThat(emitters).hasSize(1);
+        return emitters.get(0);
+    }
+
+    private static List<String> awaitEvents(RecordingEmitter emitter, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (emitter.events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // anything sent late (a duplicate or an out-of-order message) would show up here
+        Thread.sleep(50);
+        return emitter.events;
+    }
+
+    private static ChatMessageAddedEvent added(Long sessionId, long seq) {
+        return new ChatMessageAddedEvent(sessionId,
+                new MessageView(seq, seq, "assistant", "Message " + seq, null, Instant.now()));
+    }
+
+    private static ChatMessagePage page(long... seqs) {
+        ChatMessagePage page = new ChatMessagePage();
+        page.setContent(LongStream.of(seqs).mapToObj(SessionEventHubTest::dto).toList());
+        return page;
+    }
+
+    private static ChatMessageDTO dto(long seq) {
+        ChatMessageDTO message = new ChatMessageDTO();
+        message.setSeq(seq);
+        message.setContent("Message " + seq);
+        return message;
+    }
+
+    /** Records the events sent instead of writing them to a response. */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof ChatMessageDTO message) {
+                    events.add("message:" + message.getSeq());
+                } else if (data.getData() instanceof String text && text.contains("event:evicted")) {
+                    events.add("evicted");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.northbay.ragchat.service.readiness;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link DatabaseHealthIndicator} class.
+ * <p>
+ * Verifies that probes within the cache period share one database check.
+ */
+class DatabaseHealthIndicatorTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+
+    @Test
+    void shouldReportDownAndCacheTheResult() throws Exception {
+        when(dataSource.getConnection()).thenThrow(new SQLException("Connection refused"));
+        DatabaseHealthIndicator indicator = new DatabaseHealthIndicator(dataSource, 60_000, 2);
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThat(indicator.health().getDetails()).containsKey("error");
+        assertThat(indicator.isUp()).isFalse();
+
+        verify(dataSource, times(1)).getConnection();
+    }
+
+    @Test
+    void shouldCheckAgainOnceTheCacheExpired() throws Exception {
+        when(dataSource.getConnection()).thenThrow(new SQLException("Connection refused"));
+        DatabaseHealthIndicator indicator = new DatabaseHealthIndicator(dataSource, 0, 2);
+
+        indicator.isUp();
+        indicator.isUp();
+
+        verify(dataSource, times(2)).getConnection();
+    }
+}
@@ -0,0 +1,87 @@
+package com.northbay.ragchat.service.readiness;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.northbay.ragchat.controller.ChatMessagesController;
+import com.northbay.ragchat.controller.ChatSessionsController;
+import com.northbay.ragchat.model.ChatMessageDTO;
+import com.northbay.ragchat.model.ChatMessagePage;
+import com.northbay.ragchat.model.ChatSessionDTO;
+import com.northbay.ragchat.service.GroqLLMService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link WarmUpRunner} class.
+ * <p>
+ * Verifies that the warm-up rounds are always rolled back, and that a failing
+ * request path reports the instance {@code DOWN} instead of ready.
+ */
+class WarmUpRunnerTest {
+
+    private final ChatSessionsController sessions = mock(ChatSessionsController.class);
+    private final ChatMessagesController messages = mock(ChatMessagesController.class);
+    private final DataSource dataSource = mock(DataSource.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final TransactionStatus status = new SimpleTransactionStatus();
+    private WarmUpRunner runner;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+        when(transactionManager.getTransaction(any())).thenReturn(status);
+        ChatSessionDTO session = new ChatSessionDTO();
+        session.setId(7);
+        when(sessions.createChatSession(any())).thenReturn(ResponseEntity.status(201).body(session));
+        when(sessions.listChatSessions(any(), any())).thenReturn(ResponseEntity.ok(List.of(session)));
+        when(messages.getMessages(eq(7), anyInt(), anyInt(), any(), any()))
+                .thenReturn(ResponseEntity.ok(new ChatMessagePage()));
+        runner = new WarmUpRunner(sessions, messages, mock(GroqLLMService.class), dataSource,
+                new ObjectMapper().findAndRegisterModules(), transactionManager, true, 3, 2, 60);
+    }
+
+    @Test
+    void shouldRollBackTheRoundsAndReportReady() {
+        when(messages.addMessage(eq(7), any(), any())).thenReturn(ResponseEntity.status(201).body(new ChatMessageDTO()));
+
+        runner.run();
+
+        verify(messages, times(3)).addMessage(eq(7), any(), any());
+        verify(transactionManager).rollback(status);
+        verify(transactionManager, never()).commit(any());
+        verify(sessions, never()).deleteChatSession(any());
+        assertThat(runner.isComplete()).isTrue();
+        assertThat(new WarmUpHealthIndicator(runner).health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void shouldReportDownWhenRequestPathFails() {
+        when(messages.addMessage(eq(7), any(), any())).thenThrow(new IllegalStateException("relation does not exist"));
+
+        runner.run();
+
+        verify(transactionManager).rollback(status);
+        assertThat(runner.isComplete()).isFalse();
+        assertThat(runner.getFailure()).isEqualTo("relation does not exist");
+        assertThat(new WarmUpHealthIndicator(runner).health().getStatus()).isEqualTo(Status.DOWN);
+    }
+
+    @Test
+    void shouldReportOutOfServiceUntilFinished() {
+        assertThat(new WarmUpHealthIndicator(runner).health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+    }
+}
@@ -0,0 +1,76 @@
+package com.northbay.ragchat.service.routing;
+
+import com.northbay.ragchat.service.GroqLLMService;
+import com.northbay.ragchat.service.LlmCompletion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link LlmModelRouter} class.
+ * <p>
+ * Verifies routing by prompt size and session configuration, fallback to the
+ * default model, and benching of a model that keeps failing.
+ */
+class LlmModelRouterTest {
+
+    private static final String SMALL = "small";
+    private static final String BIG = "big";
+
+    private final GroqLLMService llm = mock(GroqLLMService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private LlmModelRouter router;
+
+    @BeforeEach
+    void setUp() {
+        when(llm.getDefaultModel()).thenReturn(BIG);
+        router = new LlmModelRouter(llm, registry, true, SMALL + "=10", 4, 5, 0.5, 0, 60_000);
+    }
+
+    @Test
+    void shouldRouteShortPromptsToTheSmallModel() {
+        assertThat(router.choose("short", null)).isEqualTo(SMALL);
+        assertThat(router.choose("x".repeat(41), null)).isEqualTo(BIG);
+        assertThat(router.choose("short", BIG)).isEqualTo(BIG);
+    }
+
+    @Test
+    void shouldFallBackToDefaultModelWhenSmallModelFails() {
+        when(llm.complete(anyString(), eq(SMALL))).thenThrow(new RuntimeException("HTTP 503"));
+        when(llm.complete(anyString(), eq(BIG))).thenReturn(new LlmCompletion("answer", BIG, 2, 1));
+
+        LlmCompletion completion = router.complete("short", null);
+
+        assertThat(completion.model()).isEqualTo(BIG);
+        assertThat(completion.text()).isEqualTo("answer");
+        assertThat(registry.get("llm.routing.fallbacks").tag("model", SMALL).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldBenchModelAfterRepeatedFailures() {
+        when(llm.complete(anyString(), eq(SMALL))).thenThrow(new RuntimeException("HTTP 500"));
+        when(llm.complete(anyString(), eq(BIG))).thenReturn(new LlmCompletion("answer", BIG, 2, 1));
+
+        for (int i = 0; i < 5; i++) {
+            router.complete("short", null);
+        }
+
+        assertThat(router.choose("short", null)).isEqualTo(BIG);
+        assertThat(router.choose("short", SMALL)).isEqualTo(BIG);
+        verify(llm, times(5)).complete(anyString(), eq(SMALL));
+    }
+
+    @Test
+    void shouldReturnErrorTextWhenDefaultModelFails() {
+        when(llm.complete(anyString(), eq(BIG))).thenThrow(new RuntimeException("timeout"));
+
+        LlmCompletion completion = router.complete("x".repeat(100), null);
+
+        assertThat(completion.text()).startsWith("[Error generating response from Groq").contains("timeout");
+    }
+}
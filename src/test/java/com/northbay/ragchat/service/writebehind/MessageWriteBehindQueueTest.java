@@ -0,0 +1,109 @@
+package com.northbay.ragchat.service.writebehind;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link MessageWriteBehindQueue} class.
+ * <p>
+ * Verifies that every acknowledged concurrent append is committed, and that
+ * a batch failing past {@code max-attempts} is moved to the dead-letter
+ * directory without holding up later messages.
+ */
+class MessageWriteBehindQueueTest {
+
+    @TempDir
+    Path walDir;
+
+    private final ChatMessageBatchWriter batchWriter = mock(ChatMessageBatchWriter.class);
+    private final List<PendingMessage> committed = new ArrayList<>();
+    private MessageWriteBehindQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        AtomicLong ids = new AtomicLong();
+        when(batchWriter.nextId(anyInt())).thenAnswer(inv -> ids.incrementAndGet());
+        queue = new MessageWriteBehindQueue(batchWriter, new ObjectMapper().findAndRegisterModules(),
+                true, walDir.toString(), 5, 500, 1000, 1000, true, 100, 2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        queue.stop();
+    }
+
+    @Test
+    void shouldCommitEveryAcknowledgedAppend() throws Exception {
+        when(batchWriter.write(anyList())).thenAnswer(inv -> {
+            List<PendingMessage> batch = inv.getArgument(0);
+            synchronized (committed) {
+                committed.addAll(batch);
+            }
+            return batch.size();
+        });
+        queue.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<PendingMessage>> acks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String content = "m" + i;
+            acks.add(pool.submit(() -> queue.append(1L, "tool", content, null)));
+        }
+        List<Long> acknowledged = new ArrayList<>();
+        for (Future<PendingMessage> ack : acks) {
+            acknowledged.add(ack.get().id());
+        }
+        pool.shutdown();
+        queue.stop();
+
+        synchronized (committed) {
+            assertThat(committed).extracting(PendingMessage::id).containsExactlyInAnyOrderElementsOf(acknowledged);
+        }
+        assertThat(walSegments(walDir)).isEmpty();
+    }
+
+    @Test
+    void shouldDeadLetterBatchAfterMaxAttemptsAndContinue() throws Exception {
+        when(batchWriter.write(anyList()))
+                .thenThrow(new IllegalStateException("constraint violation"))
+                .thenThrow(new IllegalStateException("constraint violation"))
+                .thenReturn(1);
+        queue.start();
+
+        queue.append(1L, "tool", "poison", null);
+        verify(batchWriter, timeout(2000).times(2)).write(anyList());
+        PendingMessage next = queue.append(1L, "tool", "fine", null);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<PendingMessage>> batches = ArgumentCaptor.forClass(List.class);
+        verify(batchWriter, timeout(2000).times(3)).write(batches.capture());
+        assertThat(batches.getAllValues().get(2)).containsExactly(next);
+        assertThat(walSegments(walDir.resolve("dead-letter"))).hasSize(1);
+    }
+
+    private static List<Path> walSegments(Path dir) throws Exception {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("wal-")).toList();
+        }
+    }
+}